@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.DefaultHandler;
+import widoco.Configuration;
+import widoco.WidocoUtils;
+
+/**
+ * Time of the LODE sections for ontologies of a growing number of entities.
+ * The entities are looked up through the keys of extraction.xsl, so the time
+ * per entity should stay roughly the same from 1000 to 50000 classes.
+ * The ontology is parsed once per trial: only the transformation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LODEScalingBenchmark {
+
+    private static final String NS = "http://example.org/bench#";
+
+    @Param({"1000", "5000", "10000", "50000"})
+    public int classes;
+
+    private File ontology;
+    private Configuration c;
+    private String[] sections;
+
+    @Setup
+    public void setUp() throws Exception {
+        ontology = File.createTempFile("lode-bench", ".ttl");
+        write(ontology, classes);
+        c = new Configuration();
+        c.setFromFile(true);
+        c.setOntologyPath(ontology.getPath());
+        c.getMainOntology().setNamespaceURI(NS);
+        c.getOntologySource().setCache(null);
+        WidocoUtils.loadOntology(c);
+        sections = LODEGeneration.WIDOCO_SECTIONS.split(" ");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ontology.delete();
+    }
+
+    @Benchmark
+    public void sections() throws Exception {
+        ContentHandler[] handlers = new ContentHandler[sections.length];
+        for(int i = 0; i < handlers.length; i++){
+            handlers[i] = new DefaultHandler();
+        }
+        LODEGeneration.streamLODESections(c, sections, handlers);
+    }
+
+    /**
+     * Writes an ontology with the given number of classes. Each class has a
+     * label, a comment and a superclass, and one in ten is the domain of an
+     * object property and a data property, so every section refers to
+     * entities described elsewhere in the document.
+     */
+    private static void write(File f, int classes) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try{
+            out.write("@prefix owl: <http://www.w3.org/2002/07/owl#> .\n"
+                    + "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n"
+                    + "@prefix xsd: <http://www.w3.org/2001/XMLSchema#> .\n"
+                    + "@prefix : <"+NS+"> .\n"
+                    + "<http://example.org/bench> a owl:Ontology .\n");
+            for(int i = 0; i < classes; i++){
+                out.write(":C"+i+" a owl:Class ; rdfs:label \"Class "+i+"\"@en ; rdfs:comment \"Description of class "+i+"\"@en");
+                if(i > 0){
+                    out.write(" ; rdfs:subClassOf :C"+(i / 2));
+                }
+                out.write(" .\n");
+                if(i % 10 == 0){
+                    out.write(":p"+i+" a owl:ObjectProperty ; rdfs:label \"property "+i+"\"@en ; rdfs:domain :C"+i
+                            +" ; rdfs:range :C"+(classes - 1 - i)+" .\n");
+                    out.write(":d"+i+" a owl:DatatypeProperty ; rdfs:label \"data property "+i+"\"@en ; rdfs:domain :C"+i
+                            +" ; rdfs:range xsd:string .\n");
+                }
+            }
+        }finally{
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.concurrent.TimeUnit;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time of the string-index-of functions on IRIs, in Java and as defined in
+ * common-functions.xsl. The patterns are the ones LODE uses: plain
+ * characters, an escaped character and a regular expression, so the literal
+ * fast path can be compared with the regular expression one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringIndexFunctionsBenchmark {
+
+    //f:string-index-of in common-functions.xsl, with $tokens inlined
+    private static final String XPATH_INDEX_OF = "for $i in (1 to count(tokenize($source,$pattern)) - 1) return "
+            + "sum(for $token in tokenize($source,$pattern)[position() >= 1 and position() <= $i] return string-length($token)) + $i";
+    private static final int IRIS = 64;
+
+    @Param({"#", "/", "\\.", "[/#]"})
+    public String pattern;
+
+    private String[] iris;
+    private XdmAtomicValue[] values;
+    private XdmAtomicValue patternValue;
+    private XPathSelector indexesOf;
+    private XPathSelector lastIndexOf;
+
+    @Setup
+    public void setUp() throws Exception {
+        iris = new String[IRIS];
+        values = new XdmAtomicValue[IRIS];
+        for(int i = 0; i < IRIS; i++){
+            iris[i] = "http://purl.example.org/ontologies/v"+i+"/core.owl#Entity"+i;
+            values[i] = new XdmAtomicValue(iris[i]);
+        }
+        patternValue = new XdmAtomicValue(pattern);
+        XPathCompiler compiler = new Processor(false).newXPathCompiler();
+        compiler.declareVariable(new QName("source"));
+        compiler.declareVariable(new QName("pattern"));
+        indexesOf = compiler.compile(XPATH_INDEX_OF).load();
+        lastIndexOf = compiler.compile("("+XPATH_INDEX_OF+")[last()]").load();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IRIS)
+    public void javaIndexesOf(Blackhole bh) throws Exception {
+        for(String iri : iris){
+            bh.consume(StringIndexFunctions.indexesOf(iri, pattern));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IRIS)
+    public void javaLastIndexOf(Blackhole bh) throws Exception {
+        for(String iri : iris){
+            bh.consume(StringIndexFunctions.lastIndexOf(iri, pattern));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IRIS)
+    public void xpathIndexesOf(Blackhole bh) throws Exception {
+        evaluate(indexesOf, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IRIS)
+    public void xpathLastIndexOf(Blackhole bh) throws Exception {
+        evaluate(lastIndexOf, bh);
+    }
+
+    private void evaluate(XPathSelector selector, Blackhole bh) throws Exception {
+        selector.setVariable(new QName("pattern"), patternValue);
+        for(XdmAtomicValue value : values){
+            selector.setVariable(new QName("source"), value);
+            bh.consume(selector.evaluate());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of reading and of loading a compressed ontology, decompressed while
+ * it is read (see OntologySource.decompress), against the same ontology
+ * already decompressed on disk ("plain"). The read only goes through the
+ * bytes, so it gives the cost of the decompression alone; the load parses
+ * them into the graph, as the other steps do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecompressionBenchmark {
+
+    private static final String NS = "http://example.org/bench#";
+
+    @Param({"plain", "gzip", "bzip2", "zip"})
+    public String compression;
+
+    @Param({"10000"})
+    public int classes;
+
+    private File ontology;
+
+    @Setup
+    public void setUp() throws Exception {
+        ontology = File.createTempFile("decompression-bench", ".ttl");
+        OutputStream out = new FileOutputStream(ontology);
+        if("gzip".equals(compression)){
+            out = new GZIPOutputStream(out);
+        }else if("bzip2".equals(compression)){
+            out = new BZip2CompressorOutputStream(out);
+        }else if("zip".equals(compression)){
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.putNextEntry(new ZipEntry("ontology.ttl"));
+            out = zip;
+        }
+        write(out, classes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ontology.delete();
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        InputStream in = OntologySource.decompress(new FileInputStream(ontology));
+        try{
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while((read = in.read(buffer)) != -1){
+                total += read;
+            }
+            return total;
+        }finally{
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        OntologySource source = new OntologySource(ontology.getPath(), true);
+        source.setCache(null);
+        return source.getGraph().size();
+    }
+
+    /**
+     * Writes an ontology with the given number of classes, each with a
+     * label, a comment and a superclass, and closes the stream.
+     */
+    private static void write(OutputStream stream, int classes) throws IOException {
+        Writer out = new OutputStreamWriter(stream, "UTF-8");
+        try{
+            out.write("@prefix owl: <http://www.w3.org/2002/07/owl#> .\n"
+                    + "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n"
+                    + "@prefix : <"+NS+"> .\n"
+                    + "<http://example.org/bench> a owl:Ontology .\n");
+            for(int i = 0; i < classes; i++){
+                out.write(":C"+i+" a owl:Class ; rdfs:label \"Class "+i+"\"@en ; rdfs:comment \"Description of class "+i+"\"@en");
+                if(i > 0){
+                    out.write(" ; rdfs:subClassOf :C"+(i / 2));
+                }
+                out.write(" .\n");
+            }
+        }finally{
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of fixing the ids of the sections of IdRewriterBenchmark the way
+ * LODEParser did before the rewriter: a String.replace over the whole
+ * section per id. Its time grows with the number of ids times the size of
+ * the section, so it is not run with 100000 ids (it would take hours).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IdRewriterBaselineBenchmark {
+
+    @Param({"1000", "10000"})
+    public int ids;
+
+    private Map<String, String> replacements;
+    private String section;
+
+    @Setup
+    public void setUp() {
+        replacements = IdRewriterBenchmark.getReplacements(ids);
+        section = IdRewriterBenchmark.getSection(ids);
+    }
+
+    @Benchmark
+    public String replace() {
+        String s = section;
+        for(Map.Entry<String, String> r : replacements.entrySet()){
+            s = s.replace(r.getKey(), r.getValue());
+            s = s.replace("<span>:", "<span>");
+        }
+        return s;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of fixing the ids of a LODE section with the rewriter LODEParser
+ * uses, for sections of 1000 to 100000 entities. The rewriter reads the
+ * section once, so the time should grow with the size of the section only
+ * (about ten times from one size to the next). The rewriter is built once
+ * per section, which is measured apart. IdRewriterBaselineBenchmark gives
+ * the time of replacing the ids one by one, as LODEParser did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdRewriterBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int ids;
+
+    private Map<String, String> replacements;
+    private String section;
+    private IdRewriter rewriter;
+
+    @Setup
+    public void setUp() {
+        replacements = getReplacements(ids);
+        section = getSection(ids);
+        rewriter = build();
+    }
+
+    @Benchmark
+    public IdRewriter build() {
+        IdRewriter r = new IdRewriter(replacements);
+        r.add("<span>:", "<span>");
+        return r;
+    }
+
+    @Benchmark
+    public String rewrite() {
+        return rewriter.rewrite(section);
+    }
+
+    /**
+     * @return the ids LODE gives to the entities (as in d4e12), with their names.
+     */
+    static Map<String, String> getReplacements(int ids){
+        Map<String, String> replacements = new HashMap<String, String>();
+        for(int i = 0; i < ids; i++){
+            replacements.put("d4e"+(i * 3 + 1), "Entity"+i);
+        }
+        return replacements;
+    }
+
+    /**
+     * @return a section with the description of each entity, as LODE writes
+     * it: its id, its name in the default namespace and a link to another
+     * entity.
+     */
+    static String getSection(int ids){
+        StringBuilder section = new StringBuilder();
+        for(int i = 0; i < ids; i++){
+            section.append("<div id=\"d4e").append(i * 3 + 1).append("\" class=\"entity\">")
+                    .append("<h3>Entity ").append(i).append("<sup title=\"class\" class=\"type-c\">c</sup></h3>")
+                    .append("<p><strong>IRI:</strong> http://example.org/bench#Entity").append(i).append("</p>")
+                    .append("<div class=\"description\"><p>Description of <span>:Entity").append(i).append("</span></p>")
+                    .append("<dl><dt>has super-classes</dt><dd><a href=\"#d4e").append((i / 2) * 3 + 1)
+                    .append("\" title=\"http://example.org/bench#Entity").append(i / 2).append("\">")
+                    .append("<span>:Entity").append(i / 2).append("</span></a></dd></dl></div></div>\n");
+        }
+        return section.toString();
+    }
+}
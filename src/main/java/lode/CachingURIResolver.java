@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Resolves the files LODE's stylesheet refers to (the modules it includes
+ * and the documents it loads with document()) from the classpath.
+ * Each resource is read once and kept in memory, so the resources do not
+ * have to be copied to disk and later transformations do not read them again.
+ * Resources in a folder are read again when their modification time changes.
+ * Resources that are not in the application jar or folder (e.g., http URIs)
+ * are left to the default resolver.
+ */
+public class CachingURIResolver implements URIResolver {
+
+    private final ConcurrentHashMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+    //resources read by each thread while it is recording, with their modification time
+    private final ThreadLocal<Map<String, Long>> recorded = new ThreadLocal<Map<String, Long>>();
+
+    public Source resolve(String href, String base) throws TransformerException {
+        URL url;
+        try{
+            url = (base == null || "".equals(base)) ? new URL(href) : new URL(new URL(base), href);
+        }catch(MalformedURLException e){
+            return null;
+        }
+        if(!"jar".equals(url.getProtocol()) && !"file".equals(url.getProtocol())){
+            return null;
+        }
+        return getSource(url);
+    }
+
+    /**
+     * Returns a source with the content of a resource, reading it only the
+     * first time it is requested or when it has been modified since.
+     * @param url location of the resource.
+     * @return a source over the cached content, with the url as system id
+     * (needed for resolving relative references from the resource).
+     * @throws TransformerException if the resource cannot be read
+     */
+    public Source getSource(URL url) throws TransformerException{
+        String location = url.toExternalForm();
+        long lastModified = getLastModified(url);
+        Resource resource = resources.get(location);
+        if(resource == null || resource.lastModified != lastModified){
+            try{
+                resource = new Resource(read(url), lastModified);
+            }catch(IOException e){
+                throw new TransformerException("Could not read "+location+": "+e.getMessage(), e);
+            }
+            resources.put(location, resource);
+        }
+        Map<String, Long> dependencies = recorded.get();
+        if(dependencies != null){
+            dependencies.put(location, resource.lastModified);
+        }
+        return new StreamSource(new ByteArrayInputStream(resource.content), location);
+    }
+
+    /**
+     * Starts recording the resources read by the current thread (e.g., the
+     * modules included by a stylesheet while it is compiled).
+     */
+    public void startRecording(){
+        recorded.set(new HashMap<String, Long>());
+    }
+
+    /**
+     * Stops recording the resources read by the current thread.
+     * @return the location of each resource read since startRecording, with
+     * the modification time of the content that was returned.
+     */
+    public Map<String, Long> stopRecording(){
+        Map<String, Long> dependencies = recorded.get();
+        recorded.remove();
+        if(dependencies == null){
+            return new HashMap<String, Long>();
+        }
+        return dependencies;
+    }
+
+    public void clear(){
+        resources.clear();
+    }
+
+    /**
+     * Resources inside a jar cannot change while the application runs, so
+     * only the ones in a folder have a modification time (0 otherwise).
+     * @param url location of the resource.
+     * @return the modification time of the resource.
+     */
+    public static long getLastModified(URL url){
+        if(!"file".equals(url.getProtocol())){
+            return 0;
+        }
+        try{
+            return new File(url.toURI()).lastModified();
+        }catch(URISyntaxException e){
+            return 0;
+        }catch(IllegalArgumentException e){
+            return 0;
+        }
+    }
+
+    private static class Resource{
+        private final byte[] content;
+        private final long lastModified;
+
+        public Resource(byte[] content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static byte[] read(URL url) throws IOException{
+        InputStream in = url.openStream();
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }finally{
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The headings used by LODE (e.g., "is disjoint with"), read from the same
+ * label files as the stylesheet. It is the Java version of
+ * f:getDescriptionLabel: labels missing in a language are taken from the
+ * English file.
+ */
+public class DescriptionLabels {
+
+    private static final String DEFAULT_LANGUAGE = "en";
+    private static final ConcurrentHashMap<String, Map<String, String>> files = new ConcurrentHashMap<String, Map<String, String>>();
+
+    private final Map<String, String> labels;
+    private final Map<String, String> defaultLabels;
+
+    public DescriptionLabels(String language) {
+        labels = getFile(language);
+        defaultLabels = getFile(DEFAULT_LANGUAGE);
+    }
+
+    /**
+     * @param name name of the label, as in the label files (case and spaces are ignored).
+     * @return the label in the language, or in English if the language does not have it.
+     */
+    public String get(String name){
+        String key = name.replace(" ", "").toLowerCase();
+        String label = labels.get(key);
+        if(label == null || "".equals(label)){
+            label = defaultLabels.get(key);
+        }
+        return label == null ? "[ERROR-LABEL]" : label;
+    }
+
+    /**
+     * Returns the labels of a language, reading the file only the first time.
+     * A language without file has no labels.
+     */
+    private static Map<String, String> getFile(String language){
+        Map<String, String> file = files.get(language);
+        if(file == null){
+            file = read(language);
+            files.putIfAbsent(language, file);
+        }
+        return file;
+    }
+
+    private static Map<String, String> read(String language){
+        Map<String, String> file = new HashMap<String, String>();
+        InputStream in = DescriptionLabels.class.getResourceAsStream("/lode/"+language+".xml");
+        if(in == null){
+            return file;
+        }
+        try{
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            NodeList children = doc.getDocumentElement().getChildNodes();
+            for(int i = 0; i < children.getLength(); i++){
+                Node child = children.item(i);
+                if(child.getNodeType() == Node.ELEMENT_NODE){
+                    file.put(child.getNodeName().toLowerCase(), child.getTextContent().trim().replaceAll("\\s+", " "));
+                }
+            }
+        }catch(Exception e){
+            System.err.println("Error while reading the labels of "+language+": "+e.getMessage());
+        }finally{
+            try{
+                in.close();
+            }catch(Exception e){
+                //nothing to do
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lode.EntityDescription.Kind;
+
+/**
+ * Reader of an ontology that describes its classes and properties as LODE
+ * shows them, for NativeRenderer. The labels and kinds are complete once the
+ * entities have been described.
+ */
+public interface EntityDescriber {
+
+    /**
+     * @return the rdfs:label of each entity that has one.
+     */
+    Map<String, String> getLabels();
+
+    /**
+     * @return the kinds each IRI of the ontology is declared as.
+     */
+    Map<String, Set<Kind>> getKinds();
+
+    List<EntityDescription> describeClasses();
+
+    List<EntityDescription> describeObjectProperties();
+
+    List<EntityDescription> describeDataProperties();
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What LODE shows about a class or property: its IRI, label, comment,
+ * characteristics and the relations with other entities, in the order they
+ * are rendered. Descriptions are filled by a reader of the ontology (e.g.,
+ * OWLAPIEntityDescriber) and written as html by HtmlSectionWriter.
+ */
+public class EntityDescription {
+
+    public enum Kind { CLASS, OBJECT_PROPERTY, DATA_PROPERTY, ANNOTATION_PROPERTY, INDIVIDUAL }
+
+    private final String iri;
+    private final Kind kind;
+    private String label;
+    private String comment;
+    private final List<String> definedBy = new ArrayList<String>();
+    private final List<String> characteristics = new ArrayList<String>();
+    private final List<Relation> relations = new ArrayList<Relation>();
+
+    public EntityDescription(String iri, Kind kind) {
+        this.iri = iri;
+        this.kind = kind;
+    }
+
+    public String getIri() {
+        return iri;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the rdfs:label chosen for the entity, or null if it has none
+     * (the writer computes one from the IRI).
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+
+    public List<String> getDefinedBy() {
+        return definedBy;
+    }
+
+    /**
+     * @return the names of the characteristics of a property (functional,
+     * transitive, ...), as they appear in the label files.
+     */
+    public List<String> getCharacteristics() {
+        return characteristics;
+    }
+
+    public List<Relation> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Adds a relation if it has any value.
+     * @param name name of the relation in the label files (e.g., hassuperclasses).
+     * @param oneValuePerLine whether each value is shown separately (like
+     * superclasses) or all of them in the same line (like subclasses).
+     * @param values values of the relation.
+     */
+    public void addRelation(String name, boolean oneValuePerLine, List<Expression> values){
+        if(!values.isEmpty()){
+            relations.add(new Relation(name, oneValuePerLine, values));
+        }
+    }
+
+    public static class Relation{
+        private final String name;
+        private final boolean oneValuePerLine;
+        private final List<Expression> values;
+
+        public Relation(String name, boolean oneValuePerLine, List<Expression> values) {
+            this.name = name;
+            this.oneValuePerLine = oneValuePerLine;
+            this.values = values;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isOneValuePerLine() {
+            return oneValuePerLine;
+        }
+
+        public List<Expression> getValues() {
+            return values;
+        }
+    }
+}
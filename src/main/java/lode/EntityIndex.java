@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.expr.StaticProperty;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.lib.ExtensionFunctionCall;
+import net.sf.saxon.lib.ExtensionFunctionDefinition;
+import net.sf.saxon.om.Axis;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.SequenceIterator;
+import net.sf.saxon.om.StructuredQName;
+import net.sf.saxon.pattern.NodeKindTest;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.tree.iter.AxisIterator;
+import net.sf.saxon.tree.iter.ListIterator;
+import net.sf.saxon.tree.iter.SingletonIterator;
+import net.sf.saxon.value.ObjectValue;
+import net.sf.saxon.value.SequenceType;
+
+/**
+ * Index of the top level entities of an RDF/XML document by IRI, the Java
+ * version of the entity-by-iri key of extraction.xsl.
+ * Saxon builds the indexes of xsl:key once per transformation, so when the
+ * sections of a document are rendered by several transformations, each one
+ * would index the whole document again. This index is built once per tree
+ * and passed to all of them as the entity-index parameter. It is not
+ * modified once built, so it can be shared by threads.
+ */
+public class EntityIndex {
+
+    public static final String NAMESPACE = "java:lode.EntityIndex";
+    private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private final HashMap<String, List<NodeInfo>> entities = new HashMap<String, List<NodeInfo>>();
+
+    /**
+     * Indexes the children of the rdf:RDF element of a document by their
+     * rdf:about and rdf:ID, in document order.
+     * @param document the tree of the RDF/XML document.
+     */
+    public EntityIndex(NodeInfo document) {
+        AxisIterator roots = document.iterateAxis(Axis.CHILD, NodeKindTest.ELEMENT);
+        for(NodeInfo root = (NodeInfo) roots.next(); root != null; root = (NodeInfo) roots.next()){
+            if(!"RDF".equals(root.getLocalPart()) || !RDF.equals(root.getURI())){
+                continue;
+            }
+            AxisIterator children = root.iterateAxis(Axis.CHILD, NodeKindTest.ELEMENT);
+            for(NodeInfo child = (NodeInfo) children.next(); child != null; child = (NodeInfo) children.next()){
+                AxisIterator attributes = child.iterateAxis(Axis.ATTRIBUTE);
+                for(NodeInfo a = (NodeInfo) attributes.next(); a != null; a = (NodeInfo) attributes.next()){
+                    if("about".equals(a.getLocalPart()) || "ID".equals(a.getLocalPart())){
+                        add(a.getStringValue(), child);
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(String iri, NodeInfo entity){
+        List<NodeInfo> list = entities.get(iri);
+        if(list == null){
+            list = new ArrayList<NodeInfo>(1);
+            entities.put(iri, list);
+        }
+        //an element with both rdf:about and rdf:ID with the same value is returned once, like in a key
+        if(list.isEmpty() || list.get(list.size() - 1) != entity){
+            list.add(entity);
+        }
+    }
+
+    /**
+     * @param iri the IRI of the entities.
+     * @return the top level elements that describe the IRI, in document
+     * order.
+     */
+    public List<NodeInfo> get(String iri){
+        List<NodeInfo> list = entities.get(iri);
+        if(list == null){
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    /**
+     * Registers the functions in a Saxon configuration. Stylesheets compiled
+     * with that configuration can call index:build($document) and
+     * index:entities-by-iri($index, $iri) in the NAMESPACE namespace.
+     * @param configuration the configuration to register the functions in.
+     */
+    public static void register(Configuration configuration){
+        configuration.registerExtensionFunction(new BuildFunction());
+        configuration.registerExtensionFunction(new EntitiesFunction());
+    }
+
+    /**
+     * index:build($document), which indexes a document when the index is not
+     * passed to the transformation.
+     */
+    private static class BuildFunction extends ExtensionFunctionDefinition{
+
+        @Override
+        public StructuredQName getFunctionQName() {
+            return new StructuredQName("index", NAMESPACE, "build");
+        }
+
+        @Override
+        public SequenceType[] getArgumentTypes() {
+            return new SequenceType[]{SequenceType.SINGLE_NODE};
+        }
+
+        @Override
+        public SequenceType getResultType(SequenceType[] suppliedArgumentTypes) {
+            return SequenceType.SINGLE_ITEM;
+        }
+
+        @Override
+        public ExtensionFunctionCall makeCallExpression() {
+            return new ExtensionFunctionCall() {
+                @Override
+                public SequenceIterator call(SequenceIterator[] arguments, XPathContext context) throws XPathException {
+                    NodeInfo document = (NodeInfo) arguments[0].next();
+                    return SingletonIterator.makeIterator(new ObjectValue(new EntityIndex(document)));
+                }
+            };
+        }
+    }
+
+    /**
+     * index:entities-by-iri($index, $iri), equivalent to
+     * key('entity-by-iri', $iri, $root).
+     */
+    private static class EntitiesFunction extends ExtensionFunctionDefinition{
+
+        @Override
+        public StructuredQName getFunctionQName() {
+            return new StructuredQName("index", NAMESPACE, "entities-by-iri");
+        }
+
+        @Override
+        public SequenceType[] getArgumentTypes() {
+            return new SequenceType[]{SequenceType.SINGLE_ITEM, SequenceType.SINGLE_STRING};
+        }
+
+        @Override
+        public SequenceType getResultType(SequenceType[] suppliedArgumentTypes) {
+            return SequenceType.makeSequenceType(NodeKindTest.ELEMENT, StaticProperty.ALLOWS_ZERO_OR_MORE);
+        }
+
+        @Override
+        public ExtensionFunctionCall makeCallExpression() {
+            return new ExtensionFunctionCall() {
+                @Override
+                public SequenceIterator call(SequenceIterator[] arguments, XPathContext context) throws XPathException {
+                    Item index = arguments[0].next();
+                    if(!(index instanceof ObjectValue) || !(((ObjectValue) index).getObject() instanceof EntityIndex)){
+                        throw new XPathException("The first argument of entities-by-iri is not an entity index");
+                    }
+                    String iri = arguments[1].next().getStringValue();
+                    return new ListIterator<NodeInfo>(((EntityIndex) ((ObjectValue) index).getObject()).get(iri));
+                }
+            };
+        }
+    }
+}
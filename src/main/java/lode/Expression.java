@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Value of a relation of an entity (e.g., a superclass or the range of a
+ * property), described independently of the source it was read from.
+ * An expression is a sequence of plain text, logical operators (some, only,
+ * and, ...) and references to other entities, which are rendered by
+ * HtmlSectionWriter as links to their descriptions.
+ */
+public class Expression {
+
+    public enum SegmentType { TEXT, LOGIC, REFERENCE }
+
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    /**
+     * Expression with a single reference to an entity.
+     * @param iri the entity referenced.
+     * @param kind the kind of entity expected, used to pick the description
+     * to link to. It may be null if any kind of entity is valid.
+     */
+    public static Expression reference(String iri, EntityDescription.Kind kind){
+        return new Expression().appendReference(iri, kind);
+    }
+
+    /**
+     * Expression with a single reference to an entity, shown without the
+     * type of the entity, as LODE shows the individuals of enumerations and
+     * value restrictions.
+     * @param iri the entity referenced.
+     * @param kind the kind of entity expected.
+     */
+    public static Expression untypedReference(String iri, EntityDescription.Kind kind){
+        Expression e = new Expression();
+        e.segments.add(new Segment(SegmentType.REFERENCE, iri, kind, false));
+        return e;
+    }
+
+    public Expression appendText(String text){
+        segments.add(new Segment(SegmentType.TEXT, text, null));
+        return this;
+    }
+
+    public Expression appendLogic(String operator){
+        segments.add(new Segment(SegmentType.LOGIC, operator, null));
+        return this;
+    }
+
+    public Expression appendReference(String iri, EntityDescription.Kind kind){
+        segments.add(new Segment(SegmentType.REFERENCE, iri, kind));
+        return this;
+    }
+
+    public Expression append(Expression expression){
+        segments.addAll(expression.segments);
+        return this;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return true if the expression is just a named entity (which does not
+     * need brackets when it is part of another expression).
+     */
+    public boolean isReference(){
+        return segments.size() == 1 && segments.get(0).getType() == SegmentType.REFERENCE;
+    }
+
+    public static class Segment{
+        private final SegmentType type;
+        private final String value;
+        private final EntityDescription.Kind kind;
+        private final boolean typed;
+
+        public Segment(SegmentType type, String value, EntityDescription.Kind kind) {
+            this(type, value, kind, true);
+        }
+
+        public Segment(SegmentType type, String value, EntityDescription.Kind kind, boolean typed) {
+            this.type = type;
+            this.value = value;
+            this.kind = kind;
+            this.typed = typed;
+        }
+
+        public SegmentType getType() {
+            return type;
+        }
+
+        /**
+         * @return the text, the operator or the IRI of the referenced entity.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public EntityDescription.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return whether a reference is followed by the type of the entity.
+         */
+        public boolean isTyped() {
+            return typed;
+        }
+    }
+}
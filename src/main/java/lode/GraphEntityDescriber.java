@@ -0,0 +1,588 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.OWL2;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import com.hp.hpl.jena.vocabulary.XSD;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lode.EntityDescription.Kind;
+
+/**
+ * Describes the classes and properties of an ontology from its triples, with
+ * lookups by subject or object only (which are indexed in a TDB dataset), so
+ * the ontology does not need to be loaded in memory. The descriptions are the
+ * same as those of OWLAPIEntityDescriber: class expressions are rendered from
+ * their RDF mapping (restrictions, boolean expressions and enumerations).
+ * Only the labels and kinds of the entities described or referenced are kept.
+ */
+public class GraphEntityDescriber implements EntityDescriber {
+
+    private static final String DEFAULT_LANGUAGE = "en";
+    private static final Node TYPE = RDF.type.asNode();
+    private static final Node FIRST = RDF.first.asNode();
+    private static final Node REST = RDF.rest.asNode();
+    private static final Node NIL = RDF.nil.asNode();
+    //characteristics of properties, with their names in the label files
+    private static final Node[] CHARACTERISTICS = {OWL2.FunctionalProperty.asNode(), OWL2.InverseFunctionalProperty.asNode(),
+        OWL2.ReflexiveProperty.asNode(), OWL2.IrreflexiveProperty.asNode(), OWL2.SymmetricProperty.asNode(),
+        OWL2.AsymmetricProperty.asNode(), OWL2.TransitiveProperty.asNode()};
+    private static final String[] CHARACTERISTIC_NAMES = {"functional", "inversefunctional", "reflexive", "irreflexive",
+        "symmetric", "asymmetric", "transitive"};
+
+    private final Graph graph;
+    private final String language;
+    private final Map<String, String> labels = new HashMap<String, String>();
+    private final Map<String, Set<Kind>> kinds = new HashMap<String, Set<Kind>>();
+
+    /**
+     * @param graph the triples of the ontology.
+     * @param language language of the labels and comments to show.
+     */
+    public GraphEntityDescriber(Graph graph, String language) {
+        this.graph = graph;
+        this.language = language;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    public Map<String, Set<Kind>> getKinds() {
+        return kinds;
+    }
+
+    public List<EntityDescription> describeClasses(){
+        List<EntityDescription> descriptions = new ArrayList<EntityDescription>();
+        Set<Node> declared = new LinkedHashSet<Node>();
+        declared.addAll(subjects(TYPE, OWL2.Class.asNode()));
+        declared.addAll(subjects(TYPE, RDFS.Class.asNode()));
+        for(Node c : declared){
+            if(!c.isURI()){
+                continue;
+            }
+            EntityDescription d = describe(c, Kind.CLASS);
+            d.addRelation("isequivalentto", true, renderAll(related(c, OWL2.equivalentClass.asNode()), false));
+            d.addRelation("hassuperclasses", true, renderAll(objects(c, RDFS.subClassOf.asNode()), false));
+            d.addRelation("hassubclasses", false, references(subjects(RDFS.subClassOf.asNode(), c), Kind.CLASS));
+            List<Expression> domainOf = new ArrayList<Expression>();
+            for(Node p : subjects(RDFS.domain.asNode(), c)){
+                if(p.isURI() && (getKinds(p).contains(Kind.OBJECT_PROPERTY) || getKinds(p).contains(Kind.DATA_PROPERTY))){
+                    domainOf.add(renderProperty(p));
+                }
+            }
+            d.addRelation("isindomainof", false, domainOf);
+            List<Expression> rangeOf = new ArrayList<Expression>();
+            for(Node p : subjects(RDFS.range.asNode(), c)){
+                if(p.isURI() && getKinds(p).contains(Kind.OBJECT_PROPERTY)){
+                    rangeOf.add(renderProperty(p));
+                }
+            }
+            d.addRelation("isinrangeof", false, rangeOf);
+            d.addRelation("hasmembers", false, references(subjects(TYPE, c), Kind.INDIVIDUAL));
+            List<Expression> keys = new ArrayList<Expression>();
+            for(Node list : objects(c, OWL2.hasKey.asNode())){
+                Expression key = new Expression();
+                for(Node p : list(list)){
+                    if(!key.getSegments().isEmpty()){
+                        key.appendText(" , ");
+                    }
+                    key.append(renderProperty(p));
+                }
+                keys.add(key);
+            }
+            d.addRelation("haskeys", true, keys);
+            Set<Node> disjoint = related(c, OWL2.disjointWith.asNode());
+            disjoint.addAll(members(c, OWL2.AllDisjointClasses.asNode()));
+            d.addRelation("isdisjointwith", false, renderAll(disjoint, false));
+            //like LODE, only the classes that are the subject of some statement are described
+            if(hasStatements(c)){
+                descriptions.add(d);
+            }
+        }
+        return descriptions;
+    }
+
+    public List<EntityDescription> describeObjectProperties(){
+        Set<Node> declared = new LinkedHashSet<Node>();
+        declared.addAll(subjects(TYPE, OWL2.ObjectProperty.asNode()));
+        //the characteristics other than functional are only valid for object properties
+        for(int i = 1; i < CHARACTERISTICS.length; i++){
+            declared.addAll(subjects(TYPE, CHARACTERISTICS[i]));
+        }
+        return describeProperties(declared, Kind.OBJECT_PROPERTY);
+    }
+
+    public List<EntityDescription> describeDataProperties(){
+        return describeProperties(subjects(TYPE, OWL2.DatatypeProperty.asNode()), Kind.DATA_PROPERTY);
+    }
+
+    /**
+     * Describes properties with their relations in the order of
+     * get.property.description.
+     */
+    private List<EntityDescription> describeProperties(Set<Node> declared, Kind kind){
+        List<EntityDescription> descriptions = new ArrayList<EntityDescription>();
+        boolean data = kind == Kind.DATA_PROPERTY;
+        for(Node p : declared){
+            if(!p.isURI()){
+                continue;
+            }
+            EntityDescription d = describe(p, kind);
+            Set<Node> types = objects(p, TYPE);
+            for(int i = 0; i < CHARACTERISTICS.length; i++){
+                if(types.contains(CHARACTERISTICS[i]) && (!data || i == 0)){
+                    d.getCharacteristics().add(CHARACTERISTIC_NAMES[i]);
+                }
+            }
+            d.addRelation("hasequivalentproperties", false, renderProperties(related(p, OWL2.equivalentProperty.asNode())));
+            d.addRelation("hassuperproperties", true, renderProperties(objects(p, RDFS.subPropertyOf.asNode())));
+            d.addRelation("hassubproperties", false, references(subjects(RDFS.subPropertyOf.asNode(), p), kind));
+            d.addRelation("hasdomain", true, renderAll(objects(p, RDFS.domain.asNode()), false));
+            d.addRelation("hasrange", true, renderAll(objects(p, RDFS.range.asNode()), data));
+            if(!data){
+                d.addRelation("isinverseof", false, renderProperties(related(p, OWL2.inverseOf.asNode())));
+                List<Expression> chains = new ArrayList<Expression>();
+                for(Node list : objects(p, OWL2.propertyChainAxiom.asNode())){
+                    Expression chain = new Expression();
+                    for(Node link : list(list)){
+                        if(!chain.getSegments().isEmpty()){
+                            chain.appendText(" ").appendLogic("o").appendText(" ");
+                        }
+                        chain.append(renderProperty(link));
+                    }
+                    chains.add(chain);
+                }
+                d.addRelation("hassubpropertychains", true, chains);
+            }
+            Set<Node> disjoint = related(p, OWL2.propertyDisjointWith.asNode());
+            disjoint.addAll(members(p, OWL2.AllDisjointProperties.asNode()));
+            d.addRelation("isdisjointwith", false, renderProperties(disjoint));
+            if(!d.getCharacteristics().isEmpty() || hasStatements(p)){
+                descriptions.add(d);
+            }
+        }
+        return descriptions;
+    }
+
+    /**
+     * Description with the annotations of an entity.
+     */
+    private EntityDescription describe(Node entity, Kind kind){
+        EntityDescription d = new EntityDescription(entity.getURI(), kind);
+        register(entity);
+        d.setLabel(labels.get(d.getIri()));
+        d.setComment(getAnnotation(entity, RDFS.comment.asNode()));
+        for(Node value : objects(entity, RDFS.isDefinedBy.asNode())){
+            if(value.isURI()){
+                d.getDefinedBy().add(value.getURI());
+            }else if(value.isLiteral()){
+                d.getDefinedBy().add(value.getLiteralLexicalForm());
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Whether an entity has any statement besides its declaration (e.g., an
+     * annotation), which is enough to describe it.
+     */
+    private boolean hasStatements(Node entity){
+        ExtendedIterator<Triple> it = graph.find(entity, Node.ANY, Node.ANY);
+        try{
+            while(it.hasNext()){
+                if(!it.next().getPredicate().equals(TYPE)){
+                    return true;
+                }
+            }
+            return false;
+        }finally{
+            it.close();
+        }
+    }
+
+    /**
+     * Value of an annotation of an entity, chosen like f:isInLanguage: the
+     * one in the language of the documentation, otherwise the one in the
+     * default language, otherwise the first one.
+     */
+    private String getAnnotation(Node subject, Node property){
+        String first = null, inDefault = null;
+        for(Node value : objects(subject, property)){
+            if(!value.isLiteral()){
+                continue;
+            }
+            String lang = value.getLiteralLanguage();
+            if(language.equals(lang)){
+                return value.getLiteralLexicalForm();
+            }
+            if(inDefault == null && DEFAULT_LANGUAGE.equals(lang)){
+                inDefault = value.getLiteralLexicalForm();
+            }
+            if(first == null){
+                first = value.getLiteralLexicalForm();
+            }
+        }
+        return inDefault != null ? inDefault : first;
+    }
+
+    /**
+     * Looks up the label and kinds of an entity the first time it is
+     * described or referenced.
+     */
+    private void register(Node entity){
+        if(!kinds.containsKey(entity.getURI())){
+            kinds.put(entity.getURI(), getKinds(entity));
+            String label = getAnnotation(entity, RDFS.label.asNode());
+            if(label != null){
+                labels.put(entity.getURI(), label);
+            }
+        }
+    }
+
+    private Set<Kind> getKinds(Node entity){
+        Set<Kind> cached = kinds.get(entity.getURI());
+        if(cached != null){
+            return cached;
+        }
+        Set<Kind> k = new HashSet<Kind>();
+        for(Node type : objects(entity, TYPE)){
+            if(type.equals(OWL2.Class.asNode()) || type.equals(RDFS.Class.asNode())){
+                k.add(Kind.CLASS);
+            }else if(type.equals(OWL2.ObjectProperty.asNode())){
+                k.add(Kind.OBJECT_PROPERTY);
+            }else if(type.equals(OWL2.DatatypeProperty.asNode())){
+                k.add(Kind.DATA_PROPERTY);
+            }else if(type.equals(OWL2.AnnotationProperty.asNode())){
+                k.add(Kind.ANNOTATION_PROPERTY);
+            }else if(type.equals(OWL2.NamedIndividual.asNode()) || !isBuiltIn(type)){
+                //the members of the classes of the ontology are individuals
+                k.add(Kind.INDIVIDUAL);
+            }else{
+                for(int i = 1; i < CHARACTERISTICS.length; i++){
+                    if(type.equals(CHARACTERISTICS[i])){
+                        k.add(Kind.OBJECT_PROPERTY);
+                    }
+                }
+            }
+        }
+        return k;
+    }
+
+    private static boolean isBuiltIn(Node type){
+        if(!type.isURI()){
+            return false;
+        }
+        String iri = type.getURI();
+        return iri.startsWith(OWL2.NS) || iri.startsWith(RDFS.getURI()) || iri.startsWith(RDF.getURI());
+    }
+
+    private static boolean isDatatype(Node range){
+        return range.isURI() && (range.getURI().startsWith(XSD.getURI()) || range.equals(RDFS.Literal.asNode())
+                || range.getURI().startsWith(RDF.getURI()));
+    }
+
+    private List<Expression> references(Set<Node> entities, Kind kind){
+        List<Expression> values = new ArrayList<Expression>();
+        for(Node entity : entities){
+            if(entity.isURI()){
+                values.add(reference(entity, kind));
+            }
+        }
+        return values;
+    }
+
+    private Expression reference(Node entity, Kind kind){
+        register(entity);
+        return Expression.reference(entity.getURI(), kind);
+    }
+
+    /**
+     * Individual of an enumeration or a value restriction, which LODE shows
+     * without its type.
+     */
+    private Expression value(Node individual){
+        register(individual);
+        return Expression.untypedReference(individual.getURI(), Kind.INDIVIDUAL);
+    }
+
+    private List<Expression> renderAll(Set<Node> values, boolean dataRange){
+        List<Expression> rendered = new ArrayList<Expression>();
+        for(Node value : values){
+            rendered.add(render(value, dataRange));
+        }
+        return rendered;
+    }
+
+    private List<Expression> renderProperties(Set<Node> properties){
+        List<Expression> rendered = new ArrayList<Expression>();
+        for(Node p : properties){
+            rendered.add(renderProperty(p));
+        }
+        return rendered;
+    }
+
+    private Expression renderProperty(Node property){
+        if(property.isURI()){
+            return reference(property, getKinds(property).contains(Kind.DATA_PROPERTY) ? Kind.DATA_PROPERTY : Kind.OBJECT_PROPERTY);
+        }
+        Node inverse = object(property, OWL2.inverseOf.asNode());
+        if(inverse != null){
+            return new Expression().appendLogic("inverse").appendText(" ").append(renderProperty(inverse));
+        }
+        return new Expression().appendText(property.toString());
+    }
+
+    /**
+     * Renders a class expression (or a data range) from its RDF mapping, as
+     * OWLAPIEntityDescriber renders the axioms: restrictions as "property
+     * some filler", boolean expressions with their complex operands between
+     * brackets.
+     */
+    private Expression render(Node ce, boolean dataRange){
+        if(ce.isURI()){
+            if(dataRange || isDatatype(ce)){
+                return reference(ce, null);
+            }
+            return reference(ce, Kind.CLASS);
+        }
+        if(ce.isLiteral()){
+            return new Expression().appendText("\""+ce.getLiteralLexicalForm()+"\"");
+        }
+        Node operands;
+        if((operands = object(ce, OWL2.intersectionOf.asNode())) != null){
+            return renderFormula(sorted(list(operands)), "and", dataRange);
+        }
+        if((operands = object(ce, OWL2.unionOf.asNode())) != null){
+            return renderFormula(sorted(list(operands)), "or", dataRange);
+        }
+        Node operand;
+        if((operand = object(ce, OWL2.complementOf.asNode())) != null){
+            return new Expression().appendLogic("not").appendText(" (").append(render(operand, false)).appendText(")");
+        }
+        if((operand = object(ce, OWL2.datatypeComplementOf.asNode())) != null){
+            return new Expression().appendLogic("not").appendText(" (").append(render(operand, true)).appendText(")");
+        }
+        if((operands = object(ce, OWL2.oneOf.asNode())) != null){
+            Expression e = new Expression().appendText("{ ");
+            boolean first = true;
+            for(Node individual : sorted(list(operands))){
+                if(!first){
+                    e.appendText(" , ");
+                }
+                e.append(individual.isURI() ? value(individual) : render(individual, true));
+                first = false;
+            }
+            return e.appendText(" }");
+        }
+        if(object(ce, OWL2.onDatatype.asNode()) != null){
+            //LODE has no template for datatype restrictions, which are shown empty
+            return new Expression();
+        }
+        Node property = object(ce, OWL2.onProperty.asNode());
+        if(property != null){
+            return renderRestriction(ce, property);
+        }
+        return new Expression().appendText(ce.toString());
+    }
+
+    private Expression renderRestriction(Node restriction, Node property){
+        boolean data = getKinds(property).contains(Kind.DATA_PROPERTY);
+        Node filler;
+        if((filler = object(restriction, OWL2.someValuesFrom.asNode())) != null){
+            return renderProperty(property).appendText(" ").appendLogic("some").appendText(" ")
+                    .append(render(filler, data || isDatatype(filler)));
+        }
+        if((filler = object(restriction, OWL2.allValuesFrom.asNode())) != null){
+            return renderProperty(property).appendText(" ").appendLogic("only").appendText(" ")
+                    .append(render(filler, data || isDatatype(filler)));
+        }
+        Node value;
+        if((value = object(restriction, OWL2.hasValue.asNode())) != null){
+            return renderProperty(property).appendText(" ").appendLogic("value").appendText(" ")
+                    .append(value.isURI() ? value(value) : render(value, true));
+        }
+        if(object(restriction, OWL2.hasSelf.asNode()) != null){
+            return renderProperty(property).appendText(" ").appendLogic("self");
+        }
+        Node[][] cardinalities = {
+            {OWL2.minCardinality.asNode(), OWL2.minQualifiedCardinality.asNode()},
+            {OWL2.maxCardinality.asNode(), OWL2.maxQualifiedCardinality.asNode()},
+            {OWL2.cardinality.asNode(), OWL2.qualifiedCardinality.asNode()}};
+        String[] operators = {"min", "max", "exactly"};
+        for(int i = 0; i < cardinalities.length; i++){
+            for(int j = 0; j < 2; j++){
+                Node n = object(restriction, cardinalities[i][j]);
+                if(n == null || !n.isLiteral()){
+                    continue;
+                }
+                Expression e = renderProperty(property).appendText(" ").appendLogic(operators[i])
+                        .appendText(" "+n.getLiteralLexicalForm());
+                //LODE has no template for owl:onDataRange, so only classes are shown
+                Node qualifier = object(restriction, OWL2.onClass.asNode());
+                if(j == 1 && qualifier != null){
+                    e.appendText(" ").append(render(qualifier, data || isDatatype(qualifier)));
+                }
+                return e;
+            }
+        }
+        return new Expression().appendText(restriction.toString());
+    }
+
+    private Expression renderFormula(List<Node> operands, String operator, boolean dataRange){
+        Expression e = new Expression();
+        boolean first = true;
+        for(Node operand : operands){
+            if(!first){
+                e.appendText(" ").appendLogic(operator).appendText(" ");
+            }
+            Expression rendered = render(operand, dataRange);
+            if(rendered.isReference()){
+                e.append(rendered);
+            }else{
+                e.appendText("(").append(rendered).appendText(")");
+            }
+            first = false;
+        }
+        return e;
+    }
+
+    /**
+     * @return the entities related to an entity by a symmetric property
+     * (equivalence, disjointness or inverse), in both directions.
+     */
+    private Set<Node> related(Node entity, Node property){
+        Set<Node> related = objects(entity, property);
+        related.addAll(subjects(property, entity));
+        related.remove(entity);
+        return related;
+    }
+
+    /**
+     * @return the other members of the axioms of a type (e.g.,
+     * owl:AllDisjointClasses) whose owl:members include an entity.
+     */
+    private Set<Node> members(Node entity, Node type){
+        Set<Node> found = new LinkedHashSet<Node>();
+        for(Node cell : subjects(FIRST, entity)){
+            //back to the start of the list
+            Node head = cell;
+            Set<Node> visited = new HashSet<Node>();
+            Node previous;
+            while(visited.add(head) && (previous = subject(REST, head)) != null){
+                head = previous;
+            }
+            for(Node axiom : subjects(OWL2.members.asNode(), head)){
+                if(graph.contains(axiom, TYPE, type)){
+                    found.addAll(list(head));
+                }
+            }
+        }
+        found.remove(entity);
+        return found;
+    }
+
+    /**
+     * @return the elements of an RDF list.
+     */
+    private List<Node> list(Node head){
+        List<Node> elements = new ArrayList<Node>();
+        Set<Node> visited = new HashSet<Node>();
+        while(head != null && !head.equals(NIL) && visited.add(head)){
+            Node element = object(head, FIRST);
+            if(element != null){
+                elements.add(element);
+            }
+            head = object(head, REST);
+        }
+        return elements;
+    }
+
+    /**
+     * @return the operands in the order of the sets of the OWL API: the named
+     * ones first, by IRI, and then the anonymous ones.
+     */
+    private static List<Node> sorted(List<Node> operands){
+        List<Node> sorted = new ArrayList<Node>(operands);
+        Collections.sort(sorted, new Comparator<Node>() {
+            public int compare(Node n1, Node n2) {
+                if(n1.isURI() && n2.isURI()){
+                    return n1.getURI().compareTo(n2.getURI());
+                }
+                return (n1.isURI() ? 0 : 1) - (n2.isURI() ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    private Set<Node> objects(Node subject, Node property){
+        Set<Node> objects = new LinkedHashSet<Node>();
+        ExtendedIterator<Triple> it = graph.find(subject, property, Node.ANY);
+        try{
+            while(it.hasNext()){
+                objects.add(it.next().getObject());
+            }
+        }finally{
+            it.close();
+        }
+        return objects;
+    }
+
+    private Set<Node> subjects(Node property, Node object){
+        Set<Node> subjects = new LinkedHashSet<Node>();
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, property, object);
+        try{
+            while(it.hasNext()){
+                subjects.add(it.next().getSubject());
+            }
+        }finally{
+            it.close();
+        }
+        return subjects;
+    }
+
+    private Node object(Node subject, Node property){
+        ExtendedIterator<Triple> it = graph.find(subject, property, Node.ANY);
+        try{
+            return it.hasNext() ? it.next().getObject() : null;
+        }finally{
+            it.close();
+        }
+    }
+
+    private Node subject(Node property, Node object){
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, property, object);
+        try{
+            return it.hasNext() ? it.next().getSubject() : null;
+        }finally{
+            it.close();
+        }
+    }
+}
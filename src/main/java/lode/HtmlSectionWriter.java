@@ -0,0 +1,431 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lode.EntityDescription.Kind;
+
+/**
+ * Writes the class, object property and data property sections with the
+ * same html LODE produces (once processed by LODEParser): the same
+ * elements, classes and headings, with the ids of the entities being their
+ * IRI without the namespace of the ontology.
+ * The html is written directly to a Writer, so a section is never kept in
+ * memory as a tree.
+ */
+public class HtmlSectionWriter {
+
+    private static final String OWL_THING = "http://www.w3.org/2002/07/owl#Thing";
+    //[[url][text]] in comments is rendered as a link
+    private static final Pattern LINK = Pattern.compile("\\[\\[([^\\[\\]]+)\\]\\[([^\\[\\]]+)\\]\\]");
+
+    private final DescriptionLabels labels;
+    private final String namespace;
+    private final Map<String, String> entityLabels;
+    private final Map<String, Set<Kind>> kinds;
+    private final Map<String, String> namespaces;
+    private final Map<String, Set<Kind>> documented = new HashMap<String, Set<Kind>>();
+
+    /**
+     * @param labels headings in the language of the documentation.
+     * @param namespace namespace of the ontology, removed from the IRIs to
+     * obtain the ids of the entities.
+     * @param entityLabels rdfs:label of the entities that have one.
+     * @param kinds the kinds each IRI of the ontology is declared as.
+     * @param namespaces namespaces of the ontology by prefix, used for the
+     * labels of the IRIs without local name.
+     * @param entities all the entities that will be described in the
+     * document, which are the ones that references link to.
+     */
+    public HtmlSectionWriter(DescriptionLabels labels, String namespace, Map<String, String> entityLabels,
+            Map<String, Set<Kind>> kinds, Map<String, String> namespaces, Collection<EntityDescription> entities) {
+        this.labels = labels;
+        this.namespace = namespace == null ? "" : namespace;
+        this.entityLabels = entityLabels;
+        this.kinds = kinds;
+        this.namespaces = namespaces;
+        for(EntityDescription e : entities){
+            Set<Kind> k = documented.get(e.getIri());
+            if(k == null){
+                k = new HashSet<Kind>();
+                documented.put(e.getIri(), k);
+            }
+            k.add(e.getKind());
+        }
+    }
+
+    /**
+     * Writes a whole section: its heading, the list of terms and the
+     * description of each of them, sorted by label.
+     * @param out where the html is written.
+     * @param kind kind of the entities of the section (classes, object
+     * properties or data properties).
+     * @param entities descriptions of the entities of the section.
+     */
+    public void writeSection(Writer out, Kind kind, List<EntityDescription> entities) throws IOException{
+        List<EntityDescription> sorted = sort(entities);
+        String section = getSectionId(kind);
+        out.write("<div id=\""+section+"\">\n");
+        out.write("<h2>"+escape(labels.get(section))+"</h2>\n");
+        writeTermList(out, sorted);
+        for(EntityDescription entity : sorted){
+            writeEntity(out, section, entity);
+        }
+        out.write("</div>\n");
+    }
+
+    /**
+     * Writes the list of terms of a section (the one used in the overview).
+     */
+    public void writeList(Writer out, List<EntityDescription> entities) throws IOException{
+        writeTermList(out, sort(entities));
+    }
+
+    private void writeTermList(Writer out, List<EntityDescription> sorted) throws IOException{
+        out.write("<ul class=\"hlist\">\n");
+        for(EntityDescription entity : sorted){
+            out.write("<li><a href=\"#"+escape(getId(entity.getIri()))+"\" title=\""+escape(entity.getIri())+"\">");
+            if(entity.getLabel() != null){
+                out.write(escape(entity.getLabel()));
+            }else{
+                out.write("<span>"+escape(getLabel(entity.getIri()))+"</span>");
+            }
+            out.write("</a></li>\n");
+        }
+        out.write("</ul>\n");
+    }
+
+    private void writeEntity(Writer out, String section, EntityDescription entity) throws IOException{
+        Kind kind = entity.getKind();
+        out.write("<div id=\""+escape(getId(entity.getIri()))+"\" class=\"entity\">\n");
+        out.write("<h3>"+escape(getLabel(entity.getIri())));
+        writeTypeDescriptor(out, entity.getIri(), kind);
+        out.write("<span class=\"backlink\"> "+escape(labels.get("backto"))+" <a href=\"#toc\">"+escape(labels.get("tocabbr"))+"</a> "
+                +escape(labels.get("or"))+" <a href=\"#"+section+"\">"+escape(labels.get(getTocLabel(kind)))+"</a></span></h3>\n");
+        out.write("<p><strong>IRI:</strong> "+escape(entity.getIri())+"</p>\n");
+        if(!entity.getDefinedBy().isEmpty()){
+            out.write("<dl class=\"definedBy\">\n<dt>"+escape(labels.get("isdefinedby"))+"</dt>\n");
+            for(String source : entity.getDefinedBy()){
+                out.write("<dd><a href=\""+escape(source)+"\">"+escape(source)+"</a></dd>\n");
+            }
+            out.write("</dl>\n");
+        }
+        if(entity.getComment() != null){
+            out.write("<div class=\"comment\">\n");
+            writeContent(out, entity.getComment());
+            out.write("</div>\n");
+        }
+        //as in LODE, the characteristics of a property are only shown with its other relations
+        if(!entity.getRelations().isEmpty()){
+            if(kind == Kind.CLASS){
+                out.write("<dl class=\"description\">\n");
+                writeRelations(out, entity);
+                out.write("</dl>\n");
+            }else{
+                out.write("<div class=\"description\">\n");
+                writeCharacteristics(out, entity);
+                out.write("<dl>\n");
+                writeRelations(out, entity);
+                out.write("</dl>\n</div>\n");
+            }
+        }
+        out.write("</div>\n");
+    }
+
+    private void writeCharacteristics(Writer out, EntityDescription entity) throws IOException{
+        List<String> characteristics = entity.getCharacteristics();
+        if(characteristics.isEmpty()){
+            return;
+        }
+        out.write("<p><strong>"+escape(labels.get("hascharacteristics"))+":</strong> ");
+        for(int i = 0; i < characteristics.size(); i++){
+            if(i > 0){
+                out.write(", ");
+            }
+            out.write(escape(labels.get(characteristics.get(i))));
+        }
+        out.write("</p>\n");
+    }
+
+    private void writeRelations(Writer out, EntityDescription entity) throws IOException{
+        for(EntityDescription.Relation relation : entity.getRelations()){
+            out.write("<dt>"+escape(labels.get(relation.getName()))+"</dt>\n");
+            if(relation.isOneValuePerLine()){
+                for(Expression value : relation.getValues()){
+                    out.write("<dd>");
+                    writeExpression(out, value);
+                    out.write("</dd>\n");
+                }
+            }else{
+                out.write("<dd>");
+                List<Expression> values = sortReferences(relation.getValues());
+                for(int i = 0; i < values.size(); i++){
+                    if(i > 0){
+                        out.write(", ");
+                    }
+                    writeExpression(out, values.get(i));
+                }
+                out.write("</dd>\n");
+            }
+        }
+    }
+
+    private void writeExpression(Writer out, Expression expression) throws IOException{
+        for(Expression.Segment segment : expression.getSegments()){
+            switch(segment.getType()){
+                case TEXT:
+                    out.write(escape(segment.getValue()));
+                    break;
+                case LOGIC:
+                    out.write("<span class=\"logic\">"+escape(segment.getValue())+"</span>");
+                    break;
+                case REFERENCE:
+                    writeReference(out, segment.getValue(), segment.getKind(), segment.isTyped());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * A reference links to the description of the entity if the document
+     * has one of the expected kind.
+     */
+    private void writeReference(Writer out, String iri, Kind kind, boolean typed) throws IOException{
+        if(isDocumented(iri, kind)){
+            out.write("<a href=\"#"+escape(getId(iri))+"\" title=\""+escape(iri)+"\">"+escape(getLabel(iri))+"</a>");
+        }else{
+            out.write("<span class=\"dotted\" title=\""+escape(iri)+"\">"+escape(getLabel(iri))+"</span>");
+        }
+        if(typed){
+            writeTypeDescriptor(out, iri, kind);
+        }
+    }
+
+    private void writeTypeDescriptor(Writer out, String iri, Kind kind) throws IOException{
+        Set<Kind> declared = kinds.get(iri);
+        if(declared == null){
+            declared = Collections.emptySet();
+        }
+        if(matches(Kind.CLASS, kind) && (declared.contains(Kind.CLASS) || OWL_THING.equals(iri))){
+            out.write("<sup title=\""+escape(labels.get("class"))+"\" class=\"type-c\">c</sup>");
+        }else if(matches(Kind.OBJECT_PROPERTY, kind) && declared.contains(Kind.OBJECT_PROPERTY)){
+            out.write("<sup title=\""+escape(labels.get("objectproperty"))+"\" class=\"type-op\">op</sup>");
+        }else if(matches(Kind.DATA_PROPERTY, kind) && declared.contains(Kind.DATA_PROPERTY)){
+            out.write("<sup title=\""+escape(labels.get("dataproperty"))+"\" class=\"type-dp\">dp</sup>");
+        }else if(matches(Kind.ANNOTATION_PROPERTY, kind) && declared.contains(Kind.ANNOTATION_PROPERTY)){
+            out.write("<sup title=\""+escape(labels.get("annotationproperty"))+"\" class=\"type-ap\">ap</sup>");
+        }else if(matches(Kind.INDIVIDUAL, kind) && declared.contains(Kind.INDIVIDUAL)){
+            out.write("<sup title=\""+escape(labels.get("namedindividual"))+"\" class=\"type-ni\">ni</sup>");
+        }
+    }
+
+    private boolean isDocumented(String iri, Kind kind){
+        Set<Kind> k = documented.get(iri);
+        if(k == null){
+            return false;
+        }
+        for(Kind documentedKind : k){
+            if(matches(documentedKind, kind)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an entity of a kind is valid where another kind is expected.
+     * As in LODE, object and data properties are both valid where a
+     * property is expected, and any kind is valid if none is expected.
+     */
+    private static boolean matches(Kind actual, Kind expected){
+        if(expected == null || actual == expected){
+            return true;
+        }
+        return isProperty(actual) && isProperty(expected);
+    }
+
+    private static boolean isProperty(Kind kind){
+        return kind == Kind.OBJECT_PROPERTY || kind == Kind.DATA_PROPERTY;
+    }
+
+    private void writeContent(Writer out, String text) throws IOException{
+        for(String line : text.split("\n")){
+            if("".equals(line.trim())){
+                continue;
+            }
+            out.write("<p>");
+            Matcher m = LINK.matcher(line);
+            int last = 0;
+            while(m.find()){
+                out.write(escape(line.substring(last, m.start())));
+                out.write("<a href=\""+escape(m.group(1))+"\">"+escape(m.group(2))+"</a>");
+                last = m.end();
+            }
+            out.write(escape(line.substring(last)));
+            out.write("</p>\n");
+        }
+    }
+
+    /**
+     * Values shown in the same line (subclasses, members, etc.) are sorted
+     * by label when they are all references to entities. As in the xsl:sort
+     * of LODE, labels are compared by codepoint, so capitalized labels go
+     * first.
+     */
+    private List<Expression> sortReferences(List<Expression> values){
+        for(Expression value : values){
+            if(!value.isReference()){
+                return values;
+            }
+        }
+        List<Expression> sorted = new ArrayList<Expression>(values);
+        Collections.sort(sorted, new Comparator<Expression>() {
+            public int compare(Expression e1, Expression e2) {
+                return getLabel(e1.getSegments().get(0).getValue()).compareTo(getLabel(e2.getSegments().get(0).getValue()));
+            }
+        });
+        return sorted;
+    }
+
+    private List<EntityDescription> sort(Collection<EntityDescription> entities){
+        List<EntityDescription> sorted = new ArrayList<EntityDescription>(entities);
+        Collections.sort(sorted, new Comparator<EntityDescription>() {
+            public int compare(EntityDescription e1, EntityDescription e2) {
+                return getSortKey(e1.getIri()).compareTo(getSortKey(e2.getIri()));
+            }
+        });
+        return sorted;
+    }
+
+    private String getSortKey(String iri){
+        return getLabel(iri).toLowerCase();
+    }
+
+    /**
+     * @return the id of the description of an entity: its IRI without the
+     * namespace of the ontology.
+     */
+    public String getId(String iri){
+        if("".equals(namespace)){
+            return iri;
+        }
+        return iri.replace(namespace, "");
+    }
+
+    /**
+     * Label of an entity, as f:getLabel: its rdfs:label or, if it does not
+     * have one, a label made from its IRI.
+     */
+    public String getLabel(String iri){
+        String label = entityLabels.get(iri);
+        if(label != null){
+            return label;
+        }
+        return computeLabel(iri);
+    }
+
+    /**
+     * Makes a label from the local name of an IRI, splitting camel case and
+     * underscores ("hasPart" is "has part"). IRIs without local name are
+     * shown with the prefix of their namespace.
+     */
+    private String computeLabel(String iri){
+        int index = iri.indexOf('#');
+        if(index < 0){
+            index = iri.replace("://", "---").lastIndexOf('/');
+        }
+        String localName = index < 0 ? "" : iri.substring(index + 1);
+        if(!"".equals(localName)){
+            return localName.replaceAll("([A-Z])", " $1").replaceAll("[_-]", " ").toLowerCase().trim().replaceAll("\\s+", " ");
+        }
+        if(index >= 0){
+            String ns = iri.substring(0, index + 1);
+            for(Map.Entry<String, String> prefix : namespaces.entrySet()){
+                if(ns.equals(prefix.getValue())){
+                    return prefix.getKey()+":"+iri.substring(index + 1);
+                }
+            }
+        }
+        return iri;
+    }
+
+    private static String getSectionId(Kind kind){
+        switch(kind){
+            case CLASS:
+                return "classes";
+            case OBJECT_PROPERTY:
+                return "objectproperties";
+            case DATA_PROPERTY:
+                return "dataproperties";
+            case ANNOTATION_PROPERTY:
+                return "annotationproperties";
+            default:
+                return "namedindividuals";
+        }
+    }
+
+    private static String getTocLabel(Kind kind){
+        switch(kind){
+            case CLASS:
+                return "classtoc";
+            case OBJECT_PROPERTY:
+                return "objectpropertytoc";
+            case DATA_PROPERTY:
+                return "datapropertytoc";
+            case ANNOTATION_PROPERTY:
+                return "annotationpropertytoc";
+            default:
+                return "namedindividualtoc";
+        }
+    }
+
+    private static String escape(String text){
+        StringBuilder sb = new StringBuilder(text.length());
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            switch(c){
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -23,51 +23,162 @@
 
 package lode;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.StringReader;
-import java.net.URISyntaxException;
-import javax.xml.transform.Transformer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
-import org.semanticweb.owlapi.apibinding.OWLManager;
-import org.semanticweb.owlapi.io.OWLOntologyDocumentTarget;
+import net.sf.saxon.Controller;
+import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.tree.tiny.TinyBuilder;
+import net.sf.saxon.value.ObjectValue;
 import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
-import org.semanticweb.owlapi.io.StringDocumentTarget;
-import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
 import org.semanticweb.owlapi.model.OWLOntology;
-import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyStorageException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.xml.sax.ContentHandler;
 import widoco.Configuration;
+import widoco.WidocoUtils;
 
 /**
  *
  * @author Silvio Peroni, adpated to Widoco (and modified) by Daniel Garijo
  */
 public class LODEGeneration {
+
+    /**
+     * Sections of the LODE page that are reused in Widoco's documentation.
+     */
+    public static final String WIDOCO_SECTIONS = "classes objectproperties dataproperties namespacedeclarations";
+    //the stylesheet and the files it refers to are loaded from the classpath
+    private static final String STYLESHEET = "/lode/extraction.xsl";
+    private static final String DEFAULT_LANGUAGE = "en";
+    private static final String TABLES_MODE_NAMESPACE = "http://www.essepuntato.it/xslt/function";
     
-    public static String getLODEhtml(Configuration c, File lodeResources) {
-        try {
+    /**
+     * Applies LODE sending the html of each section to its own SAX handler
+     * while it is produced, so the result is never built as a tree. The
+     * ontology is parsed once into a tree shared by all the sections, and
+     * each section is rendered by its own transformation in a pool of
+     * Configuration.getLodeThreads() threads. Each handler is only called
+     * from the thread rendering its section.
+     * @param c configuration with the ontology to document.
+     * @param sections ids of the sections to render.
+     * @param handlers handler of each section.
+     * @throws Exception if the ontology cannot be loaded or the
+     * transformation fails.
+     */
+    public static void streamLODESections(Configuration c, String[] sections, ContentHandler[] handlers) throws Exception {
+        DocumentInfo tree = loadSourceTree(c);
+        Result[] results = new Result[handlers.length];
+        for(int i = 0; i < handlers.length; i++){
+            results[i] = new SAXResult(handlers[i]);
+        }
+        transformSections(tree, sections, results, c.getOntologyURI(), getLanguage(c), c.getLodeThreads());
+    }
+
+    static String getLanguage(Configuration c){
+        String lang = c.getLanguage();
+        if (lang == null || "".equals(lang)) {
+                lang = DEFAULT_LANGUAGE;
+        }
+        return lang;
+    }
 
-            String content = "";
-            String lang = c.getLanguage();
-            if (lang == null || "".equals(lang)) {
-                    lang = "en";
+    /**
+     * Loads the ontology and builds the tree the stylesheet is applied to.
+     * The tree is immutable, so it can be shared by several transformations
+     * running at the same time.
+     */
+    private static DocumentInfo loadSourceTree(Configuration c) throws Exception {
+        //the ontology is parsed once and shared with the other steps of the run
+        OWLOntologyManager manager = c.getOntologySource().getManager();
+        OWLOntology ontology = WidocoUtils.loadOntology(c);
+        //the RDF/XML is streamed to Saxon while it is being serialized
+        RDFXMLPipe pipe = new RDFXMLPipe(manager, ontology);
+        pipe.start();
+        DocumentInfo tree;
+        try{
+            tree = TemplatesCache.buildDocument(new StreamSource(pipe.getInput()));
+        }catch(TransformerException e){
+            //a failed serialization shows up as a malformed document: report its cause
+            pipe.checkError();
+            throw e;
+        }finally{
+            pipe.close();
+        }
+        pipe.checkError();
+        return tree;
+    }
+
+    /**
+     * Renders each section into its result, in a pool of threads. The tables
+     * of prefixes and labels and the index of the entities are computed
+     * before, and shared by all the sections.
+     */
+    private static void transformSections(final DocumentInfo tree, String[] sections, final Result[] results, final String ontologyUrl,
+            final String lang, int threads) throws TransformerException {
+        final EntityIndex index = new EntityIndex(tree);
+        final DocumentInfo tables = computeTables(tree, ontologyUrl, lang, index);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sections.length)));
+        try{
+            List<Future<Void>> parts = new ArrayList<Future<Void>>();
+            for(int i = 0; i < sections.length; i++){
+                final String section = sections[i];
+                final Result result = results[i];
+                parts.add(pool.submit(new Callable<Void>() {
+                    public Void call() throws TransformerException {
+                        applyXSLTTransformation(tree, result, ontologyUrl, lang, section, tables, index);
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> part : parts){
+                getPart(part);
             }
-            //load with jena in rdf xml
-            content = parseWithOWLAPI(c.getOntologyPath(), c.isFromFile());
-            content = applyXSLTTransformation(content, c.getOntologyURI(), lang, lodeResources);
-            return(content);
+        }finally{
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the f:tables mode of the stylesheet, which returns the prefixes
+     * and the labels of the document in the language of the documentation.
+     */
+    private static DocumentInfo computeTables(DocumentInfo tree, String ontologyUrl, String lang, EntityIndex index)
+    throws TransformerException {
+        Controller transformer = newTransformer(ontologyUrl, lang, "", null, index);
+        transformer.setInitialMode("{"+TABLES_MODE_NAMESPACE+"}tables");
+        TinyBuilder builder = new TinyBuilder(transformer.makePipelineConfiguration());
+        transformer.transform(tree, builder);
+        return (DocumentInfo) builder.getCurrentRoot();
+    }
+
+    private static <T> T getPart(Future<T> part) throws TransformerException{
+        try{
+            return part.get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new TransformerException("Interrupted while rendering the LODE sections", e);
+        }catch(ExecutionException e){
+            if(e.getCause() instanceof TransformerException){
+                throw (TransformerException) e.getCause();
+            }
+            throw new TransformerException(e.getCause());
         }
-        catch (Exception e) {
-            System.err.println("Error while applyin LODE. Error while applying the XLS file: "+e.getMessage());
-            
-        } 
-        return null;
-	
     }
 	
 //	private void resolvePaths(HttpServletRequest request) {
@@ -77,41 +188,6 @@ public class LODEGeneration {
 //		cssLocation = requestURL.substring(0, index) + File.separator;
 //	}
 	
-	private static String parseWithOWLAPI(
-			String ontologyURL,
-                        boolean loadFromFile) 
-	throws OWLOntologyCreationException, OWLOntologyStorageException, URISyntaxException {
-            String result = "";
-            OWLOntologyManager manager = OWLManager.createOWLOntologyManager();			
-            OWLOntology ontology;
-            if(loadFromFile){
-                ontology= manager.loadOntologyFromOntologyDocument(new File(ontologyURL));
-            }
-            else{
-                ontology = manager.loadOntology(IRI.create(ontologyURL));
-            }
-            //this adds extra complexity that I don't want to include yet in the tool
-//                    if (considerImportedClosure || considerImportedOntologies) {
-//                            Set<OWLOntology> setOfImportedOntologies = new HashSet<OWLOntology>();
-//                            if (considerImportedOntologies) {
-//                                    setOfImportedOntologies.addAll(ontology.getDirectImports());
-//                            } else {
-//                                    setOfImportedOntologies.addAll(ontology.getImportsClosure());
-//                            }
-//                            for (OWLOntology importedOntology : setOfImportedOntologies) {
-//                                    manager.addAxioms(ontology, importedOntology.getAxioms());
-//                            }
-//                    }
-
-            OWLOntologyDocumentTarget parsedOntology = new StringDocumentTarget();
-
-            manager.saveOntology(ontology, new RDFXMLOntologyFormat(), parsedOntology);
-            result = parsedOntology.toString();
-//		}
-
-            return result;
-	}
-	
 //	private String addImportedAxioms(String result, List<String> removed) {
 //		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 //	    factory.setNamespaceAware(true);
@@ -306,31 +382,148 @@ public class LODEGeneration {
 //	}
 	
 	
-    private static String applyXSLTTransformation(String source, String ontologyUrl, String lang, File resourcesFile) 
-	throws TransformerException {	
-		TransformerFactory tfactory = new net.sf.saxon.TransformerFactoryImpl();
-		
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-//		URL xsltURL = Thread.currentThread().getContextClassLoader().getResource("lode/extraction.xsl");
-		Transformer transformer =
-			tfactory.newTransformer(
-//                                        new StreamSource(ClassLoader.getSystemResourceAsStream("lode/extraction.xsl")));
-                                        new StreamSource(resourcesFile.getPath()+File.separator+"extraction.xsl"));
-//                                        new StreamSource(ClassLoader.getSystemResourceAsStream("lode/resources/extraction.xsl")));
-		
+    private static void applyXSLTTransformation(Source source, Result result, String ontologyUrl, String lang, String sections,
+            DocumentInfo tables, EntityIndex index) throws TransformerException {
+		newTransformer(ontologyUrl, lang, sections, tables, index).transform(
+				source, 
+				result);
+	}
+
+    /**
+     * Creates a transformer of the stylesheet with its parameters. The tables
+     * and the index of the document are optional: if they are null, the
+     * stylesheet computes them.
+     */
+    private static Controller newTransformer(String ontologyUrl, String lang, String sections, DocumentInfo tables, EntityIndex index)
+	throws TransformerException {
+                //the stylesheet is compiled once per JVM, not once per transformation
+		Controller transformer = (Controller) TemplatesCache.getTemplates(getStylesheet()).newTransformer();
+                //the label files loaded by the stylesheet are read from the classpath
+		transformer.setURIResolver(TemplatesCache.getURIResolver());
+
                 //this will be modified later on, so it is not important right now
 //		transformer.setParameter("css-location", "");
 		transformer.setParameter("lang", lang);
 		transformer.setParameter("ontology-url", ontologyUrl);
+		transformer.setParameter("sections", sections);
+                //the label files are parsed once per JVM and shared by all transformations
+		transformer.setParameter("default-labels-document", getLabels(DEFAULT_LANGUAGE));
+		DocumentInfo labels = getLabels(lang);
+		if(labels != null){
+			transformer.setParameter("labels-document", labels);
+		}
+		if(tables != null){
+			transformer.setParameter("tables-document", tables);
+		}
+		if(index != null){
+			transformer.setParameter("entity-index", new ObjectValue(index));
+		}
 //		transformer.setParameter("source", cssLocation + "source");
-		
-		StreamSource inputSource = new StreamSource(new StringReader(source));
-		
-		transformer.transform(
-				inputSource, 
-				new StreamResult(output));
-		
-		return output.toString();
+		return transformer;
 	}
-        
+
+    /**
+     * Serializes an ontology in RDF/XML in a background thread, writing into a
+     * pipe that is read by the transformation. This way the serialization is
+     * never held in memory as a whole: only the OWLAPI model and the Saxon
+     * tree coexist.
+     */
+    static class RDFXMLPipe implements Runnable{
+        private static final int BUFFER_SIZE = 64*1024;
+        private final OWLOntologyManager manager;
+        private final OWLOntology ontology;
+        private final PipedInputStream input;
+        private final PipedOutputStream output;
+        private volatile Exception error;
+
+        public RDFXMLPipe(OWLOntologyManager manager, OWLOntology ontology) throws IOException {
+            this.manager = manager;
+            this.ontology = ontology;
+            this.input = new PipedInputStream(BUFFER_SIZE);
+            this.output = new PipedOutputStream(input);
+        }
+
+        public void start(){
+            Thread t = new Thread(this, "LODE RDF/XML serializer");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        public void run() {
+            try{
+                manager.saveOntology(ontology, new RDFXMLOntologyFormat(), new StreamDocumentTarget(output));
+            }catch(OWLOntologyStorageException e){
+                error = e;
+            }catch(RuntimeException e){
+                error = e;
+            }finally{
+                try{
+                    output.close();
+                }catch(IOException e){
+                    //the reader has already given up
+                }
+            }
+        }
+
+        public InputStream getInput() {
+            return input;
+        }
+
+        /**
+         * Closes the reading end, so the serializer does not block forever
+         * if the transformation stopped before consuming the whole document.
+         */
+        public void close(){
+            try{
+                input.close();
+            }catch(IOException e){
+                System.err.println("Error while closing the ontology pipe: "+e.getMessage());
+            }
+        }
+
+        /**
+         * Rethrows the error of the serializer, if any. Otherwise a truncated
+         * serialization could go unnoticed.
+         */
+        public void checkError() throws OWLOntologyStorageException{
+            Exception e = error;
+            if(e instanceof OWLOntologyStorageException){
+                throw (OWLOntologyStorageException)e;
+            }
+            if(e != null){
+                throw new OWLOntologyStorageException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the labels of the documentation in a language, or null if
+     * there is no label file for it.
+     */
+    private static DocumentInfo getLabels(String lang) throws TransformerException{
+        URL location = LODEGeneration.class.getResource("/lode/"+lang+".xml");
+        if(location == null){
+            return null;
+        }
+        return TemplatesCache.getDocument(location);
+    }
+
+    private static URL getStylesheet(){
+        return LODEGeneration.class.getResource(STYLESHEET);
+    }
+
+    /**
+     * Compiles LODE's stylesheet in a background thread, so the first
+     * documentation generation does not have to wait for it.
+     */
+    public static void warmUp(){
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                TemplatesCache.warmUp(getStylesheet());
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import com.hp.hpl.jena.graph.Graph;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lode.EntityDescription.Kind;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyFormat;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.vocab.PrefixOWLOntologyFormat;
+import widoco.Configuration;
+import widoco.CrossReferenceContent;
+import widoco.WidocoUtils;
+
+/**
+ * Alternative to the XSLT pipeline of LODEGeneration and LODEParser: the
+ * sections are rendered directly from the axioms of the ontology loaded with
+ * the OWL API, without serializing it as RDF/XML, transforming it and parsing
+ * the result. The html has the same structure as the one obtained through
+ * LODE. It is used when the configuration asks for it (useNativeRenderer),
+ * and for the ontologies loaded in TDB (useTDB), which are described from
+ * their triples on disk.
+ */
+public class NativeRenderer implements CrossReferenceContent {
+
+    private String classes;
+    private String classList;
+    private String properties;
+    private String propertyList;
+    private String dataProp;
+    private String dataPropList;
+    private final HashMap<String, String> namespaceDeclarations;
+
+    /**
+     * Loads the ontology of the configuration and renders its sections.
+     * @throws Exception if the ontology cannot be loaded or rendered.
+     */
+    public NativeRenderer(Configuration c) throws Exception {
+        namespaceDeclarations = new HashMap<String, String>();
+        String lang = LODEGeneration.getLanguage(c);
+        if(c.isUseTDB()){
+            Graph graph = WidocoUtils.loadStore(c).getGraph();
+            render(new GraphEntityDescriber(graph, lang), graph.getPrefixMapping().getNsPrefixMap(), c);
+        }else{
+            OWLOntology ontology = WidocoUtils.loadOntology(c);
+            render(new OWLAPIEntityDescriber(ontology, lang), getPrefixes(c.getOntologySource().getManager(), ontology), c);
+        }
+    }
+
+    /**
+     * @return the namespaces of the ontology by prefix name (without ':').
+     */
+    private static Map<String, String> getPrefixes(OWLOntologyManager manager, OWLOntology ontology){
+        Map<String, String> prefixes = new HashMap<String, String>();
+        OWLOntologyFormat format = manager.getOntologyFormat(ontology);
+        if(format instanceof PrefixOWLOntologyFormat){
+            for(Map.Entry<String, String> prefix : ((PrefixOWLOntologyFormat) format).getPrefixName2PrefixMap().entrySet()){
+                //prefix names end with ':'
+                prefixes.put(prefix.getKey().substring(0, prefix.getKey().length() - 1), prefix.getValue());
+            }
+        }
+        return prefixes;
+    }
+
+    private void render(EntityDescriber describer, Map<String, String> prefixes, Configuration c) throws IOException{
+        DescriptionLabels labels = new DescriptionLabels(LODEGeneration.getLanguage(c));
+        Map<String, String> namespaces = new HashMap<String, String>();
+        for(Map.Entry<String, String> prefix : prefixes.entrySet()){
+            String name = prefix.getKey();
+            if(!"xml".equals(name)){
+                namespaces.put(name, prefix.getValue());
+                namespaceDeclarations.put("".equals(name) ? labels.get("namespace") : name, prefix.getValue());
+            }
+        }
+        List<EntityDescription> classDescriptions = describer.describeClasses();
+        List<EntityDescription> propertyDescriptions = describer.describeObjectProperties();
+        List<EntityDescription> dataPropDescriptions = describer.describeDataProperties();
+        List<EntityDescription> all = new ArrayList<EntityDescription>(classDescriptions);
+        all.addAll(propertyDescriptions);
+        all.addAll(dataPropDescriptions);
+        HtmlSectionWriter writer = new HtmlSectionWriter(labels, c.getMainOntology().getNamespaceURI(),
+                describer.getLabels(), describer.getKinds(), namespaces, all);
+        if(!classDescriptions.isEmpty()){
+            classList = writeList(writer, classDescriptions);
+            classes = writeSection(writer, Kind.CLASS, classDescriptions);
+        }
+        if(!propertyDescriptions.isEmpty()){
+            propertyList = writeList(writer, propertyDescriptions);
+            properties = writeSection(writer, Kind.OBJECT_PROPERTY, propertyDescriptions);
+        }
+        if(!dataPropDescriptions.isEmpty()){
+            dataPropList = writeList(writer, dataPropDescriptions);
+            dataProp = writeSection(writer, Kind.DATA_PROPERTY, dataPropDescriptions);
+        }
+    }
+
+    private static String writeList(HtmlSectionWriter writer, List<EntityDescription> entities) throws IOException{
+        StringWriter out = new StringWriter();
+        writer.writeList(out, entities);
+        return out.toString();
+    }
+
+    private static String writeSection(HtmlSectionWriter writer, Kind kind, List<EntityDescription> entities) throws IOException{
+        StringWriter out = new StringWriter();
+        writer.writeSection(out, kind, entities);
+        return out.toString();
+    }
+
+    public String getClassList() {
+        return classList;
+    }
+
+    public String getClasses() {
+        return classes;
+    }
+
+    public String getPropertyList() {
+        return propertyList;
+    }
+
+    public String getProperties() {
+        return properties;
+    }
+
+    public String getDataPropList() {
+        return dataPropList;
+    }
+
+    public String getDataProp() {
+        return dataProp;
+    }
+
+    public HashMap<String, String> getNamespaceDeclarations() {
+        return namespaceDeclarations;
+    }
+}
@@ -0,0 +1,695 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import lode.EntityDescription.Kind;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.ClassExpressionType;
+import org.semanticweb.owlapi.model.DataRangeType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAsymmetricObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataCardinalityRestriction;
+import org.semanticweb.owlapi.model.OWLDataComplementOf;
+import org.semanticweb.owlapi.model.OWLDataHasValue;
+import org.semanticweb.owlapi.model.OWLDataOneOf;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDataPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLDataPropertyDomainAxiom;
+import org.semanticweb.owlapi.model.OWLDataPropertyExpression;
+import org.semanticweb.owlapi.model.OWLDataPropertyRangeAxiom;
+import org.semanticweb.owlapi.model.OWLDataRange;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLDisjointClassesAxiom;
+import org.semanticweb.owlapi.model.OWLDisjointDataPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLDisjointObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLEquivalentClassesAxiom;
+import org.semanticweb.owlapi.model.OWLEquivalentDataPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLEquivalentObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLFunctionalDataPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLFunctionalObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLHasKeyAxiom;
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLInverseFunctionalObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLInverseObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLIrreflexiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNaryBooleanClassExpression;
+import org.semanticweb.owlapi.model.OWLNaryDataRange;
+import org.semanticweb.owlapi.model.OWLNaryPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectCardinalityRestriction;
+import org.semanticweb.owlapi.model.OWLObjectComplementOf;
+import org.semanticweb.owlapi.model.OWLObjectHasSelf;
+import org.semanticweb.owlapi.model.OWLObjectHasValue;
+import org.semanticweb.owlapi.model.OWLObjectInverseOf;
+import org.semanticweb.owlapi.model.OWLObjectOneOf;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLObjectPropertyDomainAxiom;
+import org.semanticweb.owlapi.model.OWLObjectPropertyExpression;
+import org.semanticweb.owlapi.model.OWLObjectPropertyRangeAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLPropertyExpression;
+import org.semanticweb.owlapi.model.OWLQuantifiedDataRestriction;
+import org.semanticweb.owlapi.model.OWLQuantifiedObjectRestriction;
+import org.semanticweb.owlapi.model.OWLReflexiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubDataPropertyOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubObjectPropertyOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubPropertyChainOfAxiom;
+import org.semanticweb.owlapi.model.OWLSymmetricObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLTransitiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+/**
+ * Describes the classes and properties of an ontology loaded with the OWL API,
+ * walking its axioms directly instead of serializing it as RDF/XML for
+ * extraction.xsl. The relations LODE looks up through the whole document
+ * (subclasses, domain of, range of, members and subproperties) are indexed
+ * once, so each entity is described from its own axioms.
+ */
+public class OWLAPIEntityDescriber implements EntityDescriber {
+
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    private final OWLOntology ontology;
+    private final String language;
+    private final Map<String, String> labels = new HashMap<String, String>();
+    private final Map<String, Set<Kind>> kinds = new HashMap<String, Set<Kind>>();
+    private final Map<String, List<Expression>> subClasses = new HashMap<String, List<Expression>>();
+    private final Map<String, List<Expression>> domainOf = new HashMap<String, List<Expression>>();
+    private final Map<String, List<Expression>> rangeOf = new HashMap<String, List<Expression>>();
+    private final Map<String, List<Expression>> members = new HashMap<String, List<Expression>>();
+    private final Map<String, List<Expression>> subProperties = new HashMap<String, List<Expression>>();
+    private final Map<String, List<Expression>> chains = new HashMap<String, List<Expression>>();
+
+    /**
+     * @param ontology the ontology to describe. Imported ontologies are not
+     * described, as in the RDF/XML given to LODE.
+     * @param language language of the labels and comments to show.
+     */
+    public OWLAPIEntityDescriber(OWLOntology ontology, String language) {
+        this.ontology = ontology;
+        this.language = language;
+        for(OWLEntity entity : ontology.getSignature()){
+            Kind kind = getKind(entity);
+            if(kind == null){
+                continue;
+            }
+            String iri = entity.getIRI().toString();
+            Set<Kind> k = kinds.get(iri);
+            if(k == null){
+                k = new HashSet<Kind>();
+                kinds.put(iri, k);
+            }
+            k.add(kind);
+            if(!labels.containsKey(iri)){
+                String label = getAnnotation(entity.getIRI(), OWLRDFVocabulary.RDFS_LABEL.getIRI());
+                if(label != null){
+                    labels.put(iri, label);
+                }
+            }
+        }
+        index();
+    }
+
+    /**
+     * @return the rdfs:label of each entity that has one.
+     */
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return the kinds each IRI of the ontology is declared as.
+     */
+    public Map<String, Set<Kind>> getKinds() {
+        return kinds;
+    }
+
+    public List<EntityDescription> describeClasses(){
+        List<EntityDescription> descriptions = new ArrayList<EntityDescription>();
+        for(OWLClass c : ontology.getClassesInSignature()){
+            if(!hasStatements(c)){
+                continue;
+            }
+            EntityDescription d = describe(c, Kind.CLASS);
+            List<Expression> equivalent = new ArrayList<Expression>();
+            for(OWLEquivalentClassesAxiom ax : ontology.getEquivalentClassesAxioms(c)){
+                for(OWLClassExpression ce : ax.getClassExpressionsMinus(c)){
+                    equivalent.add(render(ce));
+                }
+            }
+            d.addRelation("isequivalentto", true, equivalent);
+            List<Expression> superClasses = new ArrayList<Expression>();
+            for(OWLSubClassOfAxiom ax : ontology.getSubClassAxiomsForSubClass(c)){
+                superClasses.add(render(ax.getSuperClass()));
+            }
+            d.addRelation("hassuperclasses", true, superClasses);
+            String iri = c.getIRI().toString();
+            d.addRelation("hassubclasses", false, get(subClasses, iri));
+            d.addRelation("isindomainof", false, get(domainOf, iri));
+            d.addRelation("isinrangeof", false, get(rangeOf, iri));
+            d.addRelation("hasmembers", false, get(members, iri));
+            List<Expression> keys = new ArrayList<Expression>();
+            for(OWLHasKeyAxiom ax : ontology.getHasKeyAxioms(c)){
+                Expression key = new Expression();
+                for(OWLPropertyExpression<?, ?> p : ax.getPropertyExpressions()){
+                    if(!key.getSegments().isEmpty()){
+                        key.appendText(" , ");
+                    }
+                    key.append(renderProperty(p));
+                }
+                keys.add(key);
+            }
+            d.addRelation("haskeys", true, keys);
+            List<Expression> disjoint = new ArrayList<Expression>();
+            for(OWLDisjointClassesAxiom ax : ontology.getDisjointClassesAxioms(c)){
+                for(OWLClassExpression ce : ax.getClassExpressionsMinus(c)){
+                    disjoint.add(render(ce));
+                }
+            }
+            d.addRelation("isdisjointwith", false, disjoint);
+            descriptions.add(d);
+        }
+        return descriptions;
+    }
+
+    public List<EntityDescription> describeObjectProperties(){
+        List<EntityDescription> descriptions = new ArrayList<EntityDescription>();
+        for(OWLObjectProperty p : ontology.getObjectPropertiesInSignature()){
+            Set<OWLObjectPropertyAxiom> axioms = ontology.getAxioms(p);
+            String iri = p.getIRI().toString();
+            if(!chains.containsKey(iri) && !hasStatements(p, axioms)){
+                continue;
+            }
+            EntityDescription d = describe(p, Kind.OBJECT_PROPERTY);
+            List<Expression> equivalent = new ArrayList<Expression>(), superProperties = new ArrayList<Expression>(),
+                    domain = new ArrayList<Expression>(), range = new ArrayList<Expression>(),
+                    inverse = new ArrayList<Expression>(), disjoint = new ArrayList<Expression>();
+            boolean[] characteristics = new boolean[7];
+            for(OWLObjectPropertyAxiom ax : axioms){
+                if(ax instanceof OWLFunctionalObjectPropertyAxiom){
+                    characteristics[0] = true;
+                }else if(ax instanceof OWLInverseFunctionalObjectPropertyAxiom){
+                    characteristics[1] = true;
+                }else if(ax instanceof OWLReflexiveObjectPropertyAxiom){
+                    characteristics[2] = true;
+                }else if(ax instanceof OWLIrreflexiveObjectPropertyAxiom){
+                    characteristics[3] = true;
+                }else if(ax instanceof OWLSymmetricObjectPropertyAxiom){
+                    characteristics[4] = true;
+                }else if(ax instanceof OWLAsymmetricObjectPropertyAxiom){
+                    characteristics[5] = true;
+                }else if(ax instanceof OWLTransitiveObjectPropertyAxiom){
+                    characteristics[6] = true;
+                }else if(ax instanceof OWLSubObjectPropertyOfAxiom){
+                    superProperties.add(renderProperty(((OWLSubObjectPropertyOfAxiom) ax).getSuperProperty()));
+                }else if(ax instanceof OWLObjectPropertyDomainAxiom){
+                    domain.add(render(((OWLObjectPropertyDomainAxiom) ax).getDomain()));
+                }else if(ax instanceof OWLObjectPropertyRangeAxiom){
+                    range.add(render(((OWLObjectPropertyRangeAxiom) ax).getRange()));
+                }else if(ax instanceof OWLEquivalentObjectPropertiesAxiom){
+                    for(OWLObjectPropertyExpression other : ((OWLEquivalentObjectPropertiesAxiom) ax).getPropertiesMinus(p)){
+                        equivalent.add(renderProperty(other));
+                    }
+                }else if(ax instanceof OWLInverseObjectPropertiesAxiom){
+                    OWLInverseObjectPropertiesAxiom inv = (OWLInverseObjectPropertiesAxiom) ax;
+                    inverse.add(renderProperty(p.equals(inv.getFirstProperty()) ? inv.getSecondProperty() : inv.getFirstProperty()));
+                }else if(ax instanceof OWLDisjointObjectPropertiesAxiom){
+                    for(OWLObjectPropertyExpression other : ((OWLDisjointObjectPropertiesAxiom) ax).getPropertiesMinus(p)){
+                        disjoint.add(renderProperty(other));
+                    }
+                }
+            }
+            String[] names = {"functional", "inversefunctional", "reflexive", "irreflexive", "symmetric", "asymmetric", "transitive"};
+            for(int i = 0; i < names.length; i++){
+                if(characteristics[i]){
+                    d.getCharacteristics().add(names[i]);
+                }
+            }
+            addPropertyRelations(d, equivalent, superProperties, domain, range, inverse, disjoint);
+            descriptions.add(d);
+        }
+        return descriptions;
+    }
+
+    public List<EntityDescription> describeDataProperties(){
+        List<EntityDescription> descriptions = new ArrayList<EntityDescription>();
+        for(OWLDataProperty p : ontology.getDataPropertiesInSignature()){
+            Set<OWLDataPropertyAxiom> axioms = ontology.getAxioms(p);
+            if(!hasStatements(p, axioms)){
+                continue;
+            }
+            EntityDescription d = describe(p, Kind.DATA_PROPERTY);
+            List<Expression> equivalent = new ArrayList<Expression>(), superProperties = new ArrayList<Expression>(),
+                    domain = new ArrayList<Expression>(), range = new ArrayList<Expression>(),
+                    disjoint = new ArrayList<Expression>();
+            for(OWLDataPropertyAxiom ax : axioms){
+                if(ax instanceof OWLFunctionalDataPropertyAxiom){
+                    d.getCharacteristics().add("functional");
+                }else if(ax instanceof OWLSubDataPropertyOfAxiom){
+                    superProperties.add(renderProperty(((OWLSubDataPropertyOfAxiom) ax).getSuperProperty()));
+                }else if(ax instanceof OWLDataPropertyDomainAxiom){
+                    domain.add(render(((OWLDataPropertyDomainAxiom) ax).getDomain()));
+                }else if(ax instanceof OWLDataPropertyRangeAxiom){
+                    range.add(render(((OWLDataPropertyRangeAxiom) ax).getRange()));
+                }else if(ax instanceof OWLEquivalentDataPropertiesAxiom){
+                    for(OWLDataPropertyExpression other : ((OWLEquivalentDataPropertiesAxiom) ax).getPropertiesMinus(p)){
+                        equivalent.add(renderProperty(other));
+                    }
+                }else if(ax instanceof OWLDisjointDataPropertiesAxiom){
+                    for(OWLDataPropertyExpression other : ((OWLDisjointDataPropertiesAxiom) ax).getPropertiesMinus(p)){
+                        disjoint.add(renderProperty(other));
+                    }
+                }
+            }
+            addPropertyRelations(d, equivalent, superProperties, domain, range, new ArrayList<Expression>(), disjoint);
+            descriptions.add(d);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Whether the class is the subject of a statement other than its
+     * declaration in the RDF/XML the OWL API writes for LODE, which only
+     * describes the classes whose element has children. A class that is just
+     * the object of other statements (e.g., the second class of a
+     * disjointness axiom, written on the first one) is only referenced.
+     */
+    private boolean hasStatements(OWLClass c){
+        if(!ontology.getAnnotationAssertionAxioms(c.getIRI()).isEmpty() || !ontology.getSubClassAxiomsForSubClass(c).isEmpty()
+                || !ontology.getHasKeyAxioms(c).isEmpty() || !ontology.getDisjointUnionAxioms(c).isEmpty()){
+            return true;
+        }
+        for(OWLEquivalentClassesAxiom ax : ontology.getEquivalentClassesAxioms(c)){
+            if(isPairwiseSubject(ax.getClassExpressions(), c)){
+                return true;
+            }
+        }
+        for(OWLDisjointClassesAxiom ax : ontology.getDisjointClassesAxioms(c)){
+            //more than two classes are written as an owl:AllDisjointClasses
+            if(ax.getClassExpressions().size() == 2 && isPairwiseSubject(ax.getClassExpressions(), c)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the property is the subject of a statement other than its
+     * declaration, as for classes. The axioms are those of the property.
+     */
+    private boolean hasStatements(OWLEntity p, Set<? extends OWLAxiom> axioms){
+        if(!ontology.getAnnotationAssertionAxioms(p.getIRI()).isEmpty()){
+            return true;
+        }
+        for(OWLAxiom ax : axioms){
+            if(ax instanceof OWLInverseObjectPropertiesAxiom){
+                if(p.equals(((OWLInverseObjectPropertiesAxiom) ax).getFirstProperty())){
+                    return true;
+                }
+            }else if(ax instanceof OWLNaryPropertyAxiom){
+                Set<?> properties = ((OWLNaryPropertyAxiom<?>) ax).getProperties();
+                boolean disjoint = ax instanceof OWLDisjointObjectPropertiesAxiom || ax instanceof OWLDisjointDataPropertiesAxiom;
+                if((!disjoint || properties.size() == 2) && isPairwiseSubject(properties, p)){
+                    return true;
+                }
+            }else{
+                //characteristics, superproperties, domains and ranges
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The OWL API writes equivalences and disjointness of two operands as
+     * statements from each operand to the ones after it, in its own order,
+     * so every operand but the last one is a subject.
+     */
+    private static boolean isPairwiseSubject(Set<?> operands, OWLObject operand){
+        return !operand.equals(new TreeSet<Object>(operands).last());
+    }
+
+    /**
+     * Adds the relations of a property in the order of get.property.description.
+     */
+    private void addPropertyRelations(EntityDescription d, List<Expression> equivalent, List<Expression> superProperties,
+            List<Expression> domain, List<Expression> range, List<Expression> inverse, List<Expression> disjoint){
+        String iri = d.getIri();
+        d.addRelation("hasequivalentproperties", false, equivalent);
+        d.addRelation("hassuperproperties", true, superProperties);
+        d.addRelation("hassubproperties", false, get(subProperties, iri));
+        d.addRelation("hasdomain", true, domain);
+        d.addRelation("hasrange", true, range);
+        d.addRelation("isinverseof", false, inverse);
+        d.addRelation("hassubpropertychains", true, get(chains, iri));
+        d.addRelation("isdisjointwith", false, disjoint);
+    }
+
+    /**
+     * Description with the annotations of an entity.
+     */
+    private EntityDescription describe(OWLEntity entity, Kind kind){
+        EntityDescription d = new EntityDescription(entity.getIRI().toString(), kind);
+        d.setLabel(labels.get(d.getIri()));
+        d.setComment(getAnnotation(entity.getIRI(), OWLRDFVocabulary.RDFS_COMMENT.getIRI()));
+        for(OWLAnnotationAssertionAxiom ax : ontology.getAnnotationAssertionAxioms(entity.getIRI())){
+            if(ax.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_IS_DEFINED_BY.getIRI())){
+                if(ax.getValue() instanceof IRI){
+                    d.getDefinedBy().add(ax.getValue().toString());
+                }else if(ax.getValue() instanceof OWLLiteral){
+                    d.getDefinedBy().add(((OWLLiteral) ax.getValue()).getLiteral());
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Value of an annotation of an entity, chosen like f:isInLanguage: the
+     * one in the language of the documentation, otherwise the one in the
+     * default language, otherwise the first one.
+     */
+    private String getAnnotation(IRI subject, IRI property){
+        String first = null, inDefault = null;
+        for(OWLAnnotationAssertionAxiom ax : ontology.getAnnotationAssertionAxioms(subject)){
+            if(!ax.getProperty().getIRI().equals(property) || !(ax.getValue() instanceof OWLLiteral)){
+                continue;
+            }
+            OWLLiteral value = (OWLLiteral) ax.getValue();
+            if(language.equals(value.getLang())){
+                return value.getLiteral();
+            }
+            if(inDefault == null && DEFAULT_LANGUAGE.equals(value.getLang())){
+                inDefault = value.getLiteral();
+            }
+            if(first == null){
+                first = value.getLiteral();
+            }
+        }
+        return inDefault != null ? inDefault : first;
+    }
+
+    /**
+     * Indexes the relations LODE shows on the object of an axiom (e.g., the
+     * subclasses of a class come from the subclass axioms of other classes).
+     */
+    private void index(){
+        for(OWLSubClassOfAxiom ax : ontology.getAxioms(AxiomType.SUBCLASS_OF)){
+            if(!ax.getSubClass().isAnonymous() && !ax.getSuperClass().isAnonymous()){
+                add(subClasses, ax.getSuperClass().asOWLClass().getIRI(), render(ax.getSubClass()));
+            }
+        }
+        for(OWLObjectPropertyDomainAxiom ax : ontology.getAxioms(AxiomType.OBJECT_PROPERTY_DOMAIN)){
+            if(!ax.getDomain().isAnonymous()){
+                add(domainOf, ax.getDomain().asOWLClass().getIRI(), renderProperty(ax.getProperty()));
+            }
+        }
+        for(OWLDataPropertyDomainAxiom ax : ontology.getAxioms(AxiomType.DATA_PROPERTY_DOMAIN)){
+            if(!ax.getDomain().isAnonymous()){
+                add(domainOf, ax.getDomain().asOWLClass().getIRI(), renderProperty(ax.getProperty()));
+            }
+        }
+        for(OWLObjectPropertyRangeAxiom ax : ontology.getAxioms(AxiomType.OBJECT_PROPERTY_RANGE)){
+            if(!ax.getRange().isAnonymous()){
+                add(rangeOf, ax.getRange().asOWLClass().getIRI(), renderProperty(ax.getProperty()));
+            }
+        }
+        for(OWLClassAssertionAxiom ax : ontology.getAxioms(AxiomType.CLASS_ASSERTION)){
+            if(!ax.getClassExpression().isAnonymous() && ax.getIndividual().isNamed()){
+                add(members, ax.getClassExpression().asOWLClass().getIRI(), render(ax.getIndividual()));
+            }
+        }
+        for(OWLSubObjectPropertyOfAxiom ax : ontology.getAxioms(AxiomType.SUB_OBJECT_PROPERTY)){
+            if(!ax.getSubProperty().isAnonymous() && !ax.getSuperProperty().isAnonymous()){
+                add(subProperties, ax.getSuperProperty().asOWLObjectProperty().getIRI(), renderProperty(ax.getSubProperty()));
+            }
+        }
+        for(OWLSubDataPropertyOfAxiom ax : ontology.getAxioms(AxiomType.SUB_DATA_PROPERTY)){
+            if(!ax.getSubProperty().isAnonymous() && !ax.getSuperProperty().isAnonymous()){
+                add(subProperties, ax.getSuperProperty().asOWLDataProperty().getIRI(), renderProperty(ax.getSubProperty()));
+            }
+        }
+        for(OWLSubPropertyChainOfAxiom ax : ontology.getAxioms(AxiomType.SUB_PROPERTY_CHAIN_OF)){
+            if(ax.getSuperProperty().isAnonymous()){
+                continue;
+            }
+            Expression chain = new Expression();
+            for(OWLObjectPropertyExpression p : ax.getPropertyChain()){
+                if(!chain.getSegments().isEmpty()){
+                    chain.appendText(" ").appendLogic("o").appendText(" ");
+                }
+                chain.append(renderProperty(p));
+            }
+            add(chains, ax.getSuperProperty().asOWLObjectProperty().getIRI(), chain);
+        }
+    }
+
+    private static void add(Map<String, List<Expression>> index, IRI key, Expression value){
+        List<Expression> values = index.get(key.toString());
+        if(values == null){
+            values = new ArrayList<Expression>();
+            index.put(key.toString(), values);
+        }
+        values.add(value);
+    }
+
+    private static List<Expression> get(Map<String, List<Expression>> index, String key){
+        List<Expression> values = index.get(key);
+        return values == null ? new ArrayList<Expression>() : values;
+    }
+
+    private static Kind getKind(OWLEntity entity){
+        if(entity.isOWLClass()){
+            return Kind.CLASS;
+        }else if(entity.isOWLObjectProperty()){
+            return Kind.OBJECT_PROPERTY;
+        }else if(entity.isOWLDataProperty()){
+            return Kind.DATA_PROPERTY;
+        }else if(entity instanceof OWLAnnotationProperty){
+            return Kind.ANNOTATION_PROPERTY;
+        }else if(entity.isOWLNamedIndividual()){
+            return Kind.INDIVIDUAL;
+        }
+        return null;
+    }
+
+    /**
+     * Renders a class expression as LODE renders the corresponding RDF/XML:
+     * restrictions as "property some filler", boolean expressions with their
+     * complex operands between brackets.
+     */
+    private Expression render(OWLClassExpression ce){
+        switch(ce.getClassExpressionType()){
+            case OWL_CLASS:
+                return Expression.reference(ce.asOWLClass().getIRI().toString(), Kind.CLASS);
+            case OBJECT_INTERSECTION_OF:
+                return renderFormula(((OWLNaryBooleanClassExpression) ce).getOperands(), "and");
+            case OBJECT_UNION_OF:
+                return renderFormula(((OWLNaryBooleanClassExpression) ce).getOperands(), "or");
+            case OBJECT_COMPLEMENT_OF:
+                return new Expression().appendLogic("not").appendText(" (")
+                        .append(render(((OWLObjectComplementOf) ce).getOperand())).appendText(")");
+            case OBJECT_ONE_OF:{
+                Expression e = new Expression().appendText("{ ");
+                boolean first = true;
+                for(OWLIndividual i : ((OWLObjectOneOf) ce).getIndividuals()){
+                    if(!first){
+                        e.appendText(" , ");
+                    }
+                    e.append(renderValue(i));
+                    first = false;
+                }
+                return e.appendText(" }");
+            }
+            case OBJECT_SOME_VALUES_FROM:
+            case OBJECT_ALL_VALUES_FROM:{
+                OWLQuantifiedObjectRestriction r = (OWLQuantifiedObjectRestriction) ce;
+                return renderProperty(r.getProperty()).appendText(" ")
+                        .appendLogic(ce.getClassExpressionType() == ClassExpressionType.OBJECT_SOME_VALUES_FROM ? "some" : "only")
+                        .appendText(" ").append(render(r.getFiller()));
+            }
+            case OBJECT_HAS_VALUE:{
+                OWLObjectHasValue r = (OWLObjectHasValue) ce;
+                return renderProperty(r.getProperty()).appendText(" ").appendLogic("value").appendText(" ").append(renderValue(r.getValue()));
+            }
+            case OBJECT_HAS_SELF:
+                return renderProperty(((OWLObjectHasSelf) ce).getProperty()).appendText(" ").appendLogic("self");
+            case OBJECT_MIN_CARDINALITY:
+            case OBJECT_MAX_CARDINALITY:
+            case OBJECT_EXACT_CARDINALITY:{
+                OWLObjectCardinalityRestriction r = (OWLObjectCardinalityRestriction) ce;
+                Expression e = renderProperty(r.getProperty()).appendText(" ").appendLogic(getCardinalityOperator(ce))
+                        .appendText(" "+r.getCardinality());
+                if(r.isQualified()){
+                    e.appendText(" ").append(render(r.getFiller()));
+                }
+                return e;
+            }
+            case DATA_SOME_VALUES_FROM:
+            case DATA_ALL_VALUES_FROM:{
+                OWLQuantifiedDataRestriction r = (OWLQuantifiedDataRestriction) ce;
+                return renderProperty(r.getProperty()).appendText(" ")
+                        .appendLogic(ce.getClassExpressionType() == ClassExpressionType.DATA_SOME_VALUES_FROM ? "some" : "only")
+                        .appendText(" ").append(render(r.getFiller()));
+            }
+            case DATA_HAS_VALUE:{
+                OWLDataHasValue r = (OWLDataHasValue) ce;
+                return renderProperty(r.getProperty()).appendText(" ").appendLogic("value").appendText(" ").append(render(r.getValue()));
+            }
+            case DATA_MIN_CARDINALITY:
+            case DATA_MAX_CARDINALITY:
+            case DATA_EXACT_CARDINALITY:{
+                //LODE has no template for owl:onDataRange, so the data range is not shown
+                OWLDataCardinalityRestriction r = (OWLDataCardinalityRestriction) ce;
+                return renderProperty(r.getProperty()).appendText(" ").appendLogic(getCardinalityOperator(ce))
+                        .appendText(" "+r.getCardinality());
+            }
+            default:
+                return new Expression().appendText(ce.toString());
+        }
+    }
+
+    private static String getCardinalityOperator(OWLClassExpression ce){
+        switch(ce.getClassExpressionType()){
+            case OBJECT_MIN_CARDINALITY:
+            case DATA_MIN_CARDINALITY:
+                return "min";
+            case OBJECT_MAX_CARDINALITY:
+            case DATA_MAX_CARDINALITY:
+                return "max";
+            default:
+                return "exactly";
+        }
+    }
+
+    private Expression renderFormula(Set<OWLClassExpression> operands, String operator){
+        Expression e = new Expression();
+        boolean first = true;
+        for(OWLClassExpression operand : operands){
+            if(!first){
+                e.appendText(" ").appendLogic(operator).appendText(" ");
+            }
+            Expression rendered = render(operand);
+            if(rendered.isReference()){
+                e.append(rendered);
+            }else{
+                e.appendText("(").append(rendered).appendText(")");
+            }
+            first = false;
+        }
+        return e;
+    }
+
+    private Expression render(OWLDataRange range){
+        switch(range.getDataRangeType()){
+            case DATATYPE:
+                return Expression.reference(((OWLDatatype) range).getIRI().toString(), null);
+            case DATA_ONE_OF:{
+                Expression e = new Expression().appendText("{ ");
+                boolean first = true;
+                for(OWLLiteral value : ((OWLDataOneOf) range).getValues()){
+                    if(!first){
+                        e.appendText(" , ");
+                    }
+                    e.append(render(value));
+                    first = false;
+                }
+                return e.appendText(" }");
+            }
+            case DATA_COMPLEMENT_OF:
+                return new Expression().appendLogic("not").appendText(" (")
+                        .append(render(((OWLDataComplementOf) range).getDataRange())).appendText(")");
+            case DATA_INTERSECTION_OF:
+            case DATA_UNION_OF:{
+                String operator = range.getDataRangeType() == DataRangeType.DATA_UNION_OF ? "or" : "and";
+                Expression e = new Expression();
+                boolean first = true;
+                for(OWLDataRange operand : ((OWLNaryDataRange) range).getOperands()){
+                    if(!first){
+                        e.appendText(" ").appendLogic(operator).appendText(" ");
+                    }
+                    Expression rendered = render(operand);
+                    if(rendered.isReference()){
+                        e.append(rendered);
+                    }else{
+                        e.appendText("(").append(rendered).appendText(")");
+                    }
+                    first = false;
+                }
+                return e;
+            }
+            case DATATYPE_RESTRICTION:
+                //LODE has no template for datatype restrictions, which are shown empty
+                return new Expression();
+            default:
+                return new Expression().appendText(range.toString());
+        }
+    }
+
+    private Expression render(OWLIndividual individual){
+        if(individual.isNamed()){
+            return Expression.reference(individual.asOWLNamedIndividual().getIRI().toString(), Kind.INDIVIDUAL);
+        }
+        return new Expression().appendText(individual.toString());
+    }
+
+    /**
+     * Individual of an enumeration or a value restriction, which LODE shows
+     * without its type.
+     */
+    private Expression renderValue(OWLIndividual individual){
+        if(individual.isNamed()){
+            return Expression.untypedReference(individual.asOWLNamedIndividual().getIRI().toString(), Kind.INDIVIDUAL);
+        }
+        return new Expression().appendText(individual.toString());
+    }
+
+    private Expression render(OWLLiteral literal){
+        return new Expression().appendText("\""+literal.getLiteral()+"\"");
+    }
+
+    private Expression renderProperty(OWLPropertyExpression<?, ?> property){
+        if(property instanceof OWLObjectInverseOf){
+            return new Expression().appendLogic("inverse").appendText(" ")
+                    .append(renderProperty(((OWLObjectInverseOf) property).getInverse()));
+        }
+        if(property instanceof OWLObjectProperty){
+            return Expression.reference(((OWLObjectProperty) property).getIRI().toString(), Kind.OBJECT_PROPERTY);
+        }
+        if(property instanceof OWLDataProperty){
+            return Expression.reference(((OWLDataProperty) property).getIRI().toString(), Kind.DATA_PROPERTY);
+        }
+        return new Expression().appendText(property.toString());
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.expr.StaticProperty;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.lib.ExtensionFunctionCall;
+import net.sf.saxon.lib.ExtensionFunctionDefinition;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.SequenceIterator;
+import net.sf.saxon.om.StructuredQName;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.tree.iter.ArrayIterator;
+import net.sf.saxon.tree.iter.EmptyIterator;
+import net.sf.saxon.tree.iter.SingletonIterator;
+import net.sf.saxon.type.BuiltInAtomicType;
+import net.sf.saxon.value.Int64Value;
+import net.sf.saxon.value.SequenceType;
+
+/**
+ * Java versions of the string-index-of functions of common-functions.xsl,
+ * registered in Saxon as integrated extension functions.
+ * The XSLT versions tokenize the string with the pattern as a regular
+ * expression and add up the length of the tokens. These functions return the
+ * same positions (1-based, counted in characters), but most patterns used by
+ * LODE are plain characters, which are searched with indexOf and lastIndexOf
+ * instead of a regular expression.
+ */
+public class StringIndexFunctions {
+
+    public static final String NAMESPACE = "java:lode.StringIndexFunctions";
+    private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final ConcurrentHashMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
+    /**
+     * Registers the functions in a Saxon configuration. Stylesheets compiled
+     * with that configuration can call them in the NAMESPACE namespace.
+     * @param configuration the configuration to register the functions in.
+     */
+    public static void register(Configuration configuration){
+        configuration.registerExtensionFunction(new IndexFunction("string-index-of"));
+        configuration.registerExtensionFunction(new IndexFunction("string-first-index-of"));
+        configuration.registerExtensionFunction(new IndexFunction("string-last-index-of"));
+    }
+
+    /**
+     * Positions where the pattern is found in the source.
+     * @param source the string to search in.
+     * @param pattern the regular expression to look for.
+     * @return the position of each match, as computed by f:string-index-of.
+     * @throws XPathException if the pattern is not valid.
+     */
+    public static long[] indexesOf(String source, String pattern) throws XPathException{
+        List<int[]> matches = new ArrayList<int[]>();
+        String literal = getLiteral(pattern);
+        if(literal != null){
+            int from = source.indexOf(literal);
+            while(from >= 0){
+                matches.add(new int[]{from, from + literal.length()});
+                from = source.indexOf(literal, from + literal.length());
+            }
+        }
+        else{
+            Matcher m = getPattern(pattern).matcher(source);
+            while(m.find()){
+                matches.add(new int[]{m.start(), m.end()});
+            }
+        }
+        //each position adds the length of the tokens before the match and one per separator
+        long[] result = new long[matches.size()];
+        long position = 0;
+        int tokenStart = 0;
+        for(int i = 0; i < result.length; i++){
+            int[] match = matches.get(i);
+            position += source.codePointCount(tokenStart, match[0]) + 1;
+            result[i] = position;
+            tokenStart = match[1];
+        }
+        return result;
+    }
+
+    /**
+     * Position of the first match of the pattern in the source.
+     * @return the position, or -1 if the pattern is not found.
+     * @throws XPathException if the pattern is not valid.
+     */
+    public static long firstIndexOf(String source, String pattern) throws XPathException{
+        String literal = getLiteral(pattern);
+        if(literal != null){
+            int index = source.indexOf(literal);
+            return index < 0 ? -1 : source.codePointCount(0, index) + 1;
+        }
+        long[] indexes = indexesOf(source, pattern);
+        return indexes.length == 0 ? -1 : indexes[0];
+    }
+
+    /**
+     * Position of the last match of the pattern in the source.
+     * @return the position, or -1 if the pattern is not found.
+     * @throws XPathException if the pattern is not valid.
+     */
+    public static long lastIndexOf(String source, String pattern) throws XPathException{
+        String literal = getLiteral(pattern);
+        //with a single character every separator counts as one, so the position does not depend on the previous matches
+        if(literal != null && literal.length() == 1){
+            int index = source.lastIndexOf(literal);
+            return index < 0 ? -1 : source.codePointCount(0, index) + 1;
+        }
+        long[] indexes = indexesOf(source, pattern);
+        return indexes.length == 0 ? -1 : indexes[indexes.length - 1];
+    }
+
+    /**
+     * Returns the text matched by a pattern without regular expression
+     * characters (or with just an escaped one, like "\."), or null if the
+     * pattern has to be evaluated as a regular expression.
+     */
+    private static String getLiteral(String pattern) throws XPathException{
+        if(pattern.length() == 0){
+            throw new XPathException("The pattern matches a zero-length string");
+        }
+        if(pattern.length() == 2 && pattern.charAt(0) == '\\' && REGEX_CHARACTERS.indexOf(pattern.charAt(1)) >= 0){
+            return pattern.substring(1);
+        }
+        for(int i = 0; i < pattern.length(); i++){
+            if(REGEX_CHARACTERS.indexOf(pattern.charAt(i)) >= 0){
+                return null;
+            }
+        }
+        return pattern;
+    }
+
+    private static Pattern getPattern(String pattern) throws XPathException{
+        Pattern p = patterns.get(pattern);
+        if(p == null){
+            try{
+                p = Pattern.compile(pattern);
+            }catch(PatternSyntaxException e){
+                throw new XPathException("Invalid regular expression "+pattern+": "+e.getMessage());
+            }
+            if(p.matcher("").matches()){
+                throw new XPathException("The pattern matches a zero-length string");
+            }
+            patterns.put(pattern, p);
+        }
+        return p;
+    }
+
+    /**
+     * Definition of the three functions, which only differ in the positions
+     * they return.
+     */
+    private static class IndexFunction extends ExtensionFunctionDefinition{
+        private final String name;
+
+        public IndexFunction(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public StructuredQName getFunctionQName() {
+            return new StructuredQName("lode", NAMESPACE, name);
+        }
+
+        @Override
+        public SequenceType[] getArgumentTypes() {
+            return new SequenceType[]{SequenceType.SINGLE_STRING, SequenceType.SINGLE_STRING};
+        }
+
+        @Override
+        public SequenceType getResultType(SequenceType[] suppliedArgumentTypes) {
+            if("string-index-of".equals(name)){
+                return SequenceType.makeSequenceType(BuiltInAtomicType.INTEGER, StaticProperty.ALLOWS_ZERO_OR_MORE);
+            }
+            return SequenceType.OPTIONAL_INTEGER;
+        }
+
+        @Override
+        public ExtensionFunctionCall makeCallExpression() {
+            return new ExtensionFunctionCall() {
+                @Override
+                public SequenceIterator call(SequenceIterator[] arguments, XPathContext context) throws XPathException {
+                    String source = arguments[0].next().getStringValue();
+                    String pattern = arguments[1].next().getStringValue();
+                    if("string-index-of".equals(name)){
+                        long[] indexes = indexesOf(source, pattern);
+                        Item[] items = new Item[indexes.length];
+                        for(int i = 0; i < indexes.length; i++){
+                            items[i] = Int64Value.makeIntegerValue(indexes[i]);
+                        }
+                        return new ArrayIterator<Item>(items);
+                    }
+                    long index = "string-first-index-of".equals(name) ? firstIndexOf(source, pattern) : lastIndexOf(source, pattern);
+                    if(index < 0){
+                        return EmptyIterator.getInstance();
+                    }
+                    return SingletonIterator.makeIterator(Int64Value.makeIntegerValue(index));
+                }
+            };
+        }
+    }
+}
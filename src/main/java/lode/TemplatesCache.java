@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import net.sf.saxon.TransformerFactoryImpl;
+import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.trans.XPathException;
+
+/**
+ * Process-wide cache of compiled stylesheets.
+ * Compiling extraction.xsl (and the modules it includes) costs more than
+ * transforming most ontologies, so all the LODE generations of the JVM share
+ * the same compiled Templates. Entries are keyed by the location of the
+ * stylesheet. For stylesheets in a folder, the modification times of the
+ * stylesheet and of the modules it includes are kept with the entry: if any
+ * of them is edited, the stylesheet is recompiled the next time it is
+ * requested. Stylesheets and the files they refer to are read through a
+ * CachingURIResolver, so they can be loaded directly from the classpath, and
+ * edited files are read again.
+ */
+public class TemplatesCache {
+
+    private static final TransformerFactoryImpl factory = new TransformerFactoryImpl();
+    private static final ConcurrentHashMap<String, CachedTemplates> cache = new ConcurrentHashMap<String, CachedTemplates>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final CachingURIResolver resolver = new CachingURIResolver();
+    private static final ConcurrentHashMap<String, CachedDocument> documents = new ConcurrentHashMap<String, CachedDocument>();
+
+    static{
+        factory.setURIResolver(resolver);
+        //native versions of the string functions of common-functions.xsl
+        StringIndexFunctions.register(factory.getConfiguration());
+        //index of the entities that can be shared by the transformations of a document
+        EntityIndex.register(factory.getConfiguration());
+    }
+
+    /**
+     * Returns the compiled version of a stylesheet, compiling it only if it
+     * has not been compiled before or if it has changed since.
+     * Templates are thread safe, so the same object can be used to create
+     * transformers from different threads.
+     * @param stylesheet location of the xsl file to compile.
+     * @return the compiled stylesheet
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    public static Templates getTemplates(URL stylesheet) throws TransformerConfigurationException{
+        String location = stylesheet.toExternalForm();
+        CachedTemplates cached = cache.get(location);
+        if(cached!=null && !cached.isModified()){
+            hits.incrementAndGet();
+            return cached.templates;
+        }
+        //the factory is not thread safe: compilations are done one at a time
+        synchronized(factory){
+            cached = cache.get(location);
+            if(cached!=null && !cached.isModified()){
+                hits.incrementAndGet();
+                return cached.templates;
+            }
+            misses.incrementAndGet();
+            Templates templates;
+            //the included modules are read through the resolver: record them to check them later
+            resolver.startRecording();
+            Map<String, Long> dependencies;
+            try{
+                templates = factory.newTemplates(resolver.getSource(stylesheet));
+            }catch(TransformerConfigurationException e){
+                throw e;
+            }catch(TransformerException e){
+                throw new TransformerConfigurationException(e);
+            }finally{
+                dependencies = resolver.stopRecording();
+            }
+            cache.put(location, new CachedTemplates(templates, dependencies));
+            return templates;
+        }
+    }
+
+    /**
+     * Compiles a stylesheet in advance, so the first transformation does not
+     * have to pay for it.
+     * @param stylesheet location of the xsl file to compile.
+     */
+    public static void warmUp(URL stylesheet){
+        try{
+            getTemplates(stylesheet);
+        }catch(TransformerConfigurationException e){
+            System.err.println("Could not compile the stylesheet "+stylesheet+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Resolver to be used by the transformers of the cached stylesheets, so
+     * the documents they load are also read only once.
+     * @return the resolver of the cache
+     */
+    public static CachingURIResolver getURIResolver(){
+        return resolver;
+    }
+
+    /**
+     * Builds a source document with the configuration the stylesheets are
+     * compiled with. The resulting tree is immutable: it can be transformed
+     * by several transformers of this cache concurrently, and the ids
+     * generated for its nodes are the same in all of them.
+     * @param source the document to build.
+     * @return the tree of the document.
+     * @throws XPathException if the document cannot be parsed
+     */
+    public static DocumentInfo buildDocument(Source source) throws XPathException{
+        return factory.getConfiguration().buildDocument(source);
+    }
+
+    /**
+     * Returns a document used by the stylesheets (e.g., the label files),
+     * parsing it only the first time it is requested or when it has been
+     * modified since. Since the tree is immutable, it can be passed as a
+     * parameter to any transformation.
+     * @param location location of the document.
+     * @return the tree of the document
+     * @throws TransformerException if the document cannot be read or parsed
+     */
+    public static DocumentInfo getDocument(URL location) throws TransformerException{
+        String key = location.toExternalForm();
+        long lastModified = CachingURIResolver.getLastModified(location);
+        CachedDocument cached = documents.get(key);
+        if(cached == null || cached.lastModified != lastModified){
+            cached = new CachedDocument(buildDocument(resolver.getSource(location)), lastModified);
+            documents.put(key, cached);
+        }
+        return cached.document;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static void clear(){
+        cache.clear();
+        documents.clear();
+        resolver.clear();
+    }
+
+    private static class CachedTemplates{
+        private final Templates templates;
+        //the stylesheet and its modules, with the modification time they were compiled with
+        private final Map<String, Long> dependencies;
+
+        public CachedTemplates(Templates templates, Map<String, Long> dependencies) {
+            this.templates = templates;
+            this.dependencies = dependencies;
+        }
+
+        public boolean isModified(){
+            for(Map.Entry<String, Long> dependency : dependencies.entrySet()){
+                try{
+                    if(CachingURIResolver.getLastModified(new URL(dependency.getKey())) != dependency.getValue()){
+                        return true;
+                    }
+                }catch(MalformedURLException e){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class CachedDocument{
+        private final DocumentInfo document;
+        private final long lastModified;
+
+        public CachedDocument(DocumentInfo document, long lastModified) {
+            this.document = document;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -16,11 +16,13 @@
 package widoco;
 
 import com.hp.hpl.jena.ontology.OntModel;
-import com.hp.hpl.jena.ontology.OntResource;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
 import java.awt.Image;
 import java.io.File;
 import java.io.FileInputStream;
@@ -65,6 +67,7 @@ public class Configuration {
     private String releaseDate;
     
     private boolean fromFile;//if this is true, the onto will be from a file. otherwise it's a URI
+    private OntologySource ontologySource;//read and parsed once, shared by all the steps
     
     private boolean publishProvenance;
     private String provenanceURI; //this will be used as the subject for describing provenance (url of the doc)
@@ -91,6 +94,11 @@ public class Configuration {
     private boolean useImported;
     private boolean useReasoner;
     private String language;
+    private int lodeThreads;//number of LODE sections rendered at the same time
+    private boolean useNativeRenderer;//render the sections from the OWL API instead of LODE's xsl
+    private String importsMirror;//folder with local copies of the imported ontologies (see MirrorIRIMapper)
+    private boolean useTDB;//load the ontology in a TDB dataset on disk instead of in memory (see TDBStore)
+    private String tdbDirectory;//working directory of the TDB datasets
     
     private Image logo;
     private Image logoMini;
@@ -99,6 +107,7 @@ public class Configuration {
     //model everything as a singleton object. No need: only the controller accesses this file.
     public Configuration() {
         propertyFile = new Properties();
+        lodeThreads = Runtime.getRuntime().availableProcessors();
         //just in case, we initialize the objects:
         
         try{
@@ -156,6 +165,10 @@ public class Configuration {
             mainOntology.setNamespacePrefix(propertyFile.getProperty("ontologyPrefix"));
             mainOntology.setNamespaceURI(propertyFile.getProperty("ontologyNamespaceURI"));
             revision = propertyFile.getProperty("revision");
+            useNativeRenderer = "true".equalsIgnoreCase(propertyFile.getProperty("useNativeRenderer"));
+            importsMirror = propertyFile.getProperty("importsMirror");
+            useTDB = "true".equalsIgnoreCase(propertyFile.getProperty("useTDB"));
+            tdbDirectory = propertyFile.getProperty("tdbDirectory");
             //to do: check that the authors is not empty before doing the split.
             String[] names = propertyFile.getProperty("authors").split(";");
             String[] urls = propertyFile.getProperty("authorURL").split(";");
@@ -221,7 +234,12 @@ public class Configuration {
         }
         cleanConfig();
         //we assume only one ontology per file.
-        OntResource onto = m.getOntClass("http://www.w3.org/2002/07/owl#Ontology").listInstances().next();
+        Iterator ontologies = m.listResourcesWithProperty(RDF.type, OWL.Ontology);
+        if(!ontologies.hasNext()){
+            System.err.println("The ontology does not have an owl:Ontology declaration");
+            return;
+        }
+        Resource onto = (Resource) ontologies.next();
         Iterator it = onto.listProperties();//model.getResource("http://purl.org/net/wf-motifs").listProperties();
         String propertyName, value;
         while(it.hasNext()){
@@ -359,6 +377,17 @@ public class Configuration {
         return ontologyPath;
     }
 
+    /**
+     * @return the ontology of the current path, read and parsed only once for
+     * all the steps that need it.
+     */
+    public synchronized OntologySource getOntologySource() {
+        if(ontologySource == null){
+            ontologySource = new OntologySource(ontologyPath, fromFile);
+        }
+        return ontologySource;
+    }
+
     public String getOntologyURI() {
         return this.mainOntology.getNamespaceURI();
     }
@@ -441,6 +470,7 @@ public class Configuration {
 
     public void setOntologyPath(String ontologyPath) {
         this.ontologyPath = ontologyPath;
+        this.ontologySource = null;
     }
 
     public void setOntologyURI(String ontologyURI) {
@@ -573,6 +603,7 @@ public class Configuration {
     
     public void setFromFile(boolean fromFile) {
         this.fromFile = fromFile;
+        this.ontologySource = null;
     }
     
     /**
@@ -610,6 +641,46 @@ public class Configuration {
     public void setUseReasoner(boolean useReasoner) {
         this.useReasoner = useReasoner;
     }
+
+    public int getLodeThreads() {
+        return lodeThreads;
+    }
+
+    public void setLodeThreads(int lodeThreads) {
+        this.lodeThreads = lodeThreads;
+    }
+
+    public boolean isUseNativeRenderer() {
+        return useNativeRenderer;
+    }
+
+    public void setUseNativeRenderer(boolean useNativeRenderer) {
+        this.useNativeRenderer = useNativeRenderer;
+    }
+
+    public String getImportsMirror() {
+        return importsMirror;
+    }
+
+    public void setImportsMirror(String importsMirror) {
+        this.importsMirror = importsMirror;
+    }
+
+    public boolean isUseTDB() {
+        return useTDB;
+    }
+
+    public void setUseTDB(boolean useTDB) {
+        this.useTDB = useTDB;
+    }
+
+    public String getTdbDirectory() {
+        return tdbDirectory;
+    }
+
+    public void setTdbDirectory(String tdbDirectory) {
+        this.tdbDirectory = tdbDirectory;
+    }
     
     public Image getLogo(){
         if(logo == null){
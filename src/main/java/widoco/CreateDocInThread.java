@@ -15,7 +15,7 @@
  */
 package widoco;
 
-import java.io.File;
+import java.util.Map;
 import widoco.gui.GuiController;
 
 /**
@@ -25,12 +25,10 @@ import widoco.gui.GuiController;
 public class CreateDocInThread implements Runnable{
     private final Configuration c;
     private final GuiController pointerToMain;
-    private final File tmpFile;
     
-    public CreateDocInThread(Configuration c, GuiController g, File lodeTmpResources){
+    public CreateDocInThread(Configuration c, GuiController g){
         this.c = c;
         this.pointerToMain = g;
-        this.tmpFile = lodeTmpResources;
     }
 
     public void run() {
@@ -39,11 +37,18 @@ public class CreateDocInThread implements Runnable{
         try{
             System.out.println("printing in thread. Has it finished? "+ c.getMainOntology().getNamespaceURI());
             if (c.isFromFile()){
-                CreateResources.generateDocumentation(c.getDocumentationURI(), c, false, tmpFile);
+                CreateResources.generateDocumentation(c.getDocumentationURI(), c, false);
             }else{
-                CreateResources.generateDocumentation(c.getDocumentationURI(), c, true, tmpFile);
+                CreateResources.generateDocumentation(c.getDocumentationURI(), c, true);
             }
             this.pointerToMain.switchState("next");
+        }catch(SectionGenerationException e){
+            //the sections that could be generated are written anyway
+            for(Map.Entry<String, Throwable> error : e.getErrors().entrySet()){
+                System.err.println("Error while generating the section "+error.getKey()+": "+error.getValue().getMessage());
+                error.getValue().printStackTrace();
+            }
+            this.pointerToMain.switchState("error");
         }catch(Exception e){
             System.err.println("Error" +e.getMessage());
             e.printStackTrace();
@@ -16,9 +16,7 @@
 
 package widoco;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import oops.OOPSevaluation;
 import widoco.gui.GuiController;
 
@@ -29,52 +27,34 @@ import widoco.gui.GuiController;
 public class CreateOOPSEvalInThread implements Runnable{
     private final Configuration c;
     private final GuiController pointerToMain;
-    private final File tmpFile;
     
-    public CreateOOPSEvalInThread(Configuration c, GuiController g, File tmpResources){
+    public CreateOOPSEvalInThread(Configuration c, GuiController g){
         this.c = c;
         this.pointerToMain = g;
-        this.tmpFile = tmpResources;
     }
 
     public void run() {
-        //copy all necessary resources in the tmp file
-        //TO DO
-        //new folder in tmp, called Evaluation
+        //the evaluation is saved with the documentation, with its resources in a folder called evaluation
         this.pointerToMain.switchState("sendingRequest");
-        File evalFolder = new File(tmpFile.getPath()+File.separator+"evaluation");
+        File docFolder = new File(c.getDocumentationURI());
+        File evalFolder = new File(docFolder.getPath()+File.separator+"evaluation");
         try{
-            if(!evalFolder.exists())evalFolder.mkdir();
+            if(!evalFolder.exists())evalFolder.mkdirs();
             CreateResources.copyResourceFolder(TextConstants.oopsResources, evalFolder.getAbsolutePath());
             //do POST petition with evaluation.
             String evaluation;
             OOPSevaluation eval;
             if(c.isFromFile()){
-                //read file
-                String content;
-                BufferedReader br = new BufferedReader(new FileReader(c.getOntologyPath()));
-                try {
-                    StringBuilder sb = new StringBuilder();
-                    String line = br.readLine();
-
-                    while (line != null) {
-                        sb.append(line);
-                        sb.append(System.lineSeparator());
-                        line = br.readLine();
-                    }
-                     content = sb.toString();
-                } finally {
-                    br.close();
-                }
-                eval = new OOPSevaluation("",content);
+                //the file has already been read for the other steps
+                eval = new OOPSevaluation("",c.getOntologySource().getContentAsString());
             }else{
                 eval = new OOPSevaluation(c.getOntologyURI(), "");
             }            
             evaluation = eval.printEvaluation();
             //SAVE File
             this.pointerToMain.switchState("savingResponse");
-            CreateResources.saveDocument(tmpFile+File.separator+"oopsEval.html", TextConstants.getEvaluationText(evaluation, c));
-            pointerToMain.openBrowser(new File(tmpFile+File.separator+"oopsEval.html").toURI());
+            CreateResources.saveDocument(docFolder+File.separator+"oopsEval.html", TextConstants.getEvaluationText(evaluation, c));
+            pointerToMain.openBrowser(new File(docFolder+File.separator+"oopsEval.html").toURI());
         }catch(Exception e){
             System.err.println("Error while saving OOPS evaluation: "+e.getMessage());
             this.pointerToMain.switchState("error");
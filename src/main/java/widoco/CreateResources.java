@@ -26,8 +26,16 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.JOptionPane;
-import lode.LODEGeneration;
+import lode.NativeRenderer;
 
 /**
  * Class that given a path, it creates all the associated resources needed to
@@ -36,57 +44,164 @@ import lode.LODEGeneration;
  */
 public class CreateResources {
     
+    public static final int SECTION_THREADS = 4;
+    private static ExecutorService pool;
+    //only one overwrite dialog is shown at a time
+    private static final Object promptLock = new Object();
+
+    static synchronized ExecutorService getPool(){
+        if(pool == null){
+            //the threads do not keep the application running
+            pool = Executors.newFixedThreadPool(SECTION_THREADS, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "widoco-sections");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Creates the documentation. The sections are written at the same time, in
+     * a pool of SECTION_THREADS threads, each one as soon as it is ready: the
+     * ones that do not need the cross reference content of the ontology are
+     * started while LODE (or the native renderer) runs.
+     * A section that fails does not stop the others, but the sections made
+     * from the cross reference content are skipped if it cannot be created.
+     * If the thread is interrupted, the sections not finished yet are
+     * cancelled.
+     * @throws SectionGenerationException with the error of each section that
+     * could not be generated.
+     */
     //to do: analyze if this is the right name for the class. Maybe "generate" is better
-    public static void generateDocumentation(String folderOut, Configuration c, boolean fromURI, File lodeResources){
-        String lodeContent;
-        lodeContent = LODEGeneration.getLODEhtml(c, lodeResources);    
-        LODEParser lode = new LODEParser(lodeContent,c);
+    public static void generateDocumentation(String folderOut, final Configuration c, boolean fromURI) throws SectionGenerationException{
         createFolderStructure(folderOut,c.isIncludeDiagram(),c.isPublishProvenance());
+        final String sectionsPath = folderOut+File.separator+"sections";
+        final String provenancePath = folderOut+File.separator+"provenance";
+        final String indexPath = folderOut;
+        Map<String, Future<Void>> sections = new LinkedHashMap<String, Future<Void>>();
+        Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+        ExecutorService sectionPool = getPool();
         if(c.isIncludeAbstract()){
-            createAbstractSection(folderOut+File.separator+"sections",c);
-        }
-        if(c.isIncludeIntroduction()){
-            createIntroductionSection(folderOut+File.separator+"sections",lode.getNamespaceDeclarations(),c);
-        }
-        if(c.isIncludeOverview()){
-            createOverviewSection(folderOut+File.separator+"sections",c, lode.getClassList(),lode.getPropertyList(),lode.getDataPropList());
+            sections.put("abstract", sectionPool.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    createAbstractSection(sectionsPath,c);
+                    return null;
+                }
+            }));
         }
         if(c.isIncludeDescription()){
-            createDescriptionSection(folderOut+File.separator+"sections",c);
-        }
-        if(c.isIncludeCrossReferenceSection()){
-            createCrossReferenceSection(folderOut+File.separator+"sections",lode, c);
+            sections.put("description", sectionPool.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    createDescriptionSection(sectionsPath,c);
+                    return null;
+                }
+            }));
         }
         if(c.isIncludeReferences()){
-            createReferencesSection(folderOut+File.separator+"sections",c);
+            sections.put("references", sectionPool.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    createReferencesSection(sectionsPath,c);
+                    return null;
+                }
+            }));
         }
         if(c.isPublishProvenance()){
-            createProvenancePage(folderOut+File.separator+"provenance", c);
+            sections.put("provenance", sectionPool.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    createProvenancePage(provenancePath, c);
+                    return null;
+                }
+            }));
+        }
+        sections.put("index", sectionPool.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                createIndexDocument(indexPath,c);
+                return null;
+            }
+        }));
+        //the rest of the sections need the content extracted from the ontology
+        CrossReferenceContent content = null;
+        try{
+            //LODE needs the whole ontology in memory, so the TDB mode always uses the native renderer
+            if(c.isUseNativeRenderer() || c.isUseTDB()){
+                content = new NativeRenderer(c);
+            }else{
+                content = new LODEParser(c);
+            }
+        }catch(Exception e){
+            errors.put("cross reference content", e);
+        }
+        if(content != null){
+            final CrossReferenceContent lode = content;
+            if(c.isIncludeIntroduction()){
+                sections.put("introduction", sectionPool.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        createIntroductionSection(sectionsPath,lode.getNamespaceDeclarations(),c);
+                        return null;
+                    }
+                }));
+            }
+            if(c.isIncludeOverview()){
+                sections.put("overview", sectionPool.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        createOverviewSection(sectionsPath,c, lode.getClassList(),lode.getPropertyList(),lode.getDataPropList());
+                        return null;
+                    }
+                }));
+            }
+            if(c.isIncludeCrossReferenceSection()){
+                sections.put("cross reference", sectionPool.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        createCrossReferenceSection(sectionsPath,lode, c);
+                        return null;
+                    }
+                }));
+            }
+        }
+        for(Map.Entry<String, Future<Void>> section : sections.entrySet()){
+            try{
+                section.getValue().get();
+            }catch(ExecutionException e){
+                errors.put(section.getKey(), e.getCause());
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                errors.put(section.getKey(), e);
+                //the sections not finished yet are cancelled, and not waited for
+                for(Future<Void> pending : sections.values()){
+                    pending.cancel(true);
+                }
+                break;
+            }
+        }
+        if(!errors.isEmpty()){
+            throw new SectionGenerationException(errors);
         }
-        createIndexDocument(folderOut,c);
     }
     
     /**
      * Provenance page
      */
-    private static void createProvenancePage(String path, Configuration c){
-        saveDocument(path+File.separator+"provenance.html", TextConstants.getProvenanceHtml(c));
-        saveDocument(path+File.separator+"provenance.ttl", TextConstants.getProvenanceRDF(c));
+    private static void createProvenancePage(String path, Configuration c) throws Exception{
+        writeDocument(path+File.separator+"provenance.html", TextConstants.getProvenanceHtml(c));
+        writeDocument(path+File.separator+"provenance.ttl", TextConstants.getProvenanceRDF(c));
     }
     
     /**
      * Sections of the document. Each section will be a separate html file
      */
-    private static void createAbstractSection(String path, Configuration c){
+    private static void createAbstractSection(String path, Configuration c) throws Exception{
         if((c.getAbstractPath()!=null) && (!"".equals(c.getAbstractPath()))){
             copyExternalResource(c.getAbstractPath(),new File(path+File.separator+"abstract.html"));
         }else{
-            saveDocument(path+File.separator+"abstract.html", TextConstants.abstractSection);
+            writeDocument(path+File.separator+"abstract.html", TextConstants.abstractSection);
         }
         
     }
     
-    private static void createIntroductionSection(String path, HashMap<String,String> nsDecl, Configuration c){
+    private static void createIntroductionSection(String path, HashMap<String,String> nsDecl, Configuration c) throws Exception{
         if((c.getIntroductionPath()!=null) && (!"".equals(c.getIntroductionPath()))){
             copyExternalResource(c.getIntroductionPath(),new File(path+File.separator+"introduction.html"));
         }else{
@@ -98,12 +213,12 @@ public class CreateResources {
                     introSectionText = introSectionText.replace("default namespace", c.getMainOntology().getNamespacePrefix());
             }
             //introSection += TextConstants.getNamespaceDeclarations(c, lodeInput);
-            saveDocument(path+File.separator+"introduction.html", introSectionText);
+            writeDocument(path+File.separator+"introduction.html", introSectionText);
         }
     }
     
     //the lists passed onto this method are the fixed lists
-    private static void createOverviewSection(String path, Configuration c, String classesList, String propList, String dataPropList){
+    private static void createOverviewSection(String path, Configuration c, String classesList, String propList, String dataPropList) throws Exception{
         if((c.getOverviewPath()!=null) && (!"".equals(c.getOverviewPath()))){
             copyExternalResource(c.getOverviewPath(), new File(path+File.separator+"overview.html"));
         }else{
@@ -120,19 +235,19 @@ public class CreateResources {
                 overViewSection+=("<h4>Data Properties</h4>");
                 overViewSection+=(dataPropList);
             }
-            saveDocument(path+File.separator+"overview.html", overViewSection);
+            writeDocument(path+File.separator+"overview.html", overViewSection);
         }
     }
     
-    private static void createDescriptionSection(String path, Configuration c){
+    private static void createDescriptionSection(String path, Configuration c) throws Exception{
         if((c.getDescriptionPath()!=null) && (!"".equals(c.getDescriptionPath()))){
             copyExternalResource(c.getDescriptionPath(), new File(path+File.separator+"description.html"));
         }else{
-            saveDocument(path+File.separator+"description.html",TextConstants.getDescriptionSection(c) );
+            writeDocument(path+File.separator+"description.html",TextConstants.getDescriptionSection(c) );
         }
     }
     
-    private static void createCrossReferenceSection(String path,LODEParser lodeParser, Configuration c){
+    private static void createCrossReferenceSection(String path,CrossReferenceContent lodeParser, Configuration c) throws Exception{
         //cross reference section has to be included always.
         String crossRef = TextConstants.getCrossReferenceSection(c);
         String classesList = lodeParser.getClassList(),propList = lodeParser.getPropertyList(), dataPropList = lodeParser.getDataPropList();
@@ -145,14 +260,14 @@ public class CreateResources {
         if(dataPropList!=null && !"".equals(dataPropList)){
             crossRef += lodeParser.getDataProp();
         }
-        saveDocument(path+File.separator+"crossref.html", crossRef);
+        writeDocument(path+File.separator+"crossref.html", crossRef);
     }
     
-    private static void createReferencesSection(String path, Configuration c){
+    private static void createReferencesSection(String path, Configuration c) throws Exception{
         if((c.getReferencesPath()!=null) && (!"".equals(c.getReferencesPath()))){
-            copyExternalResource(c.getReferencesPath(), new File(path+File.separator+"overview.html"));
+            copyExternalResource(c.getReferencesPath(), new File(path+File.separator+"references.html"));
         }else{
-            saveDocument(path+File.separator+"references.html", TextConstants.referencesSection);
+            writeDocument(path+File.separator+"references.html", TextConstants.referencesSection);
         }
     }
     
@@ -160,32 +275,45 @@ public class CreateResources {
      * Method for creating the index section on the url provided. The index will
      * include the pointers to all of the other sections.
      */
-    private static void createIndexDocument(String path, Configuration c){
+    private static void createIndexDocument(String path, Configuration c) throws Exception{
         //the boolean valuas come from the configuration.
         String textToWrite = TextConstants.getIndexDocument("resources",c);
-        saveDocument(path+File.separator+"index.html", textToWrite);
+        writeDocument(path+File.separator+"index.html", textToWrite);
     }
     
     //This method should be separated in another utils file.
     public static void saveDocument(String path, String textToWrite){
+        try{
+            writeDocument(path, textToWrite);
+        }catch(IOException e){
+            System.err.println("Error while creating the file "+e.getMessage()+"\n"+new File(path).getAbsolutePath());
+        }
+    }
+
+    /**
+     * Writes a document, asking whether to overwrite it if it already exists.
+     * The sections are written from several threads, but only one of them
+     * asks at a time.
+     */
+    private static void writeDocument(String path, String textToWrite) throws IOException{
         File f = new File(path);
         Writer out = null;
-        try{
-            if(f.exists()){
+        if(f.exists()){
+            synchronized(promptLock){
                 //JOptionPane.showMessageDialog(null, "You have overwritten the previous file. This message should be better prepared.");
                 int response = JOptionPane.showConfirmDialog(null, "The file "+f.getName()+" already exists. Do you want to overwrite it?", "Existing File!", JOptionPane.YES_NO_OPTION);
                 if(response == JOptionPane.NO_OPTION)return; //else we continue rewriting the file.
             }
-            else{
-                f.createNewFile();
-            }
+        }
+        else{
+            f.createNewFile();
+        }
+        try{
             out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
             out.write(textToWrite);
-            out.close();
-        }catch(IOException e){
-            System.err.println("Error while creating the file "+e.getMessage()+"\n"+f.getAbsolutePath());
-        }        
-        
+        }finally{
+            if(out!=null)out.close();
+        }
     }
     
     private static void createFolderStructure(String s, boolean includeDiagram, boolean includeProv){
@@ -248,13 +376,9 @@ public class CreateResources {
      * @param path
      * @param dest 
      */
-    private static void copyExternalResource(String path, File dest) {
-        try{
-            InputStream is = new FileInputStream(path);
-            copy(is, dest);
-        }catch(Exception e){
-            System.err.println("Exception while copying "+path+e.getMessage());
-        }
+    private static void copyExternalResource(String path, File dest) throws Exception {
+        InputStream is = new FileInputStream(path);
+        copy(is, dest);
     }
     
     private static void copy(InputStream is, File dest)throws Exception{
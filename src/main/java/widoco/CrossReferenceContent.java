@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package widoco;
+
+import java.util.HashMap;
+
+/**
+ * Content of the ontology used to build the introduction, overview and cross
+ * reference sections: the html of the classes, object properties and data
+ * properties (with their term lists) and the namespaces of the ontology.
+ * It can be obtained from LODE's html (LODEParser) or rendered directly from
+ * the ontology (lode.NativeRenderer).
+ */
+public interface CrossReferenceContent {
+
+    public String getClassList();
+
+    public String getClasses();
+
+    public String getPropertyList();
+
+    public String getProperties();
+
+    public String getDataPropList();
+
+    public String getDataProp();
+
+    public HashMap<String, String> getNamespaceDeclarations();
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Properties;
+
+/**
+ * Downloads the ontologies given by URL. The bodies are written to disk as
+ * they are received, so big ontologies are never kept in memory, and kept with
+ * their validators (ETag and Last-Modified), so later downloads of the same
+ * URL are conditional requests, and the server only sends the ontology again
+ * if it has changed. Responses that are still fresh according to their
+ * Cache-Control (or Expires) header are not requested again at all, and
+ * those marked as no-store are never written to disk.
+ * If the server cannot be reached, the copy on disk is used (unless the
+ * server asked to always revalidate it).
+ */
+public class HttpFetcher {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+    private static HttpFetcher defaultFetcher;
+
+    private final File directory;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    /**
+     * The content of a URL, in memory or in a file, with its content type
+     * and its validators (null if the server did not send them).
+     */
+    public static class Response {
+        private final byte[] content;
+        private final File file;
+        private final String contentType;
+        private final String etag;
+        private final String lastModified;
+
+        public Response(byte[] content, String contentType) {
+            this(content, contentType, null, null);
+        }
+
+        public Response(byte[] content, String contentType, String etag, String lastModified) {
+            this(content, null, contentType, etag, lastModified);
+        }
+
+        public Response(File file, String contentType, String etag, String lastModified) {
+            this(null, file, contentType, etag, lastModified);
+        }
+
+        private Response(byte[] content, File file, String contentType, String etag, String lastModified) {
+            this.content = content;
+            this.file = file;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the content, read from its file if it is in one.
+         * @throws IOException if the file cannot be read
+         */
+        public byte[] getContent() throws IOException{
+            return content != null ? content : read(new FileInputStream(file));
+        }
+
+        /**
+         * @return a new stream over the content, without reading it in memory.
+         * @throws IOException if the file cannot be read
+         */
+        public InputStream openStream() throws IOException{
+            return content != null ? new ByteArrayInputStream(content) : new FileInputStream(file);
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * @param directory folder where the downloaded bodies are kept, or null
+     * to not keep them.
+     * @param connectTimeout timeout to connect to the server, in ms.
+     * @param readTimeout timeout waiting for the server to send data, in ms.
+     */
+    public HttpFetcher(File directory, int connectTimeout, int readTimeout) {
+        this.directory = directory;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return the fetcher that keeps the bodies in the .widoco folder of the user.
+     */
+    public static synchronized HttpFetcher getDefault(){
+        if(defaultFetcher == null){
+            File dir = new File(System.getProperty("user.home"), ".widoco"+File.separator+"http");
+            defaultFetcher = new HttpFetcher(dir, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+        }
+        return defaultFetcher;
+    }
+
+    /**
+     * @param location the URL.
+     * @param accept value of the Accept header, used for content negotiation.
+     * @return the content of the URL, from disk if it has not changed.
+     * @throws IOException if the URL cannot be read and there is no usable
+     * copy on disk
+     */
+    public Response fetch(String location, String accept) throws IOException{
+        URL url = new URL(location);
+        if(!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())){
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            return new Response(download(connection.getInputStream(), null), connection.getContentType(), null, null);
+        }
+        //the same URL may return different content for different Accept headers
+        String key = directory == null ? null : OntologyCache.getKey(location.getBytes("UTF-8"), accept);
+        File body = key == null ? null : new File(directory, key+".body");
+        File meta = key == null ? null : new File(directory, key+".properties");
+        Properties cached = null;
+        if(body != null && body.exists() && meta.exists()){
+            cached = readProperties(meta);
+        }
+        if(cached != null && Long.parseLong(cached.getProperty("expires", "0")) > System.currentTimeMillis()){
+            return getCached(body, cached);
+        }
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestProperty("Accept", accept);
+        if(cached != null){
+            if(cached.getProperty("etag") != null){
+                connection.setRequestProperty("If-None-Match", cached.getProperty("etag"));
+            }
+            if(cached.getProperty("lastModified") != null){
+                connection.setRequestProperty("If-Modified-Since", cached.getProperty("lastModified"));
+            }
+        }
+        int code;
+        try{
+            code = connection.getResponseCode();
+        }catch(IOException e){
+            if(cached != null && !"true".equals(cached.getProperty("mustRevalidate"))){
+                System.err.println("Could not connect to "+location+", using the copy downloaded before: "+e.getMessage());
+                return getCached(body, cached);
+            }
+            throw e;
+        }
+        if(code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null){
+            connection.getInputStream().close();
+            cached.setProperty("expires", String.valueOf(getExpiration(connection)));
+            writeProperties(meta, cached);
+            return getCached(body, cached);
+        }
+        if(code != HttpURLConnection.HTTP_OK){
+            connection.disconnect();
+            throw new IOException("The server returned "+code+" for "+location);
+        }
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        boolean noStore = cacheControl != null && cacheControl.toLowerCase().contains("no-store");
+        //the body is downloaded next to the copies, unless it must not be kept
+        Response response = new Response(download(connection.getInputStream(), noStore ? null : directory),
+                connection.getContentType(), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        if(key != null){
+            if(noStore){
+                body.delete();
+                meta.delete();
+            }else{
+                response = store(connection, response, body, meta);
+            }
+        }
+        return response;
+    }
+
+    private static Response getCached(File body, Properties cached){
+        return new Response(body, cached.getProperty("contentType"), cached.getProperty("etag"), cached.getProperty("lastModified"));
+    }
+
+    /**
+     * Keeps the downloaded body as the copy of the URL.
+     * @return the response, with its body in the copy.
+     */
+    private Response store(HttpURLConnection connection, Response response, File body, File meta){
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        Properties p = new Properties();
+        p.setProperty("url", connection.getURL().toExternalForm());
+        p.setProperty("expires", String.valueOf(getExpiration(connection)));
+        if(response.getContentType() != null){
+            p.setProperty("contentType", response.getContentType());
+        }
+        if(response.getETag() != null){
+            p.setProperty("etag", response.getETag());
+        }
+        if(response.getLastModified() != null){
+            p.setProperty("lastModified", response.getLastModified());
+        }
+        if(cacheControl != null && cacheControl.toLowerCase().contains("must-revalidate")){
+            p.setProperty("mustRevalidate", "true");
+        }
+        try{
+            //the body is complete when it is renamed, so a copy is never read half written
+            body.delete();
+            if(!response.file.renameTo(body)){
+                throw new IOException("Could not rename "+response.file);
+            }
+            writeProperties(meta, p);
+        }catch(IOException e){
+            System.err.println("Error while saving "+connection.getURL()+": "+e.getMessage());
+            body.delete();
+            meta.delete();
+            return response;
+        }
+        return new Response(body, response.getContentType(), response.getETag(), response.getLastModified());
+    }
+
+    /**
+     * Time until which a response can be used without asking the server:
+     * given by the max-age of Cache-Control, or else by Expires. Responses
+     * without any of them (or with no-cache) are revalidated every time.
+     */
+    private static long getExpiration(HttpURLConnection connection){
+        long now = System.currentTimeMillis();
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if(cacheControl != null){
+            for(String directive : cacheControl.toLowerCase().split(",")){
+                directive = directive.trim();
+                if(directive.equals("no-cache")){
+                    return 0;
+                }
+                if(directive.startsWith("max-age=")){
+                    try{
+                        return now + Long.parseLong(directive.substring("max-age=".length()).replace("\"", "")) * 1000;
+                    }catch(NumberFormatException e){
+                        return 0;
+                    }
+                }
+            }
+        }
+        return connection.getExpiration();
+    }
+
+    private static Properties readProperties(File f){
+        Properties p = new Properties();
+        try{
+            InputStream in = new FileInputStream(f);
+            try{
+                p.load(in);
+            }finally{
+                in.close();
+            }
+            return p;
+        }catch(IOException e){
+            return null;
+        }
+    }
+
+    private static void writeProperties(File f, Properties p) throws IOException{
+        OutputStream out = new FileOutputStream(f);
+        try{
+            p.store(out, null);
+        }finally{
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a body to a temporary file as it is received.
+     * @param directory folder of the file (the one of the copies, so it can
+     * be renamed to its copy), or null for the temporary folder.
+     * @return the file, deleted on exit if it is not renamed before.
+     */
+    private static File download(InputStream in, File directory) throws IOException{
+        try{
+            if(directory != null && !directory.isDirectory() && !directory.mkdirs()){
+                directory = null;
+            }
+            File f = File.createTempFile("widoco", ".download", directory);
+            f.deleteOnExit();
+            try{
+                OutputStream out = new FileOutputStream(f);
+                try{
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while((read = in.read(buffer)) != -1){
+                        out.write(buffer, 0, read);
+                    }
+                }finally{
+                    out.close();
+                }
+            }catch(IOException e){
+                f.delete();
+                throw e;
+            }
+            return f;
+        }finally{
+            in.close();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException{
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }finally{
+            in.close();
+        }
+    }
+}
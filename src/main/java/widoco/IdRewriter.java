@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces many strings of a text at once (the ids LODE gives to the
+ * entities, by their names). The strings to replace are kept in a trie, and
+ * the text is read once: at each position the longest string of the trie
+ * starting there is replaced, and the text continues after it. The time is
+ * linear in the size of the text (times the length of the longest id), and
+ * does not depend on the number of ids.
+ * A rewriter is not modified once built, so it can be shared by threads.
+ */
+class IdRewriter {
+    private final TrieNode root = new TrieNode();
+    //first characters of the strings to replace, to skip the rest quickly
+    private final boolean[] firstAscii = new boolean[128];
+    private boolean firstOther;
+
+    /**
+     * @param replacements strings to replace, with their replacements.
+     */
+    IdRewriter(Map<String, String> replacements) {
+        for(Map.Entry<String, String> r : replacements.entrySet()){
+            add(r.getKey(), r.getValue());
+        }
+    }
+
+    /**
+     * Adds a string to replace. If it was already added, the new replacement
+     * is the one used.
+     */
+    final void add(String target, String replacement){
+        if(target == null || target.length() == 0){
+            return;
+        }
+        char first = target.charAt(0);
+        if(first < firstAscii.length){
+            firstAscii[first] = true;
+        }else{
+            firstOther = true;
+        }
+        TrieNode node = root;
+        for(int i = 0; i < target.length(); i++){
+            node = node.getOrCreate(target.charAt(i));
+        }
+        node.replacement = replacement;
+        node.length = target.length();
+    }
+
+    /**
+     * @return the text with all the strings replaced, in a single pass.
+     */
+    String rewrite(CharSequence text){
+        StringBuilder out = new StringBuilder(text.length());
+        rewrite(text, out);
+        return out.toString();
+    }
+
+    /**
+     * Appends the text to out, with all the strings replaced.
+     */
+    void rewrite(CharSequence text, StringBuilder out){
+        int n = text.length();
+        //start of the text not written yet
+        int pending = 0;
+        int i = 0;
+        while(i < n){
+            char c = text.charAt(i);
+            if(c < firstAscii.length ? !firstAscii[c] : !firstOther){
+                i++;
+                continue;
+            }
+            TrieNode match = longestMatch(text, i);
+            if(match == null){
+                i++;
+                continue;
+            }
+            out.append(text, pending, i).append(match.replacement);
+            i += match.length;
+            pending = i;
+        }
+        out.append(text, pending, n);
+    }
+
+    private TrieNode longestMatch(CharSequence text, int start){
+        TrieNode node = root;
+        TrieNode match = null;
+        for(int i = start; i < text.length(); i++){
+            node = node.get(text.charAt(i));
+            if(node == null){
+                break;
+            }
+            if(node.replacement != null){
+                match = node;
+            }
+        }
+        return match;
+    }
+
+    private static class TrieNode {
+        private HashMap<Character, TrieNode> children;
+        //set if a string to replace ends here
+        private String replacement;
+        private int length;
+
+        TrieNode get(char c){
+            return children == null ? null : children.get(c);
+        }
+
+        TrieNode getOrCreate(char c){
+            if(children == null){
+                children = new HashMap<Character, TrieNode>(4);
+            }
+            TrieNode child = children.get(c);
+            if(child == null){
+                child = new TrieNode();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * Loads the imports closure of an ontology. The imports of each level of the
+ * closure are fetched and parsed at the same time, in a pool of IMPORT_THREADS
+ * threads. Every imported ontology is loaded only once per JVM: ontologies
+ * importing the same one (e.g., an upper ontology) share it.
+ * Imports with a local copy in the mirror folder (see MirrorIRIMapper) are
+ * read from it instead of their IRI.
+ */
+public class ImportsLoader {
+    public static final int IMPORT_THREADS = 4;
+
+    //loaded imports, by the location they were read from
+    private static final ConcurrentHashMap<String, Future<OntologySource>> loaded = new ConcurrentHashMap<String, Future<OntologySource>>();
+    private static ExecutorService pool;
+
+    private final MirrorIRIMapper mirror;
+
+    /**
+     * @param mirrorPath folder with local copies of the imports, or null.
+     */
+    public ImportsLoader(String mirrorPath) {
+        mirror = (mirrorPath == null || "".equals(mirrorPath)) ? null : new MirrorIRIMapper(new File(mirrorPath));
+    }
+
+    /**
+     * @return the mapper of the imports to their local copies, or null if
+     * there is no mirror folder.
+     */
+    public MirrorIRIMapper getMirror() {
+        return mirror;
+    }
+
+    private static synchronized ExecutorService getPool(){
+        if(pool == null){
+            //the threads do not keep the application running
+            pool = Executors.newFixedThreadPool(IMPORT_THREADS, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "widoco-imports");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * @param source the importing ontology.
+     * @return the ontologies of its imports closure (without itself). The
+     * imports that cannot be loaded are reported and left out.
+     */
+    public List<OWLOntology> getImportsClosure(OntologySource source) throws Exception{
+        List<OWLOntology> closure = new ArrayList<OWLOntology>();
+        Set<String> visited = new HashSet<String>();
+        Set<String> level = source.getImports();
+        while(!level.isEmpty()){
+            //all the imports of a level are requested before waiting for any of them
+            Map<String, Future<OntologySource>> requests = new LinkedHashMap<String, Future<OntologySource>>();
+            for(String iri : level){
+                if(visited.add(iri)){
+                    requests.put(iri, load(iri));
+                }
+            }
+            Set<String> next = new HashSet<String>();
+            for(Map.Entry<String, Future<OntologySource>> request : requests.entrySet()){
+                OntologySource imported = get(request.getKey(), request.getValue());
+                if(imported != null){
+                    closure.add(imported.getOntology());
+                    next.addAll(imported.getImports());
+                }
+            }
+            level = next;
+        }
+        return closure;
+    }
+
+    private Future<OntologySource> load(String iri){
+        IRI copy = mirror == null ? null : mirror.getDocumentIRI(IRI.create(iri));
+        //the catalog may also map an import to another URL
+        final boolean fromFile = copy != null && "file".equals(copy.getScheme());
+        final String location = copy == null ? iri : fromFile ? new File(copy.toURI()).getPath() : copy.toString();
+        Future<OntologySource> future = loaded.get(location);
+        if(future == null){
+            FutureTask<OntologySource> task = new FutureTask<OntologySource>(new Callable<OntologySource>() {
+                public OntologySource call() throws Exception {
+                    OntologySource imported = new OntologySource(location, fromFile);
+                    imported.getOntology();
+                    return imported;
+                }
+            });
+            future = loaded.putIfAbsent(location, task);
+            if(future == null){
+                future = task;
+                getPool().execute(task);
+            }
+        }
+        return future;
+    }
+
+    private static OntologySource get(String iri, Future<OntologySource> future) throws InterruptedException{
+        try{
+            return future.get();
+        }catch(ExecutionException e){
+            System.err.println("Error while loading the import "+iri+": "+e.getCause().getMessage());
+            //it is tried again the next time it is needed
+            for(Map.Entry<String, Future<OntologySource>> entry : loaded.entrySet()){
+                if(entry.getValue() == future){
+                    loaded.remove(entry.getKey(), future);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -15,33 +15,30 @@
  */
 package widoco;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.Map;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.Result;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import lode.LODEGeneration;
 import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * Class made for parsing and manipulating LODE's html.
- * This class contains most of the TemplateGeneratorOLD class
+ * This class contains most of the TemplateGeneratorOLD class.
+ * The html is read in a single pass by LODESectionSplitter, which hands the
+ * description of each entity to fixAnchor and nodeToString as soon as it ends.
  * @author Daniel Garijo
  */
-public class LODEParser {
+public class LODEParser implements CrossReferenceContent {
     private final HashMap<String,String> replacements; //replace lode's ids with the classes and properties.
     //this will allow navigating the document properly. It might be troublesome if a class is names as a prop.
     private String classes;
@@ -52,20 +49,41 @@ public class LODEParser {
     private String dataPropList;
     private final HashMap <String,String> namespaceDeclarations;
     Configuration c;
+    //the nodes of a LODE document built directly by the transformation are in the xhtml namespace
+    private static final String XHTML_NS_DECLARATION = " xmlns=\"http://www.w3.org/1999/xhtml\"";
+    //looking the factory up is expensive, so it is done once. Each thread reuses its own serializer.
+    private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    private static final ThreadLocal<Transformer> serializer = new ThreadLocal<Transformer>(){
+        @Override
+        protected Transformer initialValue() {
+            try {
+                Transformer trans = transformerFactory.newTransformer();
+                trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+                return trans;
+            } catch (TransformerConfigurationException ex) {
+                throw new IllegalStateException("Could not create the serializer of the html: "+ex.getMessage(), ex);
+            }
+        }
+    };
 
-//    public LODEParser() {
-//        replacements = new HashMap<String, String>();
-//    }
     /**
-     * Constructor for the lode parser. The reason for creating this class is that
-     * I don't want to edit LODE's xls file, and I only want to reuse certain parts.
-     * @param lodeContent text obtained as a response from LODE.
+     * Constructor that applies LODE to the ontology of the configuration and
+     * takes its sections while they are produced (see LODESectionSplitter),
+     * without building LODE's html as a document.
+     * @throws Exception if the ontology cannot be loaded or LODE fails.
      */
-    public LODEParser(String lodeContent, Configuration c) {
+    public LODEParser(Configuration c) throws Exception {
         replacements = new HashMap<String, String>();
         namespaceDeclarations = new HashMap<String, String>();
         this.c = c;
-        parse(lodeContent);
+        //each section is rendered by its own transformation, and split by its own handler
+        String[] sections = LODEGeneration.WIDOCO_SECTIONS.split(" ");
+        LODESectionSplitter[] splitters = new LODESectionSplitter[sections.length];
+        for(int i = 0; i < sections.length; i++){
+            splitters[i] = new LODESectionSplitter(this);
+        }
+        LODEGeneration.streamLODESections(c, sections, splitters);
+        collect(splitters);
     }
 
     public String getClassList() {
@@ -96,150 +114,119 @@ public class LODEParser {
         return namespaceDeclarations;
     }
     
-    private void parse(String content){
-        try {            
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();                    
-            Document doc = db.parse(new ByteArrayInputStream(content.getBytes("UTF-8")));//StandardCharsets.UTF_8
-
-            NodeList html = doc.getElementsByTagName("div");
-//            String cList = "", pList= "", dPList= "", c= "", p= "", dp="";
-            for(int i = 0; i<html.getLength();i++){
-                String attrID = html.item(i).getAttributes().item(0).getTextContent();
-                if(attrID.equals("classes")){
-                    classList = getTermList(html.item(i));
-                    classes = nodeToString(html.item(i));
-                }
-                else if(attrID.equals("objectproperties")){
-                    propertyList =getTermList(html.item(i));
-                    properties = (nodeToString(html.item(i)));
-                }
-                else if(attrID.equals("dataproperties")){
-                    dataPropList = (getTermList(html.item(i)));
-                    dataProp = (nodeToString(html.item(i)));
-                }
-                else if(attrID.equals("namespacedeclarations")){
-                    Node namespace = html.item(i);
-                    //<dt> prefix </dt> <dd>namespace</dd>
-                    try{
-                        NodeList dl = namespace.getChildNodes().item(1).getChildNodes();//first node is h2. second is dl
-                        int j = 0;
-                        while(j<dl.getLength()){
-                            String key = dl.item(j).getTextContent();
-                            if(dl.item(j).getNodeName().equals("dt")){
-                                String value = dl.item(j+1).getTextContent();
-                                //System.out.println(key+","+value);
-                                namespaceDeclarations.put(key,value);
-                            }
-                            j++;
-                        }
-                    }catch(Exception e){
-                        System.err.println("Error while retrieving the namespaces from LODE");
-                    }
-                    
-                }
+    /**
+     * Takes the sections, namespaces and ids read by the splitters, and fixes
+     * the ids of the sections.
+     */
+    private void collect(LODESectionSplitter... splitters){
+        for(LODESectionSplitter splitter : splitters){
+            if(splitter.getSection(LODESectionSplitter.CLASSES) != null){
+                classList = splitter.getList(LODESectionSplitter.CLASSES);
+                classes = splitter.getSection(LODESectionSplitter.CLASSES);
             }
-            //fix ids
-            if(!"".equals(classList)&&classList!=null){
-                classList = fixIds(classList);
-                classes = fixIds(classes);
+            if(splitter.getSection(LODESectionSplitter.OBJECT_PROPERTIES) != null){
+                propertyList = splitter.getList(LODESectionSplitter.OBJECT_PROPERTIES);
+                properties = splitter.getSection(LODESectionSplitter.OBJECT_PROPERTIES);
             }
-            if(!"".equals(propertyList) &&propertyList!=null){
-                propertyList = fixIds(propertyList);
-                properties = fixIds(properties);
+            if(splitter.getSection(LODESectionSplitter.DATA_PROPERTIES) != null){
+                dataPropList = splitter.getList(LODESectionSplitter.DATA_PROPERTIES);
+                dataProp = splitter.getSection(LODESectionSplitter.DATA_PROPERTIES);
             }
-            if(!"".equals(dataPropList)&& dataPropList!=null){
-                dataPropList = fixIds(dataPropList);
-                dataProp = fixIds(dataProp);
-            }                                       
-            System.out.println("Parsing Complete!");
-        } catch (ParserConfigurationException ex) {
-            System.out.println("Exception interpreting the resource: "+ ex.getMessage());
-        } catch (DOMException ex) {
-            System.out.println("Exception interpreting the resource: "+ ex.getMessage());
-        } catch (SAXException ex) {
-            Logger.getLogger(LODEParser.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(LODEParser.class.getName()).log(Level.SEVERE, null, ex);
+            namespaceDeclarations.putAll(splitter.getNamespaces());
+            replacements.putAll(splitter.getReplacements());
+        }
+        //fix ids
+        IdRewriter ids = getIdRewriter();
+        if(!"".equals(classList)&&classList!=null){
+            classList = ids.rewrite(classList);
+            classes = ids.rewrite(classes);
+        }
+        if(!"".equals(propertyList) &&propertyList!=null){
+            propertyList = ids.rewrite(propertyList);
+            properties = ids.rewrite(properties);
+        }
+        if(!"".equals(dataPropList)&& dataPropList!=null){
+            dataPropList = ids.rewrite(dataPropList);
+            dataProp = ids.rewrite(dataProp);
         }
     }
-    
-    private  String getTermList(Node n){
-    NodeList divs = n.getChildNodes();
-    for(int j = 0; j<divs.getLength(); j++){
-        if(divs.item(j).getNodeName().equals("ul")){            
-            return(nodeToString(divs.item(j)));
-        }       
-    }    
-    return null;
-}    
-    private  String nodeToString(Node n){
+
+    /**
+     * @return the html of a node, without indentation, or null if it cannot
+     * be serialized.
+     */
+    static String nodeToString(Node n){
+        StringWriter sw = new StringWriter();
+        if(!writeNode(n, new StreamResult(sw), false)){
+            return null;
+        }
+        return sw.toString().replace(XHTML_NS_DECLARATION, "");
+    }
+
+    /**
+     * Writes the html of a node to a writer. The node is written as it is, so
+     * nodes in the xhtml namespace keep their namespace declaration.
+     * @return false if the node could not be serialized.
+     */
+    static boolean writeNode(Node n, Writer out, boolean indent){
+        return writeNode(n, new StreamResult(out), indent);
+    }
+
+    private static boolean writeNode(Node n, Result result, boolean indent){
         try {
-            TransformerFactory transfac = TransformerFactory.newInstance();
-            Transformer trans = transfac.newTransformer();
-            trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            trans.setOutputProperty(OutputKeys.INDENT, "yes");
-            StringWriter sw = new StringWriter();
-            StreamResult result = new StreamResult(sw);
-            DOMSource source = new DOMSource(fixAnchor(n));
-            trans.transform(source, result);
-            return sw.toString();
-//            String returnValue= sw.toString().replace("\n", "");          
-//            return(returnValue);
+            //the serializer of the thread is not used by anyone else while it writes
+            Transformer trans = serializer.get();
+            trans.setOutputProperty(OutputKeys.INDENT, indent ? "yes" : "no");
+            trans.transform(new DOMSource(n), result);
+            return true;
         }
         catch (IllegalArgumentException ex) {
             System.err.println("Error while writing to xml "+ex.getMessage());
             //ex.printStackTrace();
-            return null;
+            return false;
         } catch (TransformerException ex) {
             System.err.println("Error while writing to xml "+ex.getMessage());
             //ex.printStackTrace();
-            return null;
+            return false;
         }
     }
 
-    //this methods removes the first 2 anchors of the div returned by LODE (they lead to an error).
-    //it also changes the id of the div replacing it with the name found in the anchor
-    //(the second one)
-    private  Node fixAnchor(Node nodeToFix) {        
+    //this methods removes the first 2 anchors of the div of an entity returned by LODE (they lead to an error).
+    //it also saves the id of the div with the name found in the first anchor, to replace it later
+    void fixAnchor(Node entity, Map<String, String> entityIds) {
         try{
-            NodeList outerDiv = nodeToFix.getChildNodes();
-            for(int i = 0; i<outerDiv.getLength(); i++){
-                Node currentNode = outerDiv.item(i);
-                if(currentNode.getNodeName().equals("div")){
-                    //NodeList list =  nodeToFix.getChildNodes();
-                    Node firstAnchor = currentNode.getFirstChild();
-                    Node secondAnchor = firstAnchor.getNextSibling();
-                    String newID = firstAnchor.getAttributes().getNamedItem("name").getNodeValue();
-                    newID = newID.replace(c.getMainOntology().getNamespaceURI(), "");
-                    if(secondAnchor.getNodeName().equals("a")){
-                        currentNode.removeChild(secondAnchor);
-                    }
-                    //we save the the id for derreferencing properly the resource. Note that
-                    //if a property has the same name as a Class this could lead to problems                
-                    replacements.put(currentNode.getAttributes().getNamedItem("id").getNodeValue(), newID);
-
-                    //we remove the anchor, which make an error in the visualization
-                    currentNode.removeChild(firstAnchor);
-                }
+            Node firstAnchor = entity.getFirstChild();
+            Node id = entity.getAttributes().getNamedItem("id");
+            if(firstAnchor == null || id == null || firstAnchor.getAttributes() == null
+                    || firstAnchor.getAttributes().getNamedItem("name") == null){
+                return;
             }
-            return nodeToFix;
+            Node secondAnchor = firstAnchor.getNextSibling();
+            String newID = firstAnchor.getAttributes().getNamedItem("name").getNodeValue();
+            newID = newID.replace(c.getMainOntology().getNamespaceURI(), "");
+            if(secondAnchor != null && secondAnchor.getNodeName().equals("a")){
+                entity.removeChild(secondAnchor);
+            }
+            //we save the the id for derreferencing properly the resource. Note that
+            //if a property has the same name as a Class this could lead to problems
+            entityIds.put(id.getNodeValue(), newID);
+
+            //we remove the anchor, which make an error in the visualization
+            entity.removeChild(firstAnchor);
         }catch(DOMException ex){
             System.err.println("Could not fix node");
-            return nodeToFix;
         }
     }
     
     /**
-     * Method to fix the ids generated automatically by LODE with the URIs of the classes and properties.
-     * @param textToBeFixed The input text with the links to be fixed
+     * Rewriter to fix the ids generated automatically by LODE with the URIs of the classes and properties.
+     * It also removes the ':' LODE writes before the names of the default namespace.
+     * All the ids are replaced in a single pass over each section (see IdRewriter).
      * @return 
      */
-    private String fixIds(String textToBeFixed){    
-        for (String keyToReplace : replacements.keySet()) {
-            textToBeFixed = textToBeFixed.replace(keyToReplace, replacements.get(keyToReplace));
-            textToBeFixed = textToBeFixed.replace("<span>:", "<span>");
-        }
-        return textToBeFixed;
+    private IdRewriter getIdRewriter(){
+        IdRewriter rewriter = new IdRewriter(replacements);
+        rewriter.add("<span>:", "<span>");
+        return rewriter;
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Takes the sections Widoco reuses out of LODE's html in a single pass over
+ * its SAX events, without building the document. Each child of a section
+ * (its heading, its list of terms and the description of each entity) is
+ * kept as a small tree only until it ends: then its anchors are fixed and it
+ * is written to the text of the section. The namespace declarations are
+ * collected as their dt and dd elements are read. The memory used is that of
+ * the biggest entity, not that of the whole document.
+ * A splitter is used by a single thread (the one rendering its part of LODE).
+ */
+class LODESectionSplitter extends DefaultHandler {
+    static final String CLASSES = "classes";
+    static final String OBJECT_PROPERTIES = "objectproperties";
+    static final String DATA_PROPERTIES = "dataproperties";
+    static final String NAMESPACES = "namespacedeclarations";
+
+    private final LODEParser parser;
+    private final Document factory;
+    private final HashMap<String, StringWriter> sections = new HashMap<String, StringWriter>();
+    private final HashMap<String, String> lists = new HashMap<String, String>();
+    private final HashMap<String, String> namespaces = new HashMap<String, String>();
+    private final HashMap<String, String> replacements = new HashMap<String, String>();
+
+    //section being read, and depth of the elements inside it (1 is the section div)
+    private String section;
+    private int depth;
+    //child of the section being built, and its element being read
+    private Element child;
+    private Node current;
+    //text of the dt or dd being read in the namespace declarations
+    private StringBuilder text;
+    private String prefix;
+
+    /**
+     * @param parser parser that fixes and serializes the children of the
+     * sections.
+     */
+    LODESectionSplitter(LODEParser parser) throws ParserConfigurationException {
+        this.parser = parser;
+        this.factory = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    }
+
+    /**
+     * @return the html of a section, or null if it was not in the document.
+     */
+    String getSection(String id) {
+        StringWriter s = sections.get(id);
+        return s == null ? null : s.toString();
+    }
+
+    /**
+     * @return the list of terms of a section, or null if it has none.
+     */
+    String getList(String id) {
+        return lists.get(id);
+    }
+
+    HashMap<String, String> getNamespaces() {
+        return namespaces;
+    }
+
+    /**
+     * @return the ids LODE gave to the entities, with the ones they are
+     * replaced with (see LODEParser.fixAnchor).
+     */
+    HashMap<String, String> getReplacements() {
+        return replacements;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        String name = getName(localName, qName);
+        if(section == null){
+            String id = attributes.getValue("id");
+            if("div".equals(name) && id != null && isSection(id)){
+                section = id;
+                depth = 1;
+                if(!NAMESPACES.equals(id)){
+                    StringWriter s = new StringWriter();
+                    s.append("<div");
+                    for(int i = 0; i < attributes.getLength(); i++){
+                        String attribute = getName(attributes.getLocalName(i), attributes.getQName(i));
+                        if(!isNamespaceDeclaration(attribute)){
+                            s.append(' ').append(attribute).append("=\"").append(escape(attributes.getValue(i), true)).append('"');
+                        }
+                    }
+                    sections.put(id, s.append('>'));
+                }
+            }
+            return;
+        }
+        depth++;
+        if(NAMESPACES.equals(section)){
+            if("dt".equals(name) || "dd".equals(name)){
+                text = new StringBuilder();
+            }
+            return;
+        }
+        Element e = factory.createElement(name);
+        for(int i = 0; i < attributes.getLength(); i++){
+            String attribute = getName(attributes.getLocalName(i), attributes.getQName(i));
+            if(!isNamespaceDeclaration(attribute)){
+                e.setAttribute(attribute, attributes.getValue(i));
+            }
+        }
+        if(child == null){
+            child = e;
+        }else{
+            current.appendChild(e);
+        }
+        current = e;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if(section == null){
+            return;
+        }
+        depth--;
+        String name = getName(localName, qName);
+        if(depth == 0){
+            if(!NAMESPACES.equals(section)){
+                sections.get(section).append("</div>");
+            }
+            section = null;
+        }else if(NAMESPACES.equals(section)){
+            //<dt>prefix</dt> <dd>namespace</dd>, the default namespace is <dt><em>label</em></dt>
+            if("dt".equals(name) && text != null){
+                prefix = text.toString();
+                text = null;
+            }else if("dd".equals(name) && text != null){
+                if(prefix != null){
+                    namespaces.put(prefix, text.toString());
+                }
+                prefix = null;
+                text = null;
+            }
+        }else if(depth == 1){
+            writeChild();
+        }else{
+            current = current.getParentNode();
+        }
+    }
+
+    /**
+     * Writes a child of the section once it is complete, directly to the
+     * text of the section. The descriptions of the entities have their anchors
+     * fixed first; the first list of terms is the one shown in the overview.
+     * The children are built without namespace, so nothing has to be removed
+     * from their html.
+     */
+    private void writeChild(){
+        Element complete = child;
+        child = null;
+        current = null;
+        if("div".equals(complete.getNodeName())){
+            parser.fixAnchor(complete, replacements);
+        }
+        if("ul".equals(complete.getNodeName()) && !lists.containsKey(section)){
+            String html = LODEParser.nodeToString(complete);
+            if(html != null){
+                lists.put(section, html);
+                sections.get(section).append(html);
+            }
+        }else{
+            LODEParser.writeNode(complete, sections.get(section), false);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if(section == null){
+            return;
+        }
+        if(NAMESPACES.equals(section)){
+            if(text != null){
+                text.append(ch, start, length);
+            }
+        }else if(current != null){
+            current.appendChild(factory.createTextNode(new String(ch, start, length)));
+        }else{
+            sections.get(section).append(escape(new String(ch, start, length), false));
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    private static boolean isSection(String id){
+        return CLASSES.equals(id) || OBJECT_PROPERTIES.equals(id) || DATA_PROPERTIES.equals(id) || NAMESPACES.equals(id);
+    }
+
+    //the elements of LODE are in the xhtml namespace, which is not written in the sections
+    private static boolean isNamespaceDeclaration(String attribute){
+        return "xmlns".equals(attribute) || attribute.startsWith("xmlns:");
+    }
+
+    private static String getName(String localName, String qName){
+        return (qName == null || "".equals(qName)) ? localName : qName;
+    }
+
+    private static String escape(String s, boolean attribute){
+        StringBuilder escaped = new StringBuilder(s.length());
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c == '&'){
+                escaped.append("&amp;");
+            }else if(c == '<'){
+                escaped.append("&lt;");
+            }else if(c == '>'){
+                escaped.append("&gt;");
+            }else if(c == '"' && attribute){
+                escaped.append("&quot;");
+            }else{
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
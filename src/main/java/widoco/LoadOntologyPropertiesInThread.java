@@ -34,7 +34,7 @@ public class LoadOntologyPropertiesInThread implements Runnable{
 
     public void run() {
         //once it is loaded, load the properties in the config
-        c.loadPropertiesFromOntology(WidocoUtils.loadModel(c));
+        c.loadPropertiesFromOntology(WidocoUtils.loadHeader(c));
         //notify the main thread to refresh the properties table.
         pointerToMain.switchState("finishedLoading");
     }
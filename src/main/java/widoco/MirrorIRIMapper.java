@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Maps the IRIs of imported ontologies to local copies in a mirror folder.
+ * The copies are listed in an XML catalog in the folder (catalog-v001.xml,
+ * the same file Protg uses), with an entry per ontology:
+ * &lt;uri name="http://example.org/onto" uri="onto.owl"/&gt;. The uri of
+ * the entries are resolved as in XML catalogs: against the xml:base of the
+ * entry and its groups, and then against the catalog file.
+ */
+public class MirrorIRIMapper implements OWLOntologyIRIMapper {
+    public static final String CATALOG = "catalog-v001.xml";
+
+    private final Map<String, IRI> copies;
+
+    /**
+     * @param directory the mirror folder. If it has no catalog, no IRI is mapped.
+     */
+    public MirrorIRIMapper(File directory) {
+        copies = new HashMap<String, IRI>();
+        File catalog = new File(directory, CATALOG);
+        if(!catalog.exists()){
+            return;
+        }
+        try{
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(catalog);
+            NodeList entries = doc.getElementsByTagName("uri");
+            for(int i = 0; i < entries.getLength(); i++){
+                Element entry = (Element) entries.item(i);
+                String name = entry.getAttribute("name");
+                String path = entry.getAttribute("uri");
+                if(!"".equals(name) && !"".equals(path)){
+                    copies.put(name, IRI.create(getBase(entry, catalog.toURI()).resolve(path)));
+                }
+            }
+        }catch(Exception e){
+            System.err.println("Error while reading the catalog "+catalog+": "+e.getMessage());
+        }
+    }
+
+    private static URI getBase(Element entry, URI catalog){
+        Node parent = entry.getParentNode();
+        URI base = parent instanceof Element ? getBase((Element) parent, catalog) : catalog;
+        String xmlBase = entry.getAttribute("xml:base");
+        return "".equals(xmlBase) ? base : base.resolve(xmlBase);
+    }
+
+    /**
+     * @return the IRI of the local copy, or null if the ontology is not in the mirror.
+     */
+    public IRI getDocumentIRI(IRI ontologyIRI) {
+        return copies.get(ontologyIRI.toString());
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.sparql.graph.GraphFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of parsed ontologies, so the same version of an ontology is
+ * parsed only once across runs. The entries are addressed by the hash of the
+ * content of the ontology (and the base used to resolve its relative IRIs),
+ * and hold its triples in a compact binary form: a dictionary with every
+ * term, followed by the triples as numbers of that dictionary. Loading an
+ * entry does not need any parser.
+ * When the size of the cache goes over its limit, the entries used least
+ * recently are removed.
+ */
+public class OntologyCache {
+    private static final int MAGIC = 0x57444f43;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".triples";
+    private static final byte URI = 0;
+    private static final byte BLANK = 1;
+    private static final byte LITERAL = 2;
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static OntologyCache defaultCache;
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * @param directory folder where the entries are stored (created if needed).
+     * @param maxSize maximum size of the entries, in bytes.
+     */
+    public OntologyCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache in the .widoco folder of the user.
+     */
+    public static synchronized OntologyCache getDefault(){
+        if(defaultCache == null){
+            File dir = new File(System.getProperty("user.home"), ".widoco"+File.separator+"cache");
+            defaultCache = new OntologyCache(dir, DEFAULT_MAX_SIZE);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * @param content the ontology.
+     * @param base base IRI of its relative IRIs (may be null).
+     * @return the key of the ontology in the cache.
+     */
+    public static String getKey(byte[] content, String base){
+        MessageDigest digest = createDigest();
+        digest.update(content);
+        return getKey(digest, base);
+    }
+
+    /**
+     * The same key as getKey(byte[], String), without reading the ontology
+     * in memory.
+     * @param in the ontology (it is not closed).
+     * @param base base IRI of its relative IRIs (may be null).
+     * @return the key of the ontology in the cache.
+     * @throws IOException if the ontology cannot be read
+     */
+    public static String getKey(InputStream in, String base) throws IOException{
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            digest.update(buffer, 0, read);
+        }
+        return getKey(digest, base);
+    }
+
+    private static MessageDigest createDigest(){
+        try{
+            return MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getKey(MessageDigest digest, String base){
+        try{
+            if(base != null){
+                digest.update(base.getBytes("UTF-8"));
+            }
+        }catch(IOException e){
+            throw new IllegalStateException(e);
+        }
+        StringBuilder key = new StringBuilder();
+        for(byte b : digest.digest()){
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key key of the ontology.
+     * @return the triples of the ontology, or null if it is not in the cache.
+     */
+    public synchronized Graph read(String key){
+        File entry = new File(directory, key+EXTENSION);
+        if(!entry.exists()){
+            return null;
+        }
+        try{
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try{
+                Graph graph = readGraph(in);
+                //the date of the file is the last time it was used
+                entry.setLastModified(System.currentTimeMillis());
+                return graph;
+            }finally{
+                in.close();
+            }
+        }catch(IOException e){
+            System.err.println("Error while reading the cached ontology "+key+": "+e.getMessage());
+            entry.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the triples of an ontology, and removes the oldest entries if
+     * the cache is too big.
+     * @param key key of the ontology.
+     * @param graph its triples.
+     */
+    public synchronized void write(String key, Graph graph){
+        directory.mkdirs();
+        File entry = new File(directory, key+EXTENSION);
+        File tmp = new File(directory, key+EXTENSION+".tmp");
+        try{
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try{
+                writeGraph(out, graph);
+            }finally{
+                out.close();
+            }
+            //other runs never see an entry half written
+            entry.delete();
+            if(!tmp.renameTo(entry)){
+                throw new IOException("Could not rename "+tmp);
+            }
+        }catch(IOException e){
+            System.err.println("Error while caching the ontology "+key+": "+e.getMessage());
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+
+    private void evict(){
+        File[] entries = directory.listFiles();
+        if(entries == null){
+            return;
+        }
+        List<File> files = new ArrayList<File>();
+        long size = 0;
+        for(File f : entries){
+            if(f.getName().endsWith(EXTENSION)){
+                files.add(f);
+                size += f.length();
+            }
+        }
+        File[] sorted = files.toArray(new File[files.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+            }
+        });
+        for(int i = 0; i < sorted.length && size > maxSize; i++){
+            size -= sorted[i].length();
+            sorted[i].delete();
+        }
+    }
+
+    private static void writeGraph(DataOutputStream out, Graph graph) throws IOException{
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        Map<String, String> prefixes = graph.getPrefixMapping().getNsPrefixMap();
+        out.writeInt(prefixes.size());
+        for(Map.Entry<String, String> prefix : prefixes.entrySet()){
+            writeString(out, prefix.getKey());
+            writeString(out, prefix.getValue());
+        }
+        //the dictionary is written first, so the triples can be read as numbers
+        Map<Node, Integer> dictionary = new HashMap<Node, Integer>();
+        List<Node> terms = new ArrayList<Node>();
+        List<Triple> triples = new ArrayList<Triple>();
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, Node.ANY, Node.ANY);
+        try{
+            while(it.hasNext()){
+                Triple t = it.next();
+                triples.add(t);
+                addTerm(t.getSubject(), dictionary, terms);
+                addTerm(t.getPredicate(), dictionary, terms);
+                addTerm(t.getObject(), dictionary, terms);
+            }
+        }finally{
+            it.close();
+        }
+        out.writeInt(terms.size());
+        for(Node term : terms){
+            writeTerm(out, term);
+        }
+        out.writeInt(triples.size());
+        for(Triple t : triples){
+            out.writeInt(dictionary.get(t.getSubject()));
+            out.writeInt(dictionary.get(t.getPredicate()));
+            out.writeInt(dictionary.get(t.getObject()));
+        }
+    }
+
+    private static Graph readGraph(DataInputStream in) throws IOException{
+        if(in.readInt() != MAGIC || in.readInt() != VERSION){
+            throw new IOException("Not a cached ontology");
+        }
+        Graph graph = GraphFactory.createGraphMem();
+        int prefixes = in.readInt();
+        for(int i = 0; i < prefixes; i++){
+            graph.getPrefixMapping().setNsPrefix(readString(in), readString(in));
+        }
+        Node[] terms = new Node[in.readInt()];
+        for(int i = 0; i < terms.length; i++){
+            terms[i] = readTerm(in);
+        }
+        int triples = in.readInt();
+        for(int i = 0; i < triples; i++){
+            graph.add(Triple.create(terms[in.readInt()], terms[in.readInt()], terms[in.readInt()]));
+        }
+        return graph;
+    }
+
+    private static void addTerm(Node term, Map<Node, Integer> dictionary, List<Node> terms){
+        if(!dictionary.containsKey(term)){
+            dictionary.put(term, terms.size());
+            terms.add(term);
+        }
+    }
+
+    private static void writeTerm(DataOutputStream out, Node term) throws IOException{
+        if(term.isURI()){
+            out.writeByte(URI);
+            writeString(out, term.getURI());
+        }else if(term.isBlank()){
+            out.writeByte(BLANK);
+            writeString(out, term.getBlankNodeLabel());
+        }else{
+            out.writeByte(LITERAL);
+            writeString(out, term.getLiteralLexicalForm());
+            writeString(out, term.getLiteralLanguage());
+            String datatype = term.getLiteralDatatypeURI();
+            writeString(out, datatype == null ? "" : datatype);
+        }
+    }
+
+    private static Node readTerm(DataInputStream in) throws IOException{
+        byte kind = in.readByte();
+        if(kind == URI){
+            return NodeFactory.createURI(readString(in));
+        }else if(kind == BLANK){
+            return NodeFactory.createAnon(AnonId.create(readString(in)));
+        }else if(kind == LITERAL){
+            String lexicalForm = readString(in);
+            String lang = readString(in);
+            String datatype = readString(in);
+            return NodeFactory.createLiteral(lexicalForm, lang, "".equals(datatype) ? null : NodeFactory.getType(datatype));
+        }
+        throw new IOException("Unknown term in the cached ontology");
+    }
+
+    //writeUTF is limited to 64KB, which long comments may exceed
+    private static void writeString(DataOutputStream out, String s) throws IOException{
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException{
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+
+/**
+ * Serializations an ontology can be read from. The format of an ontology is
+ * detected before parsing it (see WidocoUtils.detectFormat), so only the
+ * parser of that format is used.
+ */
+public enum OntologyFormat {
+    RDF_XML(RDFLanguages.RDFXML),
+    TURTLE(RDFLanguages.TURTLE),
+    N_TRIPLES(RDFLanguages.NTRIPLES),
+    N_QUADS(RDFLanguages.NQUADS),
+    //not supported by the versions of Jena and the OWL API used by Widoco
+    JSON_LD(null),
+    //only supported by the OWL API
+    OWL_XML(null),
+    MANCHESTER(null);
+
+    private final Lang jenaLang;
+
+    private OntologyFormat(Lang jenaLang) {
+        this.jenaLang = jenaLang;
+    }
+
+    /**
+     * @return the language used to read the format with Jena, or null if
+     * Jena cannot read it.
+     */
+    public Lang getJenaLang() {
+        return jenaLang;
+    }
+}
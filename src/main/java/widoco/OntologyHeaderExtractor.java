@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+
+/**
+ * Reads the header of an RDF/XML ontology (the statements about its
+ * owl:Ontology resource, and the blank nodes they point to) without loading
+ * the rest of it in a model. The triples are consumed as the parser produces
+ * them, and only those of the ontology resource and of blank nodes are kept.
+ * In RDF/XML the statements of a resource are written together, so the
+ * header is considered complete when the parser moves on to a named resource
+ * that is not nested in it, and the parsing stops there instead of reading
+ * the whole file. The other formats do not give that guarantee: the
+ * statements of the ontology could be anywhere, and every blank node would
+ * have to be kept until the end. Their header is taken from the model of the
+ * whole ontology instead (see OntologySource.getHeader).
+ * If the ontology is declared after many other statements, the parsing is
+ * abandoned instead of keeping them all.
+ */
+class OntologyHeaderExtractor implements StreamRDF {
+    private static final Node TYPE = RDF.type.asNode();
+    private static final Node ONTOLOGY = OWL.Ontology.asNode();
+    //statements kept while looking for the ontology and its blank nodes
+    static final int MAX_BUFFERED = 100000;
+
+    //thrown to stop the parser once the header has been read, or once too many statements have been kept
+    private static class StopParsing extends RuntimeException {
+        private final boolean complete;
+
+        StopParsing(boolean complete) {
+            super(complete ? "The header of the ontology has been read" : "Too many statements before the header of the ontology");
+            this.complete = complete;
+        }
+    }
+
+    private final OntModel header;
+    //statements of named resources read before the ontology is found (it is usually declared first)
+    private final List<Triple> pending;
+    private final List<Triple> statements;
+    //statements of the blank nodes, which may be values of the header defined before or after it
+    private final Map<Node, List<Triple>> blankNodes;
+    //named resources described inside the header (e.g., the creator of the ontology)
+    private final Set<Node> nested;
+    private Node ontology;
+    //named resource whose statements are being read, if it is not known to be nested in the header yet
+    private Node candidate;
+    private int buffered;
+
+    private OntologyHeaderExtractor() {
+        header = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        pending = new ArrayList<Triple>();
+        statements = new ArrayList<Triple>();
+        blankNodes = new HashMap<Node, List<Triple>>();
+        nested = new HashSet<Node>();
+    }
+
+    /**
+     * @param in the ontology, in RDF/XML. It is read only until its header
+     * is complete.
+     * @param base base IRI for the relative IRIs of the ontology.
+     * @return a model with the header of the ontology, or null if it does
+     * not have an owl:Ontology resource or it is declared too late in the
+     * document.
+     */
+    static OntModel extract(InputStream in, String base){
+        OntologyHeaderExtractor extractor = new OntologyHeaderExtractor();
+        try{
+            WidocoUtils.parse(extractor, in, base, Lang.RDFXML);
+        }catch(RuntimeException e){
+            //some parsers wrap the exceptions of the stream
+            StopParsing stop = getStop(e);
+            if(stop == null){
+                throw e;
+            }
+            if(!stop.complete){
+                return null;
+            }
+        }
+        return extractor.build();
+    }
+
+    private static StopParsing getStop(Throwable e){
+        while(e != null){
+            if(e instanceof StopParsing){
+                return (StopParsing) e;
+            }
+            e = e.getCause();
+        }
+        return null;
+    }
+
+    public void triple(Triple triple) {
+        Node subject = triple.getSubject();
+        if(ontology == null && triple.getPredicate().equals(TYPE) && triple.getObject().equals(ONTOLOGY)){
+            ontology = subject;
+            for(Triple t : pending){
+                if(ontology.equals(t.getSubject())){
+                    statements.add(t);
+                }
+            }
+            pending.clear();
+        }
+        if(candidate != null && !candidate.equals(subject)){
+            //the element of a resource nested in the header is followed by the statement that points to it
+            if(!candidate.equals(triple.getObject())){
+                throw new StopParsing(true);
+            }
+            nested.add(candidate);
+            candidate = null;
+        }
+        if(subject.isBlank()){
+            List<Triple> values = blankNodes.get(subject);
+            if(values == null){
+                values = new ArrayList<Triple>();
+                blankNodes.put(subject, values);
+            }
+            values.add(triple);
+            count();
+        }else if(ontology == null){
+            pending.add(triple);
+            count();
+        }else if(ontology.equals(subject)){
+            statements.add(triple);
+        }else if(!nested.contains(subject)){
+            candidate = subject;
+        }
+    }
+
+    private void count(){
+        if(++buffered > MAX_BUFFERED){
+            throw new StopParsing(false);
+        }
+    }
+
+    /**
+     * @return the model with the statements of the ontology and of the
+     * blank nodes reachable from them, or null if there is no ontology.
+     */
+    private OntModel build(){
+        if(ontology == null){
+            return null;
+        }
+        List<Triple> triples = new ArrayList<Triple>(statements);
+        Set<Node> visited = new HashSet<Node>();
+        if(ontology.isBlank()){
+            visited.add(ontology);
+            triples.addAll(get(ontology));
+        }
+        //the list grows while the blank nodes are added
+        for(int i = 0; i < triples.size(); i++){
+            Triple t = triples.get(i);
+            header.getGraph().add(t);
+            if(t.getObject().isBlank() && visited.add(t.getObject())){
+                triples.addAll(get(t.getObject()));
+            }
+        }
+        return header;
+    }
+
+    private List<Triple> get(Node blankNode){
+        List<Triple> values = blankNodes.get(blankNode);
+        return values == null ? new ArrayList<Triple>() : values;
+    }
+
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    public void tuple(Tuple<Node> tuple) {
+        //not RDF: nothing to read
+    }
+
+    public void start() {
+    }
+
+    public void base(String base) {
+    }
+
+    public void prefix(String prefix, String iri) {
+        header.setNsPrefix(prefix, iri);
+    }
+
+    public void finish() {
+    }
+}
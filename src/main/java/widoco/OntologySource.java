@@ -0,0 +1,639 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.coode.owlapi.manchesterowlsyntax.ManchesterOWLSyntaxOntologyParser;
+import org.coode.owlapi.owlxmlparser.OWLXMLParser;
+import org.coode.owlapi.rdfxml.parser.AnonymousNodeChecker;
+import org.coode.owlapi.rdfxml.parser.OWLRDFConsumer;
+import org.coode.owlapi.turtle.TurtleOntologyFormat;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.OWLParser;
+import org.semanticweb.owlapi.io.OWLParserException;
+import org.semanticweb.owlapi.io.RDFOntologyFormat;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentSource;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
+import org.semanticweb.owlapi.model.NodeID;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyLoaderConfiguration;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.xml.sax.SAXException;
+
+/**
+ * The ontology being documented, shared by all the steps of a run (loading
+ * its metadata, LODE and the OOPS evaluation).
+ * The file or URL is read only once and kept in memory; the Jena model and
+ * the OWL API ontology are parsed from those bytes the first time they are
+ * requested, and reused afterwards. The ontology is parsed with the parser of
+ * its format only (see WidocoUtils.detectFormat), and both views are built
+ * from the same triples, which are kept in the OntologyCache so the next runs
+ * over the same content do not parse it again. OWL/XML and Manchester syntax
+ * are not RDF, so they are parsed by the OWL API directly.
+ * The imports of the ontology are not loaded when it is parsed: they are
+ * loaded by ImportsLoader, only if they are going to be documented.
+ */
+public class OntologySource {
+    private static final String ACCEPT = "application/rdf+xml, text/turtle;q=0.9, */*;q=0.1";
+    private static final Pattern IMPORT_DECLARATION = Pattern.compile("<(?:owl:)?Import>\\s*([^<\\s]+)\\s*</(?:owl:)?Import>|Import:\\s*<([^>]+)>");
+
+    private final String location;
+    private final boolean fromFile;
+    private byte[] content;
+    private String contentType;
+    private String etag;
+    private String lastModified;
+    private OntologyFormat format;
+    private OntologyCache cache;
+    private HttpFetcher fetcher;
+    private HttpFetcher.Response response;
+    private Graph graph;
+    private boolean cached;
+    private OntModel model;
+    private OntModel header;
+    private OWLOntologyManager manager;
+    private OWLOntology ontology;
+    private Set<String> imports;
+    private boolean importsIncluded;
+    private TDBStore store;
+
+    /**
+     * @param location path of the file or URL of the ontology.
+     * @param fromFile whether the location is a file.
+     */
+    public OntologySource(String location, boolean fromFile) {
+        this.location = location;
+        this.fromFile = fromFile;
+        this.cache = OntologyCache.getDefault();
+        this.fetcher = HttpFetcher.getDefault();
+    }
+
+    /**
+     * @param fetcher fetcher used to download the ontology when it is a URL.
+     */
+    public synchronized void setFetcher(HttpFetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * @param cache cache of parsed ontologies to use, or null to always parse
+     * the ontology.
+     */
+    public synchronized void setCache(OntologyCache cache) {
+        this.cache = cache;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public boolean isFromFile() {
+        return fromFile;
+    }
+
+    /**
+     * @return the bytes of the ontology, reading the file (or fetching the
+     * URL, see HttpFetcher) the first time. Compressed ontologies are
+     * decompressed while they are read.
+     * @throws IOException if the ontology cannot be read
+     */
+    public synchronized byte[] getContent() throws IOException{
+        if(content == null){
+            InputStream in;
+            if(fromFile){
+                in = decompress(new FileInputStream(location));
+            }else{
+                in = decompress(fetch().openStream());
+            }
+            try{
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    out.write(buffer, 0, read);
+                }
+                content = out.toByteArray();
+            }finally{
+                in.close();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Downloads the ontology the first time (see HttpFetcher). The body is
+     * in a file, so it is only read in memory if getContent is called.
+     */
+    private synchronized HttpFetcher.Response fetch() throws IOException{
+        if(response == null){
+            response = fetcher.fetch(location, ACCEPT);
+            contentType = response.getContentType();
+            etag = response.getETag();
+            lastModified = response.getLastModified();
+        }
+        return response;
+    }
+
+    /**
+     * @return the ETag the server sent with the ontology, or null if it is a
+     * file or the server did not send one.
+     * @throws IOException if the ontology cannot be read
+     */
+    synchronized String getETag() throws IOException{
+        if(!fromFile){
+            fetch();
+        }
+        return etag;
+    }
+
+    /**
+     * @return the Last-Modified date the server sent with the ontology, or
+     * null if it is a file or the server did not send one.
+     * @throws IOException if the ontology cannot be read
+     */
+    synchronized String getLastModified() throws IOException{
+        if(!fromFile){
+            fetch();
+        }
+        return lastModified;
+    }
+
+    /**
+     * Wraps a stream so that compressed ontologies (gzip, bzip2 or zip,
+     * recognized by their first bytes) are decompressed while they are read,
+     * without writing them to disk. Zip files are read from their first file.
+     * Other streams are returned as they are.
+     */
+    static InputStream decompress(InputStream in) throws IOException{
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        byte[] magic = new byte[4];
+        buffered.mark(magic.length);
+        int length = 0;
+        int read;
+        while(length < magic.length && (read = buffered.read(magic, length, magic.length - length)) != -1){
+            length += read;
+        }
+        buffered.reset();
+        if(length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b){
+            return new GZIPInputStream(buffered, 8192);
+        }
+        if(length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h'){
+            return new BufferedInputStream(new BZip2CompressorInputStream(buffered, true));
+        }
+        if(length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4){
+            ZipInputStream zip = new ZipInputStream(buffered);
+            ZipEntry entry = zip.getNextEntry();
+            while(entry != null && entry.isDirectory()){
+                entry = zip.getNextEntry();
+            }
+            if(entry == null){
+                zip.close();
+                throw new IOException("The zip file does not contain any ontology");
+            }
+            return zip;
+        }
+        return buffered;
+    }
+
+    /**
+     * @return the format of the ontology, detected from the content type,
+     * the extension and the first bytes of the ontology.
+     * @throws IOException if the ontology cannot be read
+     */
+    public synchronized OntologyFormat getFormat() throws IOException{
+        if(format == null){
+            byte[] c = getContent();
+            format = WidocoUtils.detectFormat(location, contentType, c);
+        }
+        return format;
+    }
+
+    /**
+     * Corrects the detected format, when the ontology could only be read
+     * with the parser of another one.
+     */
+    synchronized void setFormat(OntologyFormat format){
+        this.format = format;
+    }
+
+    /**
+     * @return a new stream over the content of the ontology.
+     * @throws IOException if the ontology cannot be read
+     */
+    public InputStream openStream() throws IOException{
+        return new ByteArrayInputStream(getContent());
+    }
+
+    public String getContentAsString() throws IOException{
+        return new String(getContent(), "UTF-8");
+    }
+
+    /**
+     * @return the triples of the ontology, taken from the cache or parsed
+     * (and cached) the first time.
+     * @throws IOException if the ontology cannot be read or parsed
+     */
+    public synchronized Graph getGraph() throws IOException{
+        if(graph == null){
+            String key = null;
+            if(cache != null){
+                try{
+                    key = OntologyCache.getKey(getContent(), getBase());
+                    graph = cache.read(key);
+                    cached = graph != null;
+                }catch(IOException e){
+                    System.err.println("Error while reading "+location+": "+e.getMessage());
+                }
+            }
+            if(graph == null){
+                Model m = ModelFactory.createDefaultModel();
+                WidocoUtils.readModel(m, this);
+                if(key != null){
+                    cache.write(key, m.getGraph());
+                }
+                graph = m.getGraph();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @return the ontology as a Jena model (used to load its metadata).
+     * @throws IOException if the ontology cannot be read or parsed
+     */
+    public synchronized OntModel getModel() throws IOException{
+        if(model == null){
+            model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM_RDFS_INF, ModelFactory.createModelForGraph(getGraph()));
+        }
+        return model;
+    }
+
+    /**
+     * @return a model with the header of the ontology only (the statements
+     * about its owl:Ontology resource), which is enough to load its metadata.
+     * RDF/XML is streamed, and read only until the header is complete (see
+     * OntologyHeaderExtractor). If the whole ontology has already been
+     * parsed, or it is in another format, the model of the whole ontology is
+     * returned.
+     * @throws IOException if the ontology cannot be read or parsed
+     */
+    public synchronized OntModel getHeader() throws IOException{
+        if(model != null){
+            return model;
+        }
+        if(header == null){
+            try{
+                header = readHeader();
+            }catch(Exception e){
+                System.err.println("Error while reading the header of "+location+": "+e.getMessage());
+            }
+            if(header == null){
+                header = getModel();
+            }
+        }
+        return header;
+    }
+
+    private OntModel readHeader() throws IOException{
+        InputStream in = openDiskStream();
+        try{
+            //only RDF/XML can be read until its header is complete
+            if(format != OntologyFormat.RDF_XML){
+                return null;
+            }
+            return OntologyHeaderExtractor.extract(in, getBase());
+        }finally{
+            in.close();
+        }
+    }
+
+    /**
+     * Opens the ontology without keeping it in memory: files are read from
+     * disk as the stream is consumed, and URLs from the file they are
+     * downloaded to (see HttpFetcher). If the format is not known
+     * yet, it is detected from the first bytes of the stream.
+     * @return a new stream over the (decompressed) ontology.
+     * @throws IOException if the ontology cannot be read
+     */
+    synchronized InputStream openDiskStream() throws IOException{
+        InputStream source;
+        if(content != null){
+            source = new ByteArrayInputStream(content);
+        }else if(fromFile){
+            source = decompress(new FileInputStream(location));
+        }else{
+            source = decompress(fetch().openStream());
+        }
+        BufferedInputStream in = new BufferedInputStream(source);
+        if(format == null){
+            byte[] head = new byte[WidocoUtils.LOOK_AHEAD];
+            in.mark(head.length);
+            int length = 0;
+            int read;
+            try{
+                while(length < head.length && (read = in.read(head, length, head.length - length)) != -1){
+                    length += read;
+                }
+                in.reset();
+            }catch(IOException e){
+                in.close();
+                throw e;
+            }
+            format = WidocoUtils.detectFormat(location, contentType, Arrays.copyOf(head, length));
+        }
+        return in;
+    }
+
+    /**
+     * @return the ontology loaded with the OWL API (used by LODE).
+     * @throws OWLOntologyCreationException if the ontology cannot be parsed
+     * @throws IOException if the ontology cannot be read
+     */
+    public synchronized OWLOntology getOntology() throws OWLOntologyCreationException, IOException{
+        if(ontology == null){
+            OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+            OWLOntology o = m.createOntology();
+            OWLParser parser = createParser(getFormat());
+            Graph triples = (parser != null && !cached) ? null : getGraph();
+            imports = triples == null ? findImports(getContentAsString()) : findImports(triples);
+            OWLOntologyLoaderConfiguration config = new OWLOntologyLoaderConfiguration()
+                    .setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
+            for(String i : imports){
+                config = config.addIgnoredImport(IRI.create(i));
+            }
+            if(triples == null){
+                try{
+                    m.setOntologyFormat(o, parser.parse(new StreamDocumentSource(openStream(), getDocumentIRI()), o, config));
+                }catch(OWLParserException e){
+                    throw new OWLOntologyCreationException(e);
+                }
+            }else{
+                m.setOntologyFormat(o, translate(triples, o, config));
+            }
+            m.setOntologyDocumentIRI(o, getDocumentIRI());
+            ontology = o;
+            manager = m;
+        }
+        return ontology;
+    }
+
+    /**
+     * @param directory working directory of the TDB datasets, or null to use
+     * the .widoco folder of the user.
+     * @return the ontology bulk loaded in a TDB dataset on disk (see
+     * TDBStore), to be read without loading it in memory.
+     */
+    public synchronized TDBStore getStore(String directory){
+        if(store == null){
+            File dir = (directory == null || "".equals(directory))
+                    ? new File(System.getProperty("user.home"), ".widoco"+File.separator+"tdb") : new File(directory);
+            store = new TDBStore(this, dir);
+        }
+        return store;
+    }
+
+    /**
+     * @return the IRIs of the ontologies imported by this one.
+     * @throws OWLOntologyCreationException if the ontology cannot be parsed
+     * @throws IOException if the ontology cannot be read
+     */
+    public synchronized Set<String> getImports() throws OWLOntologyCreationException, IOException{
+        getOntology();
+        return imports;
+    }
+
+    /**
+     * Adds the axioms of the imports closure to the ontology, so they are
+     * documented with it (see Configuration.isUseImported). The parsers
+     * ignore the imports; the ones loaded by the loader are also added to the
+     * manager as already loaded, so the imports closure it gives for the
+     * ontology is complete, and it reads any other import from the mirror of
+     * the loader. It is done only once: later calls do nothing.
+     * @param loader loader used to get the imports closure.
+     */
+    public synchronized void includeImports(ImportsLoader loader) throws Exception{
+        if(!importsIncluded){
+            OWLOntology o = getOntology();
+            if(loader.getMirror() != null){
+                manager.addIRIMapper(loader.getMirror());
+            }
+            for(OWLOntology imported : loader.getImportsClosure(this)){
+                addLoaded(imported);
+                manager.addAxioms(o, imported.getAxioms());
+            }
+            //the manager only follows the import declarations it was asked to load: the ontologies are already in it
+            for(OWLOntology loaded : manager.getOntologies()){
+                for(OWLImportsDeclaration declaration : loaded.getImportsDeclarations()){
+                    if(manager.contains(declaration.getIRI())){
+                        manager.makeLoadImportRequest(declaration, new OWLOntologyLoaderConfiguration());
+                    }
+                }
+            }
+            importsIncluded = true;
+        }
+    }
+
+    //a copy of an ontology loaded by another manager, with its imports
+    private void addLoaded(OWLOntology imported) throws OWLOntologyCreationException{
+        OWLOntologyID id = imported.getOntologyID();
+        if(id.isAnonymous() || manager.contains(id)){
+            return;
+        }
+        OWLOntology copy = manager.createOntology(id);
+        manager.addAxioms(copy, imported.getAxioms());
+        for(OWLImportsDeclaration declaration : imported.getImportsDeclarations()){
+            manager.applyChange(new AddImport(copy, declaration));
+        }
+        manager.setOntologyDocumentIRI(copy, imported.getOWLOntologyManager().getOntologyDocumentIRI(imported));
+    }
+
+    private static Set<String> findImports(Graph triples){
+        Set<String> found = new LinkedHashSet<String>();
+        ExtendedIterator<Triple> it = triples.find(Node.ANY, OWL.imports.asNode(), Node.ANY);
+        try{
+            while(it.hasNext()){
+                Node imported = it.next().getObject();
+                if(imported.isURI()){
+                    found.add(imported.getURI());
+                }
+            }
+        }finally{
+            it.close();
+        }
+        return found;
+    }
+
+    //the imports of the formats that are not RDF are found in their text (Import in OWL/XML, Import: in Manchester syntax)
+    private static Set<String> findImports(String content){
+        Set<String> found = new LinkedHashSet<String>();
+        Matcher m = IMPORT_DECLARATION.matcher(content);
+        while(m.find()){
+            found.add(m.group(1) != null ? m.group(1) : m.group(2));
+        }
+        return found;
+    }
+
+    /**
+     * Only the formats that are not RDF need a parser of the OWL API: the
+     * others are translated from the triples of the ontology.
+     */
+    private static OWLParser createParser(OntologyFormat format){
+        switch(format){
+            case OWL_XML:
+                return new OWLXMLParser();
+            case MANCHESTER:
+                return new ManchesterOWLSyntaxOntologyParser();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Translates triples into axioms with the same consumer used by the RDF
+     * parsers of the OWL API, without serializing and parsing them again.
+     * @return the format of the ontology, with the prefixes of the triples.
+     */
+    private RDFOntologyFormat translate(Graph triples, OWLOntology o, OWLOntologyLoaderConfiguration config) throws OWLOntologyCreationException, IOException{
+        RDFOntologyFormat f = getFormat() == OntologyFormat.TURTLE ? new TurtleOntologyFormat() : new RDFXMLOntologyFormat();
+        for(Map.Entry<String, String> prefix : triples.getPrefixMapping().getNsPrefixMap().entrySet()){
+            f.setPrefix(prefix.getKey()+":", prefix.getValue());
+        }
+        OWLRDFConsumer consumer = new OWLRDFConsumer(o, new AnonymousNodeChecker() {
+            public boolean isAnonymousNode(IRI iri) {
+                return NodeID.isAnonymousNodeIRI(iri);
+            }
+            public boolean isAnonymousNode(String iri) {
+                return NodeID.isAnonymousNodeIRI(iri);
+            }
+            public boolean isAnonymousSharedNode(String iri) {
+                return NodeID.isAnonymousNodeID(iri);
+            }
+        }, config);
+        consumer.setOntologyFormat(f);
+        try{
+            consumer.startModel(getDocumentIRI().toString());
+            //the consumer expects the types of the resources before their other statements, as the parsers write them
+            boolean fileIris = fromFile && !getBase().startsWith("file://");
+            consume(consumer, triples, true, fileIris);
+            consume(consumer, triples, false, fileIris);
+            consumer.endModel();
+        }catch(SAXException e){
+            throw new OWLOntologyCreationException(e);
+        }
+        return f;
+    }
+
+    private static void consume(OWLRDFConsumer consumer, Graph triples, boolean types, boolean fileIris) throws SAXException{
+        ExtendedIterator<Triple> it = triples.find(Node.ANY, Node.ANY, Node.ANY);
+        try{
+            while(it.hasNext()){
+                Triple t = it.next();
+                if(t.getPredicate().equals(RDF.type.asNode()) != types){
+                    continue;
+                }
+                Node object = t.getObject();
+                if(object.isLiteral()){
+                    String lang = object.getLiteralLanguage();
+                    consumer.statementWithLiteralValue(getId(t.getSubject(), fileIris), t.getPredicate().getURI(),
+                            object.getLiteralLexicalForm(), "".equals(lang) ? null : lang, object.getLiteralDatatypeURI());
+                }else{
+                    consumer.statementWithResourceValue(getId(t.getSubject(), fileIris), t.getPredicate().getURI(), getId(object, fileIris));
+                }
+            }
+        }finally{
+            it.close();
+        }
+    }
+
+    /**
+     * @param fileIris whether the IRIs of files are written as the OWL API
+     * writes them (file:/path), instead of as Jena resolves them against the
+     * base (file:///path).
+     */
+    private static String getId(Node node, boolean fileIris){
+        if(node.isBlank()){
+            return NodeID.getIRIFromNodeID(node.getBlankNodeLabel());
+        }
+        String uri = node.getURI();
+        if(fileIris && uri.startsWith("file:///")){
+            return "file:/"+uri.substring("file:///".length());
+        }
+        return uri;
+    }
+
+    /**
+     * @return the manager of the OWL API ontology, needed to save it or to
+     * get its format.
+     * @throws OWLOntologyCreationException if the ontology cannot be parsed
+     * @throws IOException if the ontology cannot be read
+     */
+    public synchronized OWLOntologyManager getManager() throws OWLOntologyCreationException, IOException{
+        getOntology();
+        return manager;
+    }
+
+    /**
+     * Base of the relative IRIs when parsing with Jena: the IRI of the
+     * document, as for the OWL API, so both resolve them the same way.
+     */
+    String getBase(){
+        return getDocumentIRI().toString();
+    }
+
+    /**
+     * IRI of the document the ontology was read from, used as base for
+     * relative IRIs.
+     */
+    public IRI getDocumentIRI(){
+        if(fromFile){
+            return IRI.create(new File(location).toURI());
+        }
+        return IRI.create(location);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thrown when some sections of the documentation could not be generated.
+ * The rest of the sections are generated anyway, so the exception has the
+ * error of each section that failed.
+ */
+public class SectionGenerationException extends Exception {
+    private final Map<String, Throwable> errors;
+
+    /**
+     * @param errors the error of each section that failed, by the name of the
+     * section.
+     */
+    public SectionGenerationException(Map<String, Throwable> errors) {
+        super(getMessage(errors), errors.isEmpty() ? null : errors.values().iterator().next());
+        this.errors = Collections.unmodifiableMap(new LinkedHashMap<String, Throwable>(errors));
+    }
+
+    /**
+     * @return the error of each section that failed, in the order of the
+     * document.
+     */
+    public Map<String, Throwable> getErrors() {
+        return errors;
+    }
+
+    private static String getMessage(Map<String, Throwable> errors){
+        StringBuilder message = new StringBuilder("Error while generating the sections:");
+        for(Map.Entry<String, Throwable> error : errors.entrySet()){
+            message.append("\n  ").append(error.getKey()).append(": ").append(error.getValue().getMessage());
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.shared.impl.PrefixMappingImpl;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.tdb.StoreConnection;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.base.file.Location;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoader;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+
+/**
+ * The ontology loaded in a TDB dataset on disk, for ontologies too big to be
+ * kept in memory (e.g., with large ABoxes). The ontology is streamed from its
+ * file into the bulk loader of TDB, and the metadata and the sections are
+ * then read with indexed lookups over the dataset, so the memory used does
+ * not depend on the size of the ontology.
+ * Each ontology has its own dataset in the working directory, named after
+ * the file (path, size and date) or the URL and the validators (ETag and
+ * Last-Modified) the server sent with it. A dataset that was loaded
+ * completely is reused by the next runs. Once a new version of the file or
+ * the URL has been loaded, the datasets of its previous versions are deleted.
+ */
+public class TDBStore {
+    //written once the whole ontology is in the dataset, with the file or URL it was loaded from
+    private static final String LOADED = "widoco.loaded";
+
+    private final OntologySource source;
+    private final File directory;
+    private DatasetGraphTDB dataset;
+
+    /**
+     * @param source the ontology.
+     * @param directory working directory, where the dataset is created.
+     */
+    public TDBStore(OntologySource source, File directory) {
+        this.source = source;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the triples of the ontology, loading them in the dataset the
+     * first time.
+     * @throws IOException if the ontology cannot be loaded in the dataset
+     */
+    public synchronized Graph getGraph() throws IOException{
+        if(dataset == null){
+            try{
+                dataset = open();
+            }catch(IOException e){
+                throw e;
+            }catch(Exception e){
+                throw new IOException("Could not load "+source.getLocation()+" in TDB: "+e.getMessage(), e);
+            }
+        }
+        return dataset.getDefaultGraph();
+    }
+
+    /**
+     * @return a model with the header of the ontology (the statements about
+     * its owl:Ontology resource and their blank nodes), read from the dataset.
+     * @throws IOException if the ontology cannot be loaded in the dataset
+     */
+    public OntModel getHeader() throws IOException{
+        Graph graph = getGraph();
+        OntModel header = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        header.setNsPrefixes(graph.getPrefixMapping());
+        ExtendedIterator<Triple> ontologies = graph.find(Node.ANY, RDF.type.asNode(), OWL.Ontology.asNode());
+        try{
+            if(ontologies.hasNext()){
+                copy(graph, ontologies.next().getSubject(), header.getGraph(), new HashSet<Node>());
+            }
+        }finally{
+            ontologies.close();
+        }
+        return header;
+    }
+
+    private static void copy(Graph from, Node subject, Graph to, Set<Node> visited){
+        if(!visited.add(subject)){
+            return;
+        }
+        List<Node> values = new ArrayList<Node>();
+        ExtendedIterator<Triple> it = from.find(subject, Node.ANY, Node.ANY);
+        try{
+            while(it.hasNext()){
+                Triple t = it.next();
+                to.add(t);
+                if(t.getObject().isBlank()){
+                    values.add(t.getObject());
+                }
+            }
+        }finally{
+            it.close();
+        }
+        for(Node value : values){
+            copy(from, value, to, visited);
+        }
+    }
+
+    private DatasetGraphTDB open() throws Exception{
+        File dir = new File(directory, getKey());
+        Location location = new Location(dir.getPath());
+        File loaded = new File(dir, LOADED);
+        if(loaded.exists()){
+            return StoreConnection.make(location).getBaseDataset();
+        }
+        //a dataset left half loaded by a previous run is loaded again from scratch
+        StoreConnection.release(location);
+        delete(dir);
+        dir.mkdirs();
+        DatasetGraphTDB dsg = StoreConnection.make(location).getBaseDataset();
+        try{
+            load(dsg);
+            TDB.sync(dsg);
+        }catch(Exception e){
+            StoreConnection.release(location);
+            delete(dir);
+            throw e;
+        }
+        String origin = getOrigin();
+        OutputStream out = new FileOutputStream(loaded);
+        try{
+            out.write(origin.getBytes("UTF-8"));
+        }finally{
+            out.close();
+        }
+        deleteStale(dir, origin);
+        return dsg;
+    }
+
+    /**
+     * @return the file (absolute path) or the URL of the ontology, which
+     * identifies the datasets of its versions.
+     */
+    private String getOrigin(){
+        return source.isFromFile() ? new File(source.getLocation()).getAbsolutePath() : source.getLocation();
+    }
+
+    /**
+     * Deletes the datasets loaded from the same file or URL as the current
+     * one: they are older versions of the ontology, which will not be used
+     * again.
+     */
+    private void deleteStale(File current, String origin){
+        File[] datasets = directory.listFiles();
+        if(datasets == null){
+            return;
+        }
+        for(File dir : datasets){
+            File loaded = new File(dir, LOADED);
+            if(dir.equals(current) || !loaded.isFile()){
+                continue;
+            }
+            try{
+                if(origin.equals(readOrigin(loaded))){
+                    StoreConnection.release(new Location(dir.getPath()));
+                    delete(dir);
+                }
+            }catch(IOException e){
+                System.err.println("Error while reading "+loaded+": "+e.getMessage());
+            }
+        }
+    }
+
+    private static String readOrigin(File loaded) throws IOException{
+        InputStream in = new FileInputStream(loaded);
+        try{
+            byte[] bytes = new byte[(int) loaded.length()];
+            int length = 0;
+            int read;
+            while(length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) != -1){
+                length += read;
+            }
+            return new String(bytes, 0, length, "UTF-8");
+        }finally{
+            in.close();
+        }
+    }
+
+    /**
+     * Name of the dataset of the ontology. Files are not read to compute it,
+     * so it changes whenever the file is modified. URLs are named after the
+     * validators of their response, which change with the ontology.
+     */
+    private String getKey() throws IOException{
+        if(source.isFromFile()){
+            File f = new File(source.getLocation()).getAbsoluteFile();
+            return OntologyCache.getKey((f.getPath()+"|"+f.length()+"|"+f.lastModified()).getBytes("UTF-8"), null);
+        }
+        String etag = source.getETag();
+        String lastModified = source.getLastModified();
+        if(etag == null && lastModified == null){
+            //without validators, only the content tells whether the ontology has changed
+            InputStream in = source.openDiskStream();
+            try{
+                return OntologyCache.getKey(in, source.getBase());
+            }finally{
+                in.close();
+            }
+        }
+        return OntologyCache.getKey((source.getLocation()+"|"+etag+"|"+lastModified).getBytes("UTF-8"), null);
+    }
+
+    /**
+     * The bulk loader reads N-Triples, so the ontology is parsed in another
+     * thread and piped to it as N-Triples, without being kept in memory.
+     * The prefixes of the ontology are kept in the dataset too.
+     */
+    private void load(DatasetGraphTDB dsg) throws Exception{
+        final InputStream in = openRDF();
+        final Lang lang = source.getFormat().getJenaLang() == null ? Lang.RDFXML : source.getFormat().getJenaLang();
+        final PrefixMapping prefixes = new PrefixMappingImpl();
+        final PipedOutputStream out = new PipedOutputStream();
+        PipedInputStream pipe = new PipedInputStream(out, 65536);
+        final Exception[] error = new Exception[1];
+        Thread parser = new Thread(new Runnable() {
+            public void run() {
+                try{
+                    WidocoUtils.parse(new TriplesWriter(StreamRDFLib.writer(out), prefixes), in, source.getBase(), lang);
+                }catch(Exception e){
+                    error[0] = e;
+                }finally{
+                    close(out);
+                    close(in);
+                }
+            }
+        }, "widoco-tdb-parser");
+        parser.start();
+        try{
+            BulkLoader.loadDefaultGraph(dsg, pipe, false);
+        }finally{
+            //the parser must not stay blocked writing to the pipe if the loader failed
+            close(pipe);
+            parser.join();
+        }
+        if(error[0] != null){
+            throw error[0];
+        }
+        dsg.getDefaultGraph().getPrefixMapping().setNsPrefixes(prefixes);
+    }
+
+    /**
+     * @return the ontology as RDF. Formats Jena cannot read (OWL/XML,
+     * Manchester syntax) are read with the OWL API and written as RDF/XML to
+     * a temporary file, deleted when the stream is closed.
+     */
+    private InputStream openRDF() throws Exception{
+        InputStream in = source.openDiskStream();
+        OntologyFormat format = source.getFormat();
+        if(format.getJenaLang() != null){
+            return in;
+        }
+        close(in);
+        if(format == OntologyFormat.JSON_LD){
+            throw new IOException("JSON-LD ontologies are not supported");
+        }
+        final File rdf = File.createTempFile("widoco", ".rdf");
+        try{
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(rdf));
+            try{
+                source.getManager().saveOntology(source.getOntology(), new RDFXMLOntologyFormat(), new StreamDocumentTarget(out));
+            }finally{
+                out.close();
+            }
+            return new FileInputStream(rdf){
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    rdf.delete();
+                }
+            };
+        }catch(Exception e){
+            rdf.delete();
+            throw e;
+        }
+    }
+
+    private static void close(Closeable c){
+        try{
+            c.close();
+        }catch(IOException e){
+            //nothing else to do with it
+        }
+    }
+
+    private static void delete(File f){
+        File[] children = f.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Writes the triples of the ontology (the statements of all the graphs,
+     * for datasets), and keeps its prefixes apart.
+     */
+    private static class TriplesWriter implements StreamRDF {
+        private final StreamRDF out;
+        private final PrefixMapping prefixes;
+
+        TriplesWriter(StreamRDF out, PrefixMapping prefixes) {
+            this.out = out;
+            this.prefixes = prefixes;
+        }
+
+        public void start() {
+            out.start();
+        }
+
+        public void triple(Triple triple) {
+            out.triple(triple);
+        }
+
+        public void quad(Quad quad) {
+            out.triple(quad.asTriple());
+        }
+
+        public void tuple(Tuple<Node> tuple) {
+            //not RDF: nothing to load
+        }
+
+        public void base(String base) {
+        }
+
+        public void prefix(String prefix, String iri) {
+            prefixes.setNsPrefix(prefix, iri);
+        }
+
+        public void finish() {
+            out.finish();
+        }
+    }
+}
@@ -402,10 +402,7 @@ public class TextConstants {
         return provrdf;
     }
     
-    //resources to copy to the temporal folder.
-    public static final String[] lodeResources = {"/lode/extraction.xsl","/lode/common-functions.xsl", 
-        "/lode/pellet.properties", "/lode/structural-reasoner.xsl", "/lode/swrl-module.xsl", "/lode/en.xml"};
-    
+    //resources to copy to the evaluation folder.
     public static final String[] oopsResources = {"/oops/js/jquery-1.11.0.js","/oops/js/bootstrap.min.js", 
         "/oops/themes/blue/style.css", "/oops/js/jquery.tablesorter.min.js", "/oops/css/bootstrap.css"};
     
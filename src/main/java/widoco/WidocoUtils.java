@@ -16,53 +16,277 @@
 
 package widoco;
 
+import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
-import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.DatasetGraphFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParserRegistry;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.semanticweb.owlapi.model.OWLOntology;
 
 /**
  * Some useful methods reused across different classes
  * @author Daniel Garijo
  */
 public class WidocoUtils {
-    public static OntModel loadModel(Configuration c){
-        OntModel model = ModelFactory.createOntologyModel();//ModelFactory.createDefaultModel();
-        if(c.isFromFile()){
-            readModel(model, c.getOntologyPath(), null);
-        }else{
-            readModel(model, null, c.getOntologyURI());
-        }
-        return model;
+    //number of bytes looked at to detect the format of an ontology
+    static final int LOOK_AHEAD = 4096;
+    //the start of an element: a name (with a prefix or not) followed by whitespace, '>' or '/'
+    private static final Pattern XML_ROOT = Pattern.compile("<[A-Za-z_][\\w.-]*(:[A-Za-z_][\\w.-]*)?[\\s/>]");
+
+    /**
+     * The model is parsed only once per ontology: later calls (and the other
+     * steps using the OntologySource of the configuration) reuse it.
+     * @throws IOException if the ontology cannot be read or parsed
+     */
+    public static OntModel loadModel(Configuration c) throws IOException{
+        return c.getOntologySource().getModel();
+    }
+
+    /**
+     * @return the ontology to document with the OWL API. If the configuration
+     * asks for it (useImported), the axioms of its imports closure are added.
+     */
+    public static OWLOntology loadOntology(Configuration c) throws Exception{
+        OntologySource source = c.getOntologySource();
+        if(c.isUseImported()){
+            source.includeImports(new ImportsLoader(c.getImportsMirror()));
+        }
+        return source.getOntology();
+    }
+
+    /**
+     * Loads only the header of the ontology (the statements about the
+     * owl:Ontology resource), which is what is needed for its metadata.
+     * In TDB mode it is read from the dataset of the ontology.
+     * @return the header, or null if the ontology cannot be read.
+     */
+    public static OntModel loadHeader(Configuration c){
+        try{
+            if(c.isUseTDB()){
+                return loadStore(c).getHeader();
+            }
+            return c.getOntologySource().getHeader();
+        }catch(IOException e){
+            System.err.println("Error while reading the header of "+c.getOntologySource().getLocation()+": "+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the ontology loaded in a TDB dataset in the working directory
+     * of the configuration (it is only bulk loaded the first time).
+     */
+    public static TDBStore loadStore(Configuration c){
+        return c.getOntologySource().getStore(c.getTdbDirectory());
     }
-    private static void readModel(OntModel model,String ontoPath, String ontoURL){
-        if(ontoPath!=null){
-            InputStream in = null;
-            try{
-                in = FileManager.get().open(ontoPath);
-                if (in == null) {
-                    System.err.println("Error: Ontology file not found");
-                    return;
+
+    /**
+     * Parses RDF in the given language. RDFDataMgr would take the language
+     * from the extension of the base instead when it has one (a Turtle
+     * ontology in an .owl file would be read as RDF/XML).
+     */
+    static void parse(StreamRDF sink, InputStream in, String base, Lang lang){
+        RDFParserRegistry.getFactory(lang).create(lang).read(in, base, lang.getContentType(), sink, null);
+    }
+
+    /**
+     * Reads the content of an ontology source into a model, with the parser
+     * of its format only. Formats Jena cannot read (OWL/XML, Manchester
+     * syntax) are read with the OWL API, and its ontology is copied to the model.
+     * @throws IOException if the ontology cannot be read or parsed
+     */
+    static void readModel(Model model, OntologySource source) throws IOException{
+        String base = source.getBase();
+        OntologyFormat format;
+        try{
+            format = source.getFormat();
+            if(format == OntologyFormat.N_QUADS){
+                //the statements of all the graphs are documented together
+                DatasetGraph dataset = DatasetGraphFactory.createMem();
+                parse(StreamRDFLib.dataset(dataset), source.openStream(), base, format.getJenaLang());
+                model.add(ModelFactory.createModelForGraph(dataset.getDefaultGraph()));
+                Iterator<Node> graphs = dataset.listGraphNodes();
+                while(graphs.hasNext()){
+                    model.add(ModelFactory.createModelForGraph(dataset.getGraph(graphs.next())));
                 }
-                model.read(in, null, "RDF/XML");
-            }catch(Exception e){
-                System.err.println("Could not load the ontology in rdf/xml. Attempting to read it in turtle...");
+            }else if(format == OntologyFormat.RDF_XML){
                 try{
-                    if(in!=null){
-                        in.close();
+                    Model rdf = ModelFactory.createDefaultModel();
+                    parse(StreamRDFLib.graph(rdf.getGraph()), source.openStream(), base, format.getJenaLang());
+                    model.add(rdf);
+                }catch(RiotException e){
+                    //RDF/XML is also the format of the ontologies that could not be recognized, which may be Turtle
+                    Model turtle = ModelFactory.createDefaultModel();
+                    try{
+                        parse(StreamRDFLib.graph(turtle.getGraph()), source.openStream(), base, OntologyFormat.TURTLE.getJenaLang());
+                    }catch(RiotException notTurtle){
+                        throw e;
                     }
-                    in = FileManager.get().open(ontoPath);
-                    model.read(in, null, "TURTLE");
-                }catch(Exception e1){
-                    System.err.println("Could not load ontology in turtle.");
+                    model.add(turtle);
+                    source.setFormat(OntologyFormat.TURTLE);
                 }
+            }else if(format.getJenaLang() != null){
+                parse(StreamRDFLib.graph(model.getGraph()), source.openStream(), base, format.getJenaLang());
+            }else if(format == OntologyFormat.JSON_LD){
+                throw new IOException("JSON-LD ontologies are not supported");
+            }else{
+                OWLOntology ontology = source.getOntology();
+                ByteArrayOutputStream rdf = new ByteArrayOutputStream();
+                source.getManager().saveOntology(ontology, new RDFXMLOntologyFormat(), new StreamDocumentTarget(rdf));
+                parse(StreamRDFLib.graph(model.getGraph()), new ByteArrayInputStream(rdf.toByteArray()), base, OntologyFormat.RDF_XML.getJenaLang());
+            }
+        }catch(Exception e){
+            throw new IOException("Could not read the ontology "+source.getLocation()+": "+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Detects the format of an ontology from its content type, the extension
+     * of its location and, when those are not enough, its first bytes.
+     * @param location path or URL of the ontology.
+     * @param contentType content type sent by the server, or null.
+     * @param content the ontology (only its beginning is looked at).
+     * @return the format, RDF/XML if it cannot be recognized.
+     */
+    public static OntologyFormat detectFormat(String location, String contentType, byte[] content){
+        OntologyFormat format = getFormatFromContentType(contentType);
+        if(format == null){
+            format = getFormatFromExtension(location);
+        }
+        if(format == null){
+            format = getFormatFromContent(content);
+        }
+        return format;
+    }
+
+    /**
+     * Generic types (text/plain, application/xml...) are ignored, since
+     * servers use them for several formats.
+     */
+    private static OntologyFormat getFormatFromContentType(String contentType){
+        if(contentType == null){
+            return null;
+        }
+        String type = contentType.split(";")[0].trim().toLowerCase();
+        if("application/rdf+xml".equals(type)){
+            return OntologyFormat.RDF_XML;
+        }else if("text/turtle".equals(type) || "application/x-turtle".equals(type) || "text/n3".equals(type)){
+            return OntologyFormat.TURTLE;
+        }else if("application/n-triples".equals(type)){
+            return OntologyFormat.N_TRIPLES;
+        }else if("application/n-quads".equals(type) || "text/x-nquads".equals(type)){
+            return OntologyFormat.N_QUADS;
+        }else if("application/ld+json".equals(type)){
+            return OntologyFormat.JSON_LD;
+        }else if("application/owl+xml".equals(type)){
+            return OntologyFormat.OWL_XML;
+        }else if("text/owl-manchester".equals(type)){
+            return OntologyFormat.MANCHESTER;
+        }
+        return null;
+    }
+
+    /**
+     * The .owl and .xml extensions are used both for RDF/XML and OWL/XML, so
+     * they are not enough to choose.
+     */
+    private static OntologyFormat getFormatFromExtension(String location){
+        if(location == null){
+            return null;
+        }
+        String path = location.toLowerCase();
+        int end = path.length();
+        if(path.indexOf('?') >= 0){
+            end = path.indexOf('?');
+        }
+        if(path.indexOf('#') >= 0 && path.indexOf('#') < end){
+            end = path.indexOf('#');
+        }
+        path = path.substring(0, end);
+        //the extension of compressed ontologies is the one before the compression's
+        path = path.replaceAll("\\.(gz|bz2|zip)$", "");
+        if(path.endsWith(".rdf")){
+            return OntologyFormat.RDF_XML;
+        }else if(path.endsWith(".ttl") || path.endsWith(".n3")){
+            return OntologyFormat.TURTLE;
+        }else if(path.endsWith(".nt")){
+            return OntologyFormat.N_TRIPLES;
+        }else if(path.endsWith(".nq")){
+            return OntologyFormat.N_QUADS;
+        }else if(path.endsWith(".jsonld") || path.endsWith(".json")){
+            return OntologyFormat.JSON_LD;
+        }else if(path.endsWith(".owx")){
+            return OntologyFormat.OWL_XML;
+        }else if(path.endsWith(".omn")){
+            return OntologyFormat.MANCHESTER;
+        }
+        return null;
+    }
+
+    private static OntologyFormat getFormatFromContent(byte[] content){
+        String head;
+        try{
+            head = new String(content, 0, Math.min(content.length, LOOK_AHEAD), "UTF-8");
+        }catch(UnsupportedEncodingException e){
+            return OntologyFormat.RDF_XML;
+        }
+        if(head.startsWith("\uFEFF")){
+            head = head.substring(1);
+        }
+        head = head.trim();
+        //the first line that is not empty nor a comment
+        String statement = "";
+        for(String line : head.split("\n")){
+            line = line.trim();
+            if(!"".equals(line) && !line.startsWith("#")){
+                statement = line;
+                break;
+            }
+        }
+        if(statement.startsWith("@prefix") || statement.startsWith("@base")
+                || statement.toUpperCase().startsWith("PREFIX ") || statement.toUpperCase().startsWith("BASE ")){
+            return OntologyFormat.TURTLE;
+        }
+        if(statement.startsWith("Prefix:") || statement.startsWith("Ontology:")){
+            return OntologyFormat.MANCHESTER;
+        }
+        //a statement starting with two IRIs, as in N-Triples and N-Quads
+        if(statement.matches("^(<[^>\\s]*>|_:\\S+)\\s+<[^>\\s]*>.*")){
+            //a statement with a graph is a quad. Triples are read as Turtle, which also accepts N-Triples
+            if(statement.matches("^(<[^>]*>|_:\\S+)\\s+<[^>]*>\\s+(<[^>]*>|_:\\S+|\"([^\"\\\\]|\\\\.)*\"(@\\S+|\\^\\^<[^>]*>)?)\\s+(<[^>]*>|_:\\S+)\\s*\\.$")){
+                return OntologyFormat.N_QUADS;
             }
-        }else{
-            try{
-                model.read(ontoURL, null, "RDF/XML");
-            }catch(Exception e){
-                model.read(ontoURL, null, "TURTLE");
+            return OntologyFormat.TURTLE;
+        }
+        if(head.startsWith("<?xml") || head.startsWith("<!") || XML_ROOT.matcher(head).lookingAt()){
+            //OWL/XML documents have an Ontology root element instead of rdf:RDF
+            if(!head.contains("rdf:RDF") && !head.contains("<RDF") && head.contains("<Ontology")){
+                return OntologyFormat.OWL_XML;
             }
+            return OntologyFormat.RDF_XML;
+        }
+        //an IRI that is not an element, e.g. <http://example.org/o> a owl:Ontology .
+        if(head.startsWith("<")){
+            return OntologyFormat.TURTLE;
+        }
+        if(head.startsWith("{") || head.startsWith("[")){
+            return OntologyFormat.JSON_LD;
         }
+        return OntologyFormat.RDF_XML;
     }
 }
@@ -18,12 +18,10 @@ package widoco.gui;
 
 import java.awt.Desktop;
 import java.awt.Image;
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.logging.Level;
@@ -32,10 +30,10 @@ import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.UIManager;
+import lode.LODEGeneration;
 import widoco.Configuration;
 import widoco.CreateDocInThread;
 import widoco.CreateOOPSEvalInThread;
-import widoco.CreateResources;
 import widoco.LoadOntologyPropertiesInThread;
 import widoco.TextConstants;
 import widoco.entities.Agent;
@@ -55,7 +53,6 @@ public class GuiController {
     private State state;
     private JFrame gui;
     private Configuration config;
-    private File tmpFile;
 
     public GuiController() {
         this.state = State.initial;  
@@ -63,14 +60,8 @@ public class GuiController {
         //read logo
         gui = new GuiStep1(this);
         gui.setVisible(true);
-        try {
-            //create a temporal folder with all LODE resources
-            tmpFile = new File("tmp"+new Date().getTime());
-            tmpFile.mkdir();
-            CreateResources.copyResourceFolder(TextConstants.lodeResources, tmpFile.getName());
-        } catch (IOException ex) {
-            System.err.println("Error while creating the temporal file");
-        }
+        //compile LODE's stylesheet while the user fills in the metadata
+        LODEGeneration.warmUp();
         
         try { 
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -311,12 +302,12 @@ public class GuiController {
     }
     
     private void startGeneratingDoc() {
-        Runnable r = new CreateDocInThread(this.config, this, this.tmpFile);
+        Runnable r = new CreateDocInThread(this.config, this);
         new Thread(r).start();
     }
     
     private void startEvaluation(){
-        Runnable r = new CreateOOPSEvalInThread(this.config, this, this.tmpFile);
+        Runnable r = new CreateOOPSEvalInThread(this.config, this);
         new Thread(r).start();
     }
     
@@ -332,22 +323,6 @@ public class GuiController {
     
     private void exit(){
         this.gui.dispose();
-        //delete tmp folder here!
-        deleteAllTempFiles(tmpFile);
-    }
-    
-    private void deleteAllTempFiles(File folder){
-        String[]entries = folder.list();
-        for(String s: entries){
-            File currentFile = new File(folder.getPath(),s);
-            if(currentFile.isDirectory()){
-                deleteAllTempFiles(currentFile);
-            }
-            else{
-                currentFile.delete();
-            }
-        }
-        folder.delete();
     }
     
     public void switchState(String input){
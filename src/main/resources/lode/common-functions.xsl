@@ -17,30 +17,38 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 <xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
     xmlns:xs="http://www.w3.org/2001/XMLSchema" exclude-result-prefixes="xs"
     xmlns:xd="http://www.oxygenxml.com/ns/doc/xsl" version="2.0"
-    xmlns:f="http://www.essepuntato.it/xslt/function">
+    xmlns:f="http://www.essepuntato.it/xslt/function"
+    xmlns:lode="java:lode.StringIndexFunctions">
+    
+    <!-- When the stylesheet is run from Widoco, the following functions are computed by the 
+        extension functions of the lode namespace, which return the same positions without 
+        tokenizing the string. Otherwise, the XPath implementations are used. -->
     
     <xsl:function name="f:string-last-index-of" as="xs:integer*">
         <xsl:param name="source" as="xs:string" />
         <xsl:param name="pattern" as="xs:string" />
         
-        <xsl:variable name="result" select="f:string-index-of($source,$pattern)" as="xs:integer*" />
-        <xsl:sequence select="$result[count($result)]" />
+        <xsl:sequence use-when="function-available('lode:string-last-index-of',2)" select="lode:string-last-index-of($source,$pattern)" />
+        <xsl:variable use-when="not(function-available('lode:string-last-index-of',2))" name="result" select="f:string-index-of($source,$pattern)" as="xs:integer*" />
+        <xsl:sequence use-when="not(function-available('lode:string-last-index-of',2))" select="$result[count($result)]" />
     </xsl:function>
     
     <xsl:function name="f:string-first-index-of" as="xs:integer*">
         <xsl:param name="source" as="xs:string" />
         <xsl:param name="pattern" as="xs:string" />
         
-        <xsl:variable name="result" select="f:string-index-of($source,$pattern)" as="xs:integer*" />
-        <xsl:sequence select="$result[1]" />
+        <xsl:sequence use-when="function-available('lode:string-first-index-of',2)" select="lode:string-first-index-of($source,$pattern)" />
+        <xsl:variable use-when="not(function-available('lode:string-first-index-of',2))" name="result" select="f:string-index-of($source,$pattern)" as="xs:integer*" />
+        <xsl:sequence use-when="not(function-available('lode:string-first-index-of',2))" select="$result[1]" />
     </xsl:function>
     
     <xsl:function name="f:string-index-of" as="xs:integer*">
         <xsl:param name="source" as="xs:string" />
         <xsl:param name="pattern" as="xs:string" />
         
-        <xsl:variable name="tokens" select="tokenize($source,$pattern)" as="xs:string+" />
-        <xsl:sequence select="for $i in (1 to count($tokens) - 1) return sum(for $token in $tokens[position() &gt;= 1 and position() &lt;= $i] return string-length($token)) + $i" />
+        <xsl:sequence use-when="function-available('lode:string-index-of',2)" select="lode:string-index-of($source,$pattern)" />
+        <xsl:variable use-when="not(function-available('lode:string-index-of',2))" name="tokens" select="tokenize($source,$pattern)" as="xs:string+" />
+        <xsl:sequence use-when="not(function-available('lode:string-index-of',2))" select="for $i in (1 to count($tokens) - 1) return sum(for $token in $tokens[position() &gt;= 1 and position() &lt;= $i] return string-length($token)) + $i" />
     </xsl:function>
     
     
@@ -15,7 +15,7 @@ ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 -->
 <xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
-    xmlns:xs="http://www.w3.org/2001/XMLSchema" exclude-result-prefixes="xs xd dc rdfs swrl owl2xml owl xsd swrlb rdf f dcterms"
+    xmlns:xs="http://www.w3.org/2001/XMLSchema" exclude-result-prefixes="xs xd dc rdfs swrl owl2xml owl xsd swrlb rdf f dcterms index"
     xmlns:xd="http://www.oxygenxml.com/ns/doc/xsl" version="2.0"
     xmlns:dc="http://purl.org/dc/elements/1.1/"
     xmlns:rdfs="http://www.w3.org/2000/01/rdf-schema#"
@@ -27,6 +27,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#"
     xmlns:f="http://www.essepuntato.it/xslt/function"
     xmlns:dcterms="http://purl.org/dc/terms/"
+    xmlns:index="java:lode.EntityIndex"
     xmlns="http://www.w3.org/1999/xhtml">
      
     <xsl:include href="swrl-module.xsl" />
@@ -39,14 +40,33 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     <xsl:param name="css-location" select="'./'" as="xs:string" />
     <xsl:param name="source" as="xs:string" select="''" />
     <xsl:param name="ontology-url" as="xs:string" select="''" />
+    <!-- Space separated list of the sections to render (classes, objectproperties, dataproperties, 
+        namedindividuals, annotationproperties, generalaxioms, swrlrules, namespacedeclarations).
+        When empty, the whole LODE page is generated. -->
+    <xsl:param name="sections" as="xs:string" select="''" />
+    <!-- Already parsed label files. If they are not provided, they are loaded from the 
+        folder of the stylesheet. -->
+    <xsl:param name="default-labels-document" as="document-node()?" select="()" />
+    <xsl:param name="labels-document" as="document-node()?" select="()" />
+    <!-- Prefix and label tables of the document, as returned by the f:tables mode. When several 
+        sections of the same document are rendered by different transformations, the tables are 
+        computed once and passed to all of them. If they are not provided, they are computed here. -->
+    <xsl:param name="tables-document" as="document-node()?" select="()" />
+    <!-- Index of the top level entities by IRI. When the stylesheet is run from Widoco, the index 
+        is built in Java and can be shared by the transformations of the same document. Otherwise, 
+        the entity-by-iri key is used. -->
+    <xsl:param use-when="function-available('index:entities-by-iri',2)" name="entity-index" select="index:build($root)" />
+    <xsl:key use-when="not(function-available('index:entities-by-iri',2))" name="entity-by-iri" match="rdf:RDF/element()" use="@*:about | @*:ID" />
     
     <xsl:variable name="def-lang" select="'en'" as="xs:string" />
     <xsl:variable name="n" select="'\n|\r|\r\n'" />
     <xsl:variable name="rdf" select="/rdf:RDF" as="element()" />
     <xsl:variable name="root" select="/" as="node()" />
+    <xsl:variable name="selected-sections" select="tokenize(normalize-space($sections),' ')" as="xs:string*" />
     
-    <xsl:variable name="default-labels" select="document(concat($def-lang,'.xml'))" />
-    <xsl:variable name="labels" select="document(concat($lang,'.xml'))" />
+    <xsl:variable name="default-labels" select="if (exists($default-labels-document)) then $default-labels-document else document(concat($def-lang,'.xml'))" />
+    <xsl:variable name="labels" select="if (exists($labels-document)) then $labels-document else document(concat($lang,'.xml'))" />
+    <xsl:key name="label-by-name" match="labels/element()" use="lower-case(local-name())" />
     <xsl:variable name="possible-ontology-urls" select="($ontology-url,concat($ontology-url,'/'),concat($ontology-url,'#'))" as="xs:string+" />
     <xsl:variable name="mime-types" select="('jpg','image/jpg','jpeg','image/jpg','png','image/png')" as="xs:string+" />
     
@@ -89,9 +109,49 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         </xsl:for-each>
     </xsl:variable>
     
+    <!-- The same prefixes and namespaces, indexed so resolving a prefix or a namespace does not scan $prefixes-uris -->
+    <xsl:variable name="prefix-table" select="if (exists($tables-document)) then $tables-document else $computed-prefix-table" as="document-node()" />
+    <xsl:variable name="computed-prefix-table" as="document-node()">
+        <xsl:document>
+            <xsl:for-each select="1 to count($prefixes-uris) idiv 2">
+                <xsl:variable name="i" select=". * 2" as="xs:integer" />
+                <f:ns prefix="{$prefixes-uris[$i - 1]}" uri="{$prefixes-uris[$i]}" />
+            </xsl:for-each>
+        </xsl:document>
+    </xsl:variable>
+    <xsl:key name="ns-by-prefix" match="f:ns" use="@prefix" />
+    <xsl:key name="ns-by-uri" match="f:ns" use="@uri" />
+    
+    <!-- Label of every IRI of the document, computed in a single pass so sorts and links do not recompute them -->
+    <xsl:variable name="label-table" select="if (exists($tables-document)) then $tables-document else $computed-label-table" as="document-node()" />
+    <xsl:variable name="computed-label-table" as="document-node()">
+        <xsl:document>
+            <xsl:for-each select="distinct-values($root//(@*:about | @*:resource | @*:ID | @*:datatype))[. != '']">
+                <f:label iri="{.}" value="{f:computeLabel(.)}" />
+            </xsl:for-each>
+        </xsl:document>
+    </xsl:variable>
+    <xsl:key name="label-by-iri" match="f:label" use="@iri" />
+    
+    <!-- Entry point used to compute the tables once for several transformations of the same document -->
+    <xsl:template match="/" mode="f:tables">
+        <f:tables>
+            <xsl:copy-of select="$computed-prefix-table/f:ns, $computed-label-table/f:label" />
+        </f:tables>
+    </xsl:template>
+    
+    <xsl:function name="f:entities-by-iri" as="element()*">
+        <xsl:param name="iri" as="xs:string" />
+        <xsl:sequence use-when="function-available('index:entities-by-iri',2)" select="index:entities-by-iri($entity-index,$iri)" />
+        <xsl:sequence use-when="not(function-available('index:entities-by-iri',2))" select="key('entity-by-iri',$iri,$root)" />
+    </xsl:function>
+    
     <xsl:template match="rdf:RDF">
         <html xmlns="http://www.w3.org/1999/xhtml">
             <xsl:choose>
+                <xsl:when test="exists($selected-sections)">
+                    <xsl:call-template name="selected.sections" />
+                </xsl:when>
                 <xsl:when test="owl:Ontology">
                     <xsl:apply-templates select="owl:Ontology" />
                 </xsl:when>
@@ -181,6 +241,37 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:call-template name="structure" />
     </xsl:template>
     
+    <!-- Renders only the sections requested through the 'sections' parameter, 
+        in the same order they have in the full page -->
+    <xsl:template name="selected.sections">
+        <body>
+            <xsl:if test="$selected-sections = 'classes'">
+                <xsl:call-template name="get.classes" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'objectproperties'">
+                <xsl:call-template name="get.objectproperties" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'dataproperties'">
+                <xsl:call-template name="get.dataproperties" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'namedindividuals'">
+                <xsl:call-template name="get.namedindividuals" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'annotationproperties'">
+                <xsl:call-template name="get.annotationproperties" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'generalaxioms'">
+                <xsl:call-template name="get.generalaxioms" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'swrlrules'">
+                <xsl:call-template name="get.swrlrules" />
+            </xsl:if>
+            <xsl:if test="$selected-sections = 'namespacedeclarations'">
+                <xsl:call-template name="get.namespacedeclarations" />
+            </xsl:if>
+        </body>
+    </xsl:template>
+    
     <xsl:template match="dc:description[f:isInLanguage(.)][normalize-space() != '']" mode="ontology">
         <h2 id="introduction"><xsl:value-of select="f:getDescriptionLabel('introduction')" /></h2>
         <xsl:call-template name="get.content" />
@@ -496,7 +587,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:param name="iri" as="xs:string" />
         <xsl:param name="type" as="xs:string" />
         
-        <xsl:variable name="el" select="$root//rdf:RDF/element()[(@*:about = $iri or @*:ID = $iri) and exists(element())]" as="element()*" />
+        <xsl:variable name="el" select="f:entities-by-iri($iri)[exists(element())]" as="element()*" />
         <xsl:choose>
             <xsl:when test="exists($el)">
                 <xsl:choose>
@@ -544,10 +635,18 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
             </xsl:otherwise>
         </xsl:choose>
     </xsl:function> -->
+    <!-- Labels are looked up in the label table, which is filled once per transformation (and thus per language) -->
     <xsl:function name="f:getLabel" as="xs:string">
         <xsl:param name="iri" as="xs:string" />
         
-        <xsl:variable name="node" select="$root//rdf:RDF/element()[(@*:about = $iri or @*:ID = $iri) and exists(rdfs:label)][1]" as="element()*" />
+        <xsl:variable name="entry" select="key('label-by-iri',$iri,$label-table)[1]" as="element()?" />
+        <xsl:sequence select="if (exists($entry)) then string($entry/@value) else f:computeLabel($iri)" />
+    </xsl:function>
+    
+    <xsl:function name="f:computeLabel" as="xs:string">
+        <xsl:param name="iri" as="xs:string" />
+        
+        <xsl:variable name="node" select="f:entities-by-iri($iri)[exists(rdfs:label)][1]" as="element()*" />
         <xsl:choose>
             <xsl:when test="exists($node/rdfs:label)">
                 <xsl:value-of select="$node/rdfs:label[f:isInLanguage(.)]" />
@@ -573,7 +672,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
                                 <xsl:value-of select="$iri" />
                             </xsl:when>
                             <xsl:otherwise>
-                                <xsl:value-of select="concat($prefix,':',substring-after($iri, $prefixes-uris[index-of($prefixes-uris,$prefix)[1] + 1]))" />
+                                <xsl:value-of select="concat($prefix,':',substring-after($iri, key('ns-by-prefix',$prefix,$prefix-table)[1]/@uri))" />
                             </xsl:otherwise>
                         </xsl:choose>
                     </xsl:when>
@@ -951,7 +1050,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     <xsl:template name="get.entity.punning">
         <xsl:variable name="iri" select="@*:about|@*:ID" as="xs:string" />
         <xsl:variable name="type" select="f:getType(.)" as="xs:string" />
-        <xsl:variable name="punningsequence" select="/rdf:RDF/element()[@*:about = $iri or @*:ID = $iri][f:getType(.) != $type]" as="element()*" />
+        <xsl:variable name="punningsequence" select="f:entities-by-iri($iri)[f:getType(.) != $type]" as="element()*" />
         
         <xsl:if test="$punningsequence">
             <dt><xsl:value-of select="f:getDescriptionLabel('isalsodefinedas')" /></dt>
@@ -978,7 +1077,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:variable name="iri" select="$el/@*:about|$el/@*:ID" as="xs:string" />
         <xsl:variable name="type" select="f:getType($el)" as="xs:string" />
         
-        <xsl:value-of select="some $other in $root/rdf:RDF/element()[@*:about = $iri or @*:ID = $iri] satisfies f:getType($other) != $type" />
+        <xsl:value-of select="some $other in f:entities-by-iri($iri) satisfies f:getType($other) != $type" />
     </xsl:function>
     
     <xsl:template name="get.individual.assertions">
@@ -1429,7 +1528,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
                 <xsl:call-template name="get.backlink" />
             </h2>
             <dl>
-                <xsl:for-each select="distinct-values($prefixes-uris[position() mod 2 = 1])">
+                <xsl:for-each select="distinct-values($prefix-table//f:ns/@prefix)">
                     <xsl:sort select="." data-type="text" order="ascending" />
                     <xsl:variable name="prefix" select="." />
                     <xsl:if test=". != 'xml'">
@@ -1444,7 +1543,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
                             </xsl:choose>
                         </dt>
                         <dd>
-                            <xsl:value-of select="$prefixes-uris[index-of($prefixes-uris,$prefix)[1] + 1]" />
+                            <xsl:value-of select="key('ns-by-prefix',$prefix,$prefix-table)[1]/@uri" />
                         </dd>
                     </xsl:if>
                 </xsl:for-each>
@@ -1575,7 +1674,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     <xsl:template name="get.entity.type.descriptor">
         <xsl:param name="iri" as="xs:string" />
         <xsl:param name="type" as="xs:string" select="''" tunnel="yes" />
-        <xsl:variable name="el" select="$root/rdf:RDF/element()[@*:about = $iri or @*:ID = $iri]" as="element()*" />
+        <xsl:variable name="el" select="f:entities-by-iri($iri)" as="element()*" />
         <xsl:choose>
             <xsl:when test="($type = '' or $type = 'class') and ($el[self::owl:Class] or $iri = 'http://www.w3.org/2002/07/owl#Thing')">
                 <sup title="{f:getDescriptionLabel('class')}" class="type-c">c</sup>
@@ -1677,9 +1776,9 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
             
             <xsl:variable name="ns" select="if (contains($iriNew,'#')) then substring($iriNew,1,f:string-first-index-of($iriNew,'#')) else substring($iriNew,1,f:string-last-index-of(replace($iriNew,'://','---'),'/'))" as="xs:string" />
             
-            <xsl:variable name="index" select="index-of($prefixes-uris,$ns)[1]" as="xs:integer?" />
-            <xsl:if test="exists($index)">
-                <xsl:value-of select="$prefixes-uris[$index - 1]" />
+            <xsl:variable name="entry" select="key('ns-by-uri',$ns,$prefix-table)[1]" as="element()?" />
+            <xsl:if test="exists($entry)">
+                <xsl:value-of select="$entry/@prefix" />
             </xsl:if>
         </xsl:if>
     </xsl:function>
@@ -1739,13 +1838,13 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:param name="inputlabel" as="xs:string" />
         <xsl:variable name="labelname" select="lower-case(replace($inputlabel,' +',''))" as="xs:string" />
         <xsl:variable name="label" as="xs:string">
-            <xsl:variable name="label" select="normalize-space($labels//element()[lower-case(local-name()) = $labelname]/text())" as="xs:string?"/>
+            <xsl:variable name="label" select="normalize-space(key('label-by-name',$labelname,$labels)/text())" as="xs:string?"/>
             <xsl:choose>
                 <xsl:when test="$label">
                     <xsl:value-of select="$label" />
                 </xsl:when>
                 <xsl:otherwise>
-                    <xsl:value-of select="normalize-space($default-labels//element()[lower-case(local-name()) = $labelname]/text())" />
+                    <xsl:value-of select="normalize-space(key('label-by-name',$labelname,$default-labels)/text())" />
                 </xsl:otherwise>
             </xsl:choose>            
         </xsl:variable>
@@ -1764,6 +1863,6 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:param name="el" as="element()" />
         <xsl:variable name="iri" select="$el/(@*:about|@*:ID)" as="xs:string" />
         <xsl:variable name="type" select="f:getType($el)" as="xs:string" />
-        <xsl:value-of select="exists($rdf/element()[@*:about = $iri or @*:ID = $iri][f:getType(.) != $type])" />
+        <xsl:value-of select="exists(f:entities-by-iri($iri)[f:getType(.) != $type])" />
     </xsl:function>
 </xsl:stylesheet>
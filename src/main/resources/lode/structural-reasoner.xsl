@@ -21,7 +21,19 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#"
     xmlns:owl="http://www.w3.org/2002/07/owl#">
     
+    <!-- Indexes of the relations computed below. All the relations of a 
+        variable are siblings, so they are looked up in it instead of being scanned. -->
+    <xsl:key name="relation-by-about" match="disjoint | sameas | equivalent | inverseproperty" use="@*:about" />
+    <xsl:key name="relation-by-resource" match="disjoint | sameas | equivalent | inverseproperty" use="@*:resource" />
+    <xsl:key name="relation-by-pair" match="disjoint | sameas | equivalent | inverseproperty" use="concat(@*:about,' ',@*:resource)" />
+    
     <!-- DISJOINT: begin -->
+    <!-- The members of owl:AllDisjointClasses are looked up through this key instead of 
+        being expanded into one relation per pair of members -->
+    <xsl:key name="all-disjoint-by-member" 
+        match="rdf:RDF/rdf:Description[rdf:type/@*:resource = 'http://www.w3.org/2002/07/owl#AllDisjointClasses']" 
+        use="owl:members/rdf:Description/(@*:about|@*:ID)" />
+    
     <xsl:variable name="disjoints">
         <xsl:variable name="temp">
                 <xsl:for-each select="/rdf:RDF/(owl:Class|owl:ObjectProperty|owl:DatatypeProperty|owl:AnnotationProperty|owl:NamedIndividual)[owl:disjointWith[@*:resource]]">
@@ -30,18 +42,6 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
                         <disjoint rdf:about="{$id}" rdf:resource="{.}" />
                     </xsl:for-each>
                 </xsl:for-each>
-                <xsl:for-each select="/rdf:RDF/rdf:Description[exists(rdf:type[@*:resource = 'http://www.w3.org/2002/07/owl#AllDisjointClasses'])]">
-                    <xsl:variable name="descriptions" select="(owl:members/rdf:Description/(@*:about|@*:ID))" as="attribute()+" />
-                    <xsl:variable name="last" select="count($descriptions) - 1" as="xs:integer" />
-                    <xsl:for-each select="1 to $last">
-                        <xsl:variable name="pos" select="." />
-                        <xsl:variable name="id" select="$descriptions[$pos]" />
-                        <xsl:for-each select="$pos to $last">
-                            <xsl:variable name="current" select=". + 1" as="xs:integer" />
-                            <disjoint rdf:about="{$id}" rdf:resource="{$descriptions[$current]}" />
-                        </xsl:for-each>
-                    </xsl:for-each>
-                </xsl:for-each>
         </xsl:variable>
         <xsl:call-template name="removeDuplicates">
             <xsl:with-param name="temp" select="$temp" />
@@ -50,12 +50,18 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     
     <xsl:function name="f:getDisjoints" as="attribute()*">
         <xsl:param name="element" as="element()" />
-        <xsl:sequence select="f:getSomething($disjoints,$element)" />
+        <xsl:variable name="uri" select="$element/(@*:about|@*:ID)" as="attribute()"/>
+        <xsl:variable name="explicit" select="f:getSomething($disjoints,$element)" as="attribute()*" />
+        <xsl:sequence select="$explicit" />
+        <!-- the members shared by several axioms are returned once -->
+        <xsl:for-each-group select="key('all-disjoint-by-member',$uri,$root)/owl:members/rdf:Description/(@*:about|@*:ID)[. != $uri][not(. = $explicit)]" group-by=".">
+            <xsl:sequence select="." />
+        </xsl:for-each-group>
     </xsl:function>
     
     <xsl:function name="f:hasDisjoints" as="xs:boolean">
         <xsl:param name="element" as="element()" />
-        <xsl:sequence select="f:hasSomething($disjoints,$element)" />
+        <xsl:sequence select="exists(f:getDisjoints($element))" />
     </xsl:function>
     <!-- DISJOINT: end -->
     
@@ -142,14 +148,14 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
         <xsl:param name="doc" />
         <xsl:param name="element" as="element()" />
         <xsl:variable name="uri" select="$element/(@*:about|@*:ID)" as="attribute()"/>
-        <xsl:sequence select="$doc//((element()[$uri = @*:resource]/@*:about)|(element()[$uri = @*:about]/@*:resource))" />
+        <xsl:sequence select="key('relation-by-resource',$uri,$doc)/@*:about | key('relation-by-about',$uri,$doc)/@*:resource" />
     </xsl:function>
     
     <xsl:function name="f:hasSomething" as="xs:boolean">
         <xsl:param name="doc" />
         <xsl:param name="element" as="element()" />
         <xsl:variable name="uri" select="$element/(@*:about|@*:ID)" as="attribute()"/>
-        <xsl:value-of select="exists($doc//element()[$uri = @*:resource or $uri = @*:about])" />
+        <xsl:value-of select="exists(key('relation-by-resource',$uri,$doc)) or exists(key('relation-by-about',$uri,$doc))" />
     </xsl:function>
     
     <xsl:template name="removeDuplicates">
@@ -158,7 +164,7 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
             <xsl:variable name="currentAbout" select="@*:about" as="attribute()" />
             <xsl:variable name="currentResource" select="@*:resource" as="attribute()" />
             
-            <xsl:if test="not(some $prec in preceding-sibling::element() satisfies $prec/@*:about = $currentResource and $prec/@*:resource = $currentAbout)">
+            <xsl:if test="not(key('relation-by-pair',concat($currentResource,' ',$currentAbout),$temp)[. &lt;&lt; current()])">
                 <xsl:copy>
                     <xsl:copy-of select="@*" />
                 </xsl:copy>
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.List;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.TransformerFactoryImpl;
+import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.om.NodeInfo;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the lookup of entities by IRI, both with the Java index and with
+ * the entity-by-iri key the stylesheet falls back to.
+ */
+public class EntityIndexTest {
+
+    private static final String NS = "http://example.org/punning#";
+
+    @Test
+    public void indexesAboutAndIdInDocumentOrder() throws Exception {
+        DocumentInfo document = TemplatesCache.buildDocument(new StreamSource(getOntology().toExternalForm()));
+        EntityIndex index = new EntityIndex(document);
+
+        List<NodeInfo> part = index.get(NS + "Part");
+        assertEquals(2, part.size());
+        assertEquals("Class", part.get(0).getLocalPart());
+        assertEquals("NamedIndividual", part.get(1).getLocalPart());
+        //the value of rdf:ID is indexed as it is written, like in the key
+        assertEquals(1, index.get("Thing").size());
+        assertEquals(0, index.get(NS + "Thing").size());
+        assertEquals(0, index.get(NS + "missing").size());
+    }
+
+    @Test
+    public void sameResultAsTheKey() throws Exception {
+        URL stylesheet = LODEGeneration.class.getResource("/lode/extraction.xsl");
+        //a factory without the extension functions uses the entity-by-iri key
+        Templates withKey = new TransformerFactoryImpl().newTemplates(new StreamSource(stylesheet.toExternalForm()));
+        Templates withIndex = TemplatesCache.getTemplates(stylesheet);
+
+        String expected = transform(withKey.newTransformer());
+        Transformer transformer = withIndex.newTransformer();
+        transformer.setURIResolver(TemplatesCache.getURIResolver());
+        String actual = transform(transformer);
+
+        assertEquals(normalizeIds(expected), normalizeIds(actual));
+        //references to documented entities are links, and punning is detected
+        assertTrue(actual.contains(">whole thing</a>"));
+        assertTrue(actual.contains(">has part</a>"));
+        assertTrue(actual.contains(">named individual</a>"));
+        assertTrue(actual.contains(">class</a>"));
+    }
+
+    private static String transform(Transformer transformer) throws Exception {
+        transformer.setParameter("ontology-url", "http://example.org/punning");
+        StringWriter output = new StringWriter();
+        transformer.transform(new StreamSource(getOntology().toExternalForm()), new StreamResult(output));
+        return output.toString();
+    }
+
+    /**
+     * The ids generated for the nodes include the number of the document,
+     * which depends on the configuration it was built with.
+     */
+    private static String normalizeIds(String html){
+        return html.replaceAll("\\bd\\d+(?=[a-z])", "d");
+    }
+
+    private static URL getOntology(){
+        return EntityIndexTest.class.getResource("/ontologies/punning.rdf");
+    }
+}
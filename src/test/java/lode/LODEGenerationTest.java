@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.TransformerFactoryImpl;
+import org.junit.Test;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import widoco.Configuration;
+import widoco.WidocoUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the sections rendered one per transformation, with the tables,
+ * the index and the labels computed once, are the ones of the whole LODE
+ * page rendered in a single pass by the stylesheet alone.
+ */
+public class LODEGenerationTest {
+
+    private static final String[] SECTIONS = LODEGeneration.WIDOCO_SECTIONS.split(" ");
+
+    @Test
+    public void richOntology() throws Exception {
+        compare("rich.ttl", "en");
+    }
+
+    @Test
+    public void peopleOntology() throws Exception {
+        compare("people.ttl", "en");
+    }
+
+    /**
+     * The label files given to the transformations must be the ones the
+     * stylesheet would load for the language.
+     */
+    @Test
+    public void otherLanguage() throws Exception {
+        compare("rich.ttl", "it");
+    }
+
+    /**
+     * Only the requested sections are rendered, whatever the number of
+     * threads.
+     */
+    @Test
+    public void selectedSections() throws Exception {
+        Configuration c = getConfiguration("rich.ttl", "en");
+        c.setLodeThreads(1);
+        Element[] single = render(c, new String[]{"classes"});
+        List<String> ids = new ArrayList<String>();
+        for(Node n = single[0].getFirstChild(); n != null; n = n.getNextSibling()){
+            if(n instanceof Element){
+                ids.add(((Element) n).getAttribute("id"));
+            }
+        }
+        assertEquals("[classes]", ids.toString());
+
+        Element[] sequential = render(c, SECTIONS);
+        c.setLodeThreads(4);
+        Element[] pooled = render(c, SECTIONS);
+        for(int i = 0; i < SECTIONS.length; i++){
+            assertEquals(SECTIONS[i], toString(sequential[i]), toString(pooled[i]));
+        }
+    }
+
+    private static void compare(String ontology, String lang) throws Exception {
+        Configuration c = getConfiguration(ontology, lang);
+        Element page = renderPage(c);
+        Element[] bodies = render(c, SECTIONS);
+        for(int i = 0; i < SECTIONS.length; i++){
+            Element expected = getElementById(page, SECTIONS[i]);
+            assertNotNull(ontology+": "+SECTIONS[i], expected);
+            assertEquals(ontology+": "+SECTIONS[i], toString(expected), toString(getElementById(bodies[i], SECTIONS[i])));
+        }
+    }
+
+    private static Configuration getConfiguration(String ontology, String lang) throws Exception {
+        Configuration c = new Configuration();
+        c.setFromFile(true);
+        c.setOntologyPath(new File(LODEGenerationTest.class.getResource("/ontologies/"+ontology).toURI()).getPath());
+        c.setLanguage(lang);
+        c.getOntologySource().setCache(null);
+        return c;
+    }
+
+    /**
+     * @return the body of the html of each section, rendered as Widoco does.
+     */
+    private static Element[] render(Configuration c, String[] sections) throws Exception {
+        SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
+        ContentHandler[] handlers = new ContentHandler[sections.length];
+        DOMResult[] results = new DOMResult[sections.length];
+        for(int i = 0; i < sections.length; i++){
+            TransformerHandler handler = factory.newTransformerHandler();
+            results[i] = new DOMResult();
+            handler.setResult(results[i]);
+            handlers[i] = handler;
+        }
+        LODEGeneration.streamLODESections(c, sections, handlers);
+        Element[] bodies = new Element[sections.length];
+        for(int i = 0; i < sections.length; i++){
+            bodies[i] = (Element) ((org.w3c.dom.Document) results[i].getNode()).getElementsByTagName("body").item(0);
+        }
+        return bodies;
+    }
+
+    /**
+     * @return the whole LODE page, rendered by the stylesheet in a single
+     * transformation, without the functions and parameters Widoco gives it.
+     */
+    private static Element renderPage(Configuration c) throws Exception {
+        ByteArrayOutputStream rdf = new ByteArrayOutputStream();
+        c.getOntologySource().getManager().saveOntology(WidocoUtils.loadOntology(c), new RDFXMLOntologyFormat(),
+                new StreamDocumentTarget(rdf));
+        String stylesheet = LODEGenerationTest.class.getResource("/lode/extraction.xsl").toExternalForm();
+        Transformer transformer = new TransformerFactoryImpl().newTemplates(new StreamSource(stylesheet)).newTransformer();
+        transformer.setParameter("lang", c.getLanguage());
+        transformer.setParameter("ontology-url", c.getOntologyURI());
+        DOMResult result = new DOMResult();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(rdf.toByteArray())), result);
+        return ((org.w3c.dom.Document) result.getNode()).getDocumentElement();
+    }
+
+    private static Element getElementById(Element e, String id){
+        if(id.equals(e.getAttribute("id"))){
+            return e;
+        }
+        for(Node n = e.getFirstChild(); n != null; n = n.getNextSibling()){
+            if(n instanceof Element){
+                Element found = getElementById((Element) n, id);
+                if(found != null){
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the html of an element. The ids generated for the nodes depend
+     * on the number of the document they belong to, so it is left out.
+     */
+    private static String toString(Element e) throws Exception {
+        Transformer serializer = TransformerFactory.newInstance().newTransformer();
+        serializer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter out = new StringWriter();
+        serializer.transform(new DOMSource(e), new StreamResult(out));
+        return out.toString().replaceAll("\\bd\\d+e(\\d+)", "de$1");
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import com.hp.hpl.jena.tdb.StoreConnection;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import widoco.Configuration;
+import widoco.CrossReferenceContent;
+import widoco.LODEParser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Golden test of the native renderer: the sections it renders must be the
+ * ones LODE renders for the same ontology, once normalized.
+ * The normalization only hides what the html does not depend on: the order
+ * of the attributes, the whitespace, the order of the values shown one per
+ * line (which LODE takes from the order of the RDF/XML) and the links LODE
+ * makes to descriptions that are not in the document.
+ */
+public class NativeRendererTest {
+
+    @Test
+    public void richOntology() throws Exception {
+        compare("rich.ttl", "http://ex.org/o#");
+    }
+
+    @Test
+    public void peopleOntology() throws Exception {
+        compare("people.ttl", "http://example.org/people#");
+    }
+
+    /**
+     * The sections rendered from the triples of a TDB dataset must be the
+     * same as well.
+     */
+    @Test
+    public void ontologiesInTDB() throws Exception {
+        File tdb = File.createTempFile("tdb", "");
+        tdb.delete();
+        try{
+            compare("rich.ttl", "http://ex.org/o#", tdb);
+            compare("people.ttl", "http://example.org/people#", tdb);
+        }finally{
+            StoreConnection.reset();
+            delete(tdb);
+        }
+    }
+
+    private static void delete(File f){
+        File[] children = f.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    private static void compare(String ontology, String namespace) throws Exception {
+        compare(ontology, namespace, null);
+    }
+
+    /**
+     * @param tdb working directory of the TDB datasets, or null to render
+     * the ontology from memory.
+     */
+    private static void compare(String ontology, String namespace, File tdb) throws Exception {
+        CrossReferenceContent lode = new LODEParser(getConfiguration(ontology, namespace));
+        Configuration c = getConfiguration(ontology, namespace);
+        if(tdb != null){
+            c.setUseTDB(true);
+            c.setTdbDirectory(tdb.getPath());
+        }
+        CrossReferenceContent rendered = new NativeRenderer(c);
+        assertNotNull(lode.getClasses());
+        String[] expected = getSections(lode), actual = getSections(rendered);
+        Set<String> expectedIds = getIds(expected), actualIds = getIds(actual);
+        String[] names = {"class list", "classes", "object property list", "object properties",
+            "data property list", "data properties"};
+        for(int i = 0; i < names.length; i++){
+            assertEquals(ontology+": "+names[i], normalize(expected[i], expectedIds), normalize(actual[i], actualIds));
+        }
+        //LODE also names the namespaces of the IRIs without a prefix, the native renderer only the declared ones
+        for(Map.Entry<String, String> prefix : rendered.getNamespaceDeclarations().entrySet()){
+            assertEquals(ontology+": namespace "+prefix.getKey(), lode.getNamespaceDeclarations().get(prefix.getKey()), prefix.getValue());
+        }
+    }
+
+    private static Configuration getConfiguration(String ontology, String namespace) throws Exception {
+        Configuration c = new Configuration();
+        c.setFromFile(true);
+        c.setOntologyPath(new File(NativeRendererTest.class.getResource("/ontologies/"+ontology).toURI()).getPath());
+        c.getMainOntology().setNamespaceURI(namespace);
+        return c;
+    }
+
+    private static String[] getSections(CrossReferenceContent content){
+        return new String[]{content.getClassList(), content.getClasses(), content.getPropertyList(),
+            content.getProperties(), content.getDataPropList(), content.getDataProp()};
+    }
+
+    /**
+     * @return the ids of the elements of the sections, which links can point
+     * to.
+     */
+    private static Set<String> getIds(String[] sections) throws Exception {
+        Set<String> ids = new HashSet<String>();
+        for(String section : sections){
+            if(section != null){
+                collectIds(parse(section), ids);
+            }
+        }
+        return ids;
+    }
+
+    private static void collectIds(Element e, Set<String> ids){
+        if(e.hasAttribute("id")){
+            ids.add(e.getAttribute("id"));
+        }
+        for(Node child = e.getFirstChild(); child != null; child = child.getNextSibling()){
+            if(child instanceof Element){
+                collectIds((Element) child, ids);
+            }
+        }
+    }
+
+    private static Element parse(String section) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader("<root>"+section+"</root>"))).getDocumentElement();
+    }
+
+    private static String normalize(String section, Set<String> ids) throws Exception {
+        if(section == null){
+            return null;
+        }
+        StringBuilder out = new StringBuilder();
+        write(parse(section), ids, out);
+        return out.toString();
+    }
+
+    private static void write(Node node, Set<String> ids, StringBuilder out){
+        if(node.getNodeType() == Node.TEXT_NODE){
+            String text = node.getNodeValue().replaceAll("\\s+", " ").trim();
+            if(!"".equals(text)){
+                out.append(text).append('\n');
+            }
+            return;
+        }
+        if(node.getNodeType() != Node.ELEMENT_NODE){
+            return;
+        }
+        Element e = (Element) node;
+        String name = e.getTagName();
+        TreeMap<String, String> attributes = new TreeMap<String, String>();
+        NamedNodeMap map = e.getAttributes();
+        for(int i = 0; i < map.getLength(); i++){
+            if(!map.item(i).getNodeName().startsWith("xmlns")){
+                attributes.put(map.item(i).getNodeName(), map.item(i).getNodeValue());
+            }
+        }
+        String href = attributes.get("href");
+        if("a".equals(name) && href != null && href.startsWith("#") && !ids.contains(href.substring(1))){
+            //a link to a description that is not in the document
+            name = "span";
+            attributes.remove("href");
+            attributes.put("class", "dotted");
+        }
+        out.append('<').append(name);
+        for(String attribute : attributes.keySet()){
+            out.append(' ').append(attribute).append("=\"").append(attributes.get(attribute)).append('"');
+        }
+        out.append(">\n");
+        List<String> lines = new ArrayList<String>();
+        for(Node child = e.getFirstChild(); child != null; child = child.getNextSibling()){
+            StringBuilder written = new StringBuilder();
+            write(child, ids, written);
+            if(written.length() == 0){
+                continue;
+            }
+            if(child instanceof Element && "dd".equals(((Element) child).getTagName())){
+                lines.add(written.toString());
+                continue;
+            }
+            appendSorted(lines, out);
+            out.append(written);
+        }
+        appendSorted(lines, out);
+        out.append("</").append(name).append(">\n");
+    }
+
+    /**
+     * Writes the values of a relation shown one per line, sorted.
+     */
+    private static void appendSorted(List<String> lines, StringBuilder out){
+        Collections.sort(lines);
+        for(String line : lines){
+            out.append(line);
+        }
+        lines.clear();
+    }
+}
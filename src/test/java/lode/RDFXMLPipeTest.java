@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyFormat;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.semanticweb.owlapi.util.AbstractOWLOntologyStorer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the RDF/XML read from the pipe is the serialization of the
+ * ontology, and that the failures of the serializer are reported.
+ */
+public class RDFXMLPipeTest {
+
+    /**
+     * @return an ontology whose serialization is several times the size of
+     * the buffer of the pipe, so the serializer has to wait for the reader.
+     */
+    private static OWLOntology createOntology(OWLOntologyManager manager, int classes) throws Exception {
+        OWLOntology o = manager.createOntology(IRI.create("http://ex.org/o"));
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        for(int i = 0; i < classes; i++){
+            OWLClass c = factory.getOWLClass(IRI.create("http://ex.org/o#C"+i));
+            manager.addAxiom(o, factory.getOWLDeclarationAxiom(c));
+            manager.addAxiom(o, factory.getOWLAnnotationAssertionAxiom(c.getIRI(),
+                    factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral("Class "+i, "en"))));
+        }
+        return o;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void pipedSerialization() throws Exception {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLOntology o = createOntology(manager, 2000);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        manager.saveOntology(o, new RDFXMLOntologyFormat(), new StreamDocumentTarget(expected));
+        assertTrue(expected.size() > 4*64*1024);
+
+        LODEGeneration.RDFXMLPipe pipe = new LODEGeneration.RDFXMLPipe(manager, o);
+        pipe.start();
+        byte[] actual;
+        try{
+            actual = read(pipe.getInput());
+        }finally{
+            pipe.close();
+        }
+        pipe.checkError();
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+
+    //AbstractOWLOntologyStorer has a deprecated abstract method that must be implemented
+    @SuppressWarnings("deprecation")
+    @Test
+    public void serializerErrorsAreRethrown() throws Exception {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        //a serializer that fails after writing the beginning of the document
+        manager.addOntologyStorer(new AbstractOWLOntologyStorer() {
+            public boolean canStoreOntology(OWLOntologyFormat format) {
+                return true;
+            }
+
+            @Override
+            protected void storeOntology(OWLOntologyManager manager, OWLOntology ontology, Writer writer, OWLOntologyFormat format) {
+                storeOntology(ontology, writer, format);
+            }
+
+            @Override
+            protected void storeOntology(OWLOntology ontology, Writer writer, OWLOntologyFormat format) {
+                try{
+                    writer.write("<rdf:RDF");
+                    writer.flush();
+                }catch(IOException e){
+                    throw new RuntimeException(e);
+                }
+                throw new IllegalStateException("Unexpected axiom");
+            }
+        });
+        LODEGeneration.RDFXMLPipe pipe = new LODEGeneration.RDFXMLPipe(manager, createOntology(manager, 1));
+        pipe.start();
+        try{
+            assertEquals("<rdf:RDF", new String(read(pipe.getInput()), "UTF-8"));
+        }finally{
+            pipe.close();
+        }
+        try{
+            pipe.checkError();
+            fail("The error of the serializer must be reported");
+        }catch(OWLOntologyStorageException e){
+            //expected
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void serializerStopsWhenTheReaderCloses() throws Exception {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        LODEGeneration.RDFXMLPipe pipe = new LODEGeneration.RDFXMLPipe(manager, createOntology(manager, 2000));
+        pipe.close();
+        //without a reader, the serializer fails instead of waiting forever
+        pipe.run();
+        try{
+            pipe.checkError();
+            fail("A truncated serialization must be reported");
+        }catch(OWLOntologyStorageException e){
+            //expected
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmItem;
+import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.trans.XPathException;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the Java string-index-of functions return the same positions
+ * as the XPath definitions of common-functions.xsl.
+ */
+public class StringIndexFunctionsTest {
+
+    //f:string-index-of in common-functions.xsl, with $tokens inlined
+    private static final String XPATH_INDEX_OF = "for $i in (1 to count(tokenize($source,$pattern)) - 1) return "
+            + "sum(for $token in tokenize($source,$pattern)[position() >= 1 and position() <= $i] return string-length($token)) + $i";
+
+    private static final String[][] CASES = {
+        {"http://example.org/onto#Class", "#"},
+        {"http://example.org/onto/Class", "/"},
+        {"http---example.org/a/b/", "/"},
+        {"image.tar.gz", "\\."},
+        {"a.b.c", "."},
+        {"a|b||c", "\\|"},
+        {"x(y)z(", "\\("},
+        {"aaabaaab", "aa"},
+        {"one, two,three", ",\\s*"},
+        {"a1b22c333", "[0-9]+"},
+        {"no separator", "#"},
+        {"#starts and ends#", "#"},
+        //characters outside the BMP count as one
+        {"\uD83D\uDE00#\uD801\uDC00x#y", "#"},
+        {"\uD83D\uDE00a\uD83D\uDE00b", "\uD83D\uDE00"},
+        {"\uD801\uDC00.\uD801\uDC00.", "\\."},
+    };
+
+    @Test
+    public void sameAsXPathVersion() throws Exception {
+        for(String[] c : CASES){
+            long[] expected = xpathIndexesOf(c[0], c[1]);
+            String message = "'"+c[0]+"' / '"+c[1]+"'";
+            assertArrayEquals(message, expected, StringIndexFunctions.indexesOf(c[0], c[1]));
+            assertEquals(message, expected.length == 0 ? -1 : expected[0], StringIndexFunctions.firstIndexOf(c[0], c[1]));
+            assertEquals(message, expected.length == 0 ? -1 : expected[expected.length - 1], StringIndexFunctions.lastIndexOf(c[0], c[1]));
+        }
+    }
+
+    @Test
+    public void surrogatePairs() throws Exception {
+        assertArrayEquals(new long[]{2, 5}, StringIndexFunctions.indexesOf("\uD83D\uDE00#\uD801\uDC00x#y", "#"));
+        assertEquals(5, StringIndexFunctions.lastIndexOf("\uD83D\uDE00#\uD801\uDC00x#y", "#"));
+        assertEquals(2, StringIndexFunctions.firstIndexOf("\uD83D\uDE00#y", "#"));
+    }
+
+    @Test
+    public void metacharactersAreRegularExpressions() throws Exception {
+        //an unescaped dot matches any character, as in tokenize
+        assertArrayEquals(new long[]{1, 2, 3}, StringIndexFunctions.indexesOf("a.b", "."));
+        assertArrayEquals(new long[]{2}, StringIndexFunctions.indexesOf("a.b", "\\."));
+        assertEquals(2, StringIndexFunctions.lastIndexOf("a+b", "\\+"));
+        assertEquals(-1, StringIndexFunctions.firstIndexOf("aaa", "b+"));
+    }
+
+    @Test
+    public void patternsMatchingEmptyStringsAreRejected() {
+        for(String pattern : new String[]{"", "|", "a*", "(x)?"}){
+            try{
+                StringIndexFunctions.indexesOf("abc", pattern);
+                fail("Expected an error for '"+pattern+"'");
+            }catch(XPathException e){
+                //tokenize raises FORX0003 as well
+            }
+        }
+    }
+
+    @Test
+    public void registeredFunctions() throws Exception {
+        Processor processor = new Processor(false);
+        StringIndexFunctions.register(processor.getUnderlyingConfiguration());
+        XPathCompiler compiler = processor.newXPathCompiler();
+        compiler.declareNamespace("lode", StringIndexFunctions.NAMESPACE);
+        assertEquals("6 7 13 15 17", compiler.evaluate("string-join(for $i in lode:string-index-of('http://a.org/b/c#d', '[/#]') return string($i), ' ')", null).getUnderlyingValue().getStringValue());
+        assertEquals("17", compiler.evaluate("string(lode:string-last-index-of('http://a.org/b/c#d', '#'))", null).getUnderlyingValue().getStringValue());
+        assertEquals("6", compiler.evaluate("string(lode:string-first-index-of('http://a.org/b/c#d', '/'))", null).getUnderlyingValue().getStringValue());
+        assertEquals(0, compiler.evaluate("lode:string-first-index-of('abc', '#')", null).size());
+    }
+
+    private static long[] xpathIndexesOf(String source, String pattern) throws SaxonApiException {
+        XPathCompiler compiler = new Processor(false).newXPathCompiler();
+        compiler.declareVariable(new QName("source"));
+        compiler.declareVariable(new QName("pattern"));
+        XPathSelector positions = compiler.compile(XPATH_INDEX_OF).load();
+        positions.setVariable(new QName("source"), new XdmAtomicValue(source));
+        positions.setVariable(new QName("pattern"), new XdmAtomicValue(pattern));
+        XdmValue result = positions.evaluate();
+        long[] indexes = new long[result.size()];
+        for(int i = 0; i < indexes.length; i++){
+            indexes[i] = Long.parseLong(((XdmItem) result.itemAt(i)).getStringValue());
+        }
+        return indexes;
+    }
+
+    @Test
+    public void xpathVersionIsTheReference() throws Exception {
+        assertArrayEquals(new long[]{5, 11}, xpathIndexesOf("abcd#efghi#j", "#"));
+    }
+}
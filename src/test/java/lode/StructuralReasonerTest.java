@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.TransformerFactoryImpl;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import widoco.OntologySource;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the relations computed by structural-reasoner.xsl, calling its
+ * functions on the RDF/XML of disjoints.ttl. The disjoint classes of an
+ * entity merge its owl:disjointWith relations in both directions with the
+ * other members of the owl:AllDisjointClasses axioms it is in, which overlap
+ * with each other and with the explicit relations.
+ */
+public class StructuralReasonerTest {
+
+    private static final String NS = "http://ex.org/d#";
+    //relations of each entity: "function iri" -> related iris, in the order they are returned
+    private static Map<String, List<String>> relations;
+
+    @BeforeClass
+    public static void transform() throws Exception {
+        OntologySource source = new OntologySource(new File(StructuralReasonerTest.class.getResource("/ontologies/disjoints.ttl").toURI()).getPath(), true);
+        source.setCache(null);
+        ByteArrayOutputStream rdf = new ByteArrayOutputStream();
+        source.getManager().saveOntology(source.getOntology(), new RDFXMLOntologyFormat(), new StreamDocumentTarget(rdf));
+
+        //the stylesheet is in the folder of extraction.xsl, so it imports it and its modules
+        String location = StructuralReasonerTest.class.getResource("/lode/extraction.xsl").toExternalForm()
+                .replace("extraction.xsl", "relations.xsl");
+        String stylesheet = "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\""
+                + " xmlns:f=\"http://www.essepuntato.it/xslt/function\" xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+                + "<xsl:import href=\"extraction.xsl\"/>"
+                + "<xsl:template match=\"/\"><relations>"
+                + "<xsl:for-each select=\"/rdf:RDF/element()[@*:about]\">"
+                + "<r name=\"disjoint\" iri=\"{@*:about}\"><xsl:value-of select=\"f:getDisjoints(.)\" separator=\" \"/></r>"
+                + "<r name=\"hasDisjoints\" iri=\"{@*:about}\"><xsl:value-of select=\"f:hasDisjoints(.)\"/></r>"
+                + "<r name=\"equivalent\" iri=\"{@*:about}\"><xsl:value-of select=\"f:getEquivalent(.)\" separator=\" \"/></r>"
+                + "<r name=\"inverse\" iri=\"{@*:about}\"><xsl:value-of select=\"f:getInverseOf(.)\" separator=\" \"/></r>"
+                + "</xsl:for-each></relations></xsl:template></xsl:stylesheet>";
+        Transformer transformer = new TransformerFactoryImpl().newTemplates(new StreamSource(new StringReader(stylesheet), location))
+                .newTransformer();
+        DOMResult result = new DOMResult();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(rdf.toByteArray())), result);
+
+        relations = new HashMap<String, List<String>>();
+        Element root = ((org.w3c.dom.Document) result.getNode()).getDocumentElement();
+        for(Node n = root.getFirstChild(); n != null; n = n.getNextSibling()){
+            Element r = (Element) n;
+            List<String> values = new ArrayList<String>();
+            for(String value : r.getTextContent().split(" ")){
+                if(!"".equals(value)){
+                    values.add(value.replace(NS, ""));
+                }
+            }
+            relations.put(r.getAttribute("name")+" "+r.getAttribute("iri").replace(NS, ""), values);
+        }
+    }
+
+    /**
+     * @return the relations of an entity, sorted.
+     */
+    private static String get(String function, String entity){
+        List<String> values = new ArrayList<String>(relations.get(function+" "+entity));
+        Collections.sort(values);
+        return values.toString();
+    }
+
+    @Test
+    public void disjointsAreNotMissedNorRepeated() {
+        assertEquals("[B, C, D, E]", get("disjoint", "A"));
+        assertEquals("[A, C, D]", get("disjoint", "B"));
+        assertEquals("[A, B, D]", get("disjoint", "C"));
+        assertEquals("[A, B, C]", get("disjoint", "D"));
+        assertEquals("[A]", get("disjoint", "E"));
+        assertEquals("[]", get("disjoint", "F"));
+    }
+
+    @Test
+    public void hasDisjoints() {
+        assertEquals("[true]", get("hasDisjoints", "C"));
+        assertEquals("[true]", get("hasDisjoints", "E"));
+        assertEquals("[false]", get("hasDisjoints", "G"));
+    }
+
+    @Test
+    public void symmetricRelations() {
+        assertEquals("[F]", get("equivalent", "A"));
+        assertEquals("[A]", get("equivalent", "F"));
+        assertEquals("[q]", get("inverse", "p"));
+        assertEquals("[p]", get("inverse", "q"));
+        assertEquals("[]", get("inverse", "A"));
+    }
+}
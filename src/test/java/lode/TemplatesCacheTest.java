@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package lode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that edited stylesheets, included modules and documents are read
+ * again by the cache.
+ */
+public class TemplatesCacheTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("templates", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        for(File f : folder.listFiles()){
+            f.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void recompilesWhenAnIncludedModuleChanges() throws Exception {
+        File main = write("main.xsl", stylesheet("<xsl:include href=\"module.xsl\"/>"
+                + "<xsl:template match=\"/\"><r><xsl:value-of select=\"f:text()\"/></r></xsl:template>"));
+        File module = write("module.xsl", stylesheet("<xsl:function name=\"f:text\"><xsl:sequence select=\"'one'\"/></xsl:function>"));
+        URL location = main.toURI().toURL();
+
+        Templates first = TemplatesCache.getTemplates(location);
+        assertEquals("one", transform(first));
+        assertSame(first, TemplatesCache.getTemplates(location));
+
+        write("module.xsl", stylesheet("<xsl:function name=\"f:text\"><xsl:sequence select=\"'two'\"/></xsl:function>"));
+        module.setLastModified(module.lastModified() + 2000);
+        Templates second = TemplatesCache.getTemplates(location);
+        assertNotSame(first, second);
+        assertEquals("two", transform(second));
+    }
+
+    @Test
+    public void recompilesWhenTheStylesheetChanges() throws Exception {
+        File main = write("main.xsl", stylesheet("<xsl:template match=\"/\"><r>one</r></xsl:template>"));
+        URL location = main.toURI().toURL();
+        assertEquals("one", transform(TemplatesCache.getTemplates(location)));
+
+        write("main.xsl", stylesheet("<xsl:template match=\"/\"><r>two</r></xsl:template>"));
+        main.setLastModified(main.lastModified() + 2000);
+        assertEquals("two", transform(TemplatesCache.getTemplates(location)));
+    }
+
+    @Test
+    public void rereadsModifiedDocuments() throws Exception {
+        File labels = write("labels.xml", "<labels><a>one</a></labels>");
+        URL location = labels.toURI().toURL();
+        assertEquals("one", TemplatesCache.getDocument(location).getStringValue());
+        assertSame(TemplatesCache.getDocument(location), TemplatesCache.getDocument(location));
+
+        write("labels.xml", "<labels><a>two</a></labels>");
+        labels.setLastModified(labels.lastModified() + 2000);
+        assertEquals("two", TemplatesCache.getDocument(location).getStringValue());
+    }
+
+    private static String stylesheet(String body){
+        return "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\" "
+                + "xmlns:f=\"http://example.org/f\" exclude-result-prefixes=\"f\">"
+                + "<xsl:output method=\"text\"/>" + body + "</xsl:stylesheet>";
+    }
+
+    private static String transform(Templates templates) throws Exception {
+        Transformer transformer = templates.newTransformer();
+        transformer.setURIResolver(TemplatesCache.getURIResolver());
+        StringWriter output = new StringWriter();
+        transformer.transform(new StreamSource(new StringReader("<a/>")), new StreamResult(output));
+        return output.toString();
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(folder, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try{
+            writer.write(content);
+        }finally{
+            writer.close();
+        }
+        return f;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the sections of the documentation that fail do not stop the
+ * others, and are reported together.
+ */
+public class CreateResourcesTest {
+
+    private File out;
+
+    @Before
+    public void setUp() throws IOException {
+        out = File.createTempFile("doc", "");
+        out.delete();
+    }
+
+    @After
+    public void tearDown() {
+        delete(out);
+    }
+
+    private static Configuration getConfiguration(String ontology) throws Exception {
+        Configuration c = new Configuration();
+        c.setFromFile(true);
+        c.setOntologyPath(ontology);
+        c.getMainOntology().setNamespaceURI("http://ex.org/o#");
+        c.getOntologySource().setCache(null);
+        return c;
+    }
+
+    private static String getOntology(String name) throws Exception {
+        return new File(CreateResourcesTest.class.getResource("/ontologies/"+name).toURI()).getPath();
+    }
+
+    private File section(String name){
+        return new File(out, "sections"+File.separator+name);
+    }
+
+    @Test
+    public void allSections() throws Exception {
+        CreateResources.generateDocumentation(out.getPath(), getConfiguration(getOntology("rich.ttl")), false);
+        assertTrue(new File(out, "index.html").exists());
+        assertTrue(new File(out, "provenance"+File.separator+"provenance.html").exists());
+        for(String s : new String[]{"abstract.html", "introduction.html", "overview.html", "description.html",
+            "references.html", "crossref.html"}){
+            assertTrue(s, section(s).exists());
+        }
+    }
+
+    @Test
+    public void failedSectionDoesNotStopTheOthers() throws Exception {
+        Configuration c = getConfiguration(getOntology("rich.ttl"));
+        c.setAbstractPath(new File(out, "missing-abstract.html").getPath());
+        try{
+            CreateResources.generateDocumentation(out.getPath(), c, false);
+            fail("The abstract cannot be copied");
+        }catch(SectionGenerationException e){
+            assertEquals("[abstract]", e.getErrors().keySet().toString());
+            assertTrue(e.getErrors().get("abstract") instanceof FileNotFoundException);
+            assertTrue(e.getMessage(), e.getMessage().contains("abstract: "));
+        }
+        assertFalse(section("abstract.html").exists());
+        assertTrue(new File(out, "index.html").exists());
+        for(String s : new String[]{"introduction.html", "overview.html", "description.html", "references.html", "crossref.html"}){
+            assertTrue(s, section(s).exists());
+        }
+    }
+
+    /**
+     * An ontology that cannot be parsed is reported, and the sections made
+     * from its content are not written.
+     */
+    @Test
+    public void malformedOntology() throws Exception {
+        File ontology = new File(out.getPath()+".ttl");
+        OutputStream o = new FileOutputStream(ontology);
+        try{
+            o.write("<http://ex.org/o> a <http://www.w3.org/2002/07/owl#Ontology> <http://ex.org/p> .".getBytes("UTF-8"));
+        }finally{
+            o.close();
+        }
+        try{
+            CreateResources.generateDocumentation(out.getPath(), getConfiguration(ontology.getPath()), false);
+            fail("The ontology is not valid Turtle");
+        }catch(SectionGenerationException e){
+            assertEquals("[cross reference content]", e.getErrors().keySet().toString());
+            assertTrue(e.getErrors().get("cross reference content") instanceof IOException);
+        }finally{
+            ontology.delete();
+        }
+        assertTrue(section("abstract.html").exists());
+        assertTrue(new File(out, "index.html").exists());
+        for(String s : new String[]{"introduction.html", "overview.html", "crossref.html"}){
+            assertFalse(s, section(s).exists());
+        }
+    }
+
+    /**
+     * If the thread is interrupted, the wait stops at once: the interruption
+     * is reported and kept, and the sections not finished are cancelled.
+     * The threads of the pool are kept busy, so no section has started.
+     */
+    @Test(timeout = 60000)
+    public void interrupted() throws Exception {
+        Configuration c = getConfiguration(getOntology("rich.ttl"));
+        c.setUseNativeRenderer(true);
+        final CountDownLatch busy = new CountDownLatch(1);
+        ExecutorService pool = CreateResources.getPool();
+        for(int i = 0; i < CreateResources.SECTION_THREADS; i++){
+            pool.submit(new Callable<Void>() {
+                public Void call() throws InterruptedException {
+                    busy.await();
+                    return null;
+                }
+            });
+        }
+        try{
+            Thread.currentThread().interrupt();
+            CreateResources.generateDocumentation(out.getPath(), c, false);
+            fail("The interruption must be reported");
+        }catch(SectionGenerationException e){
+            assertEquals("[abstract]", e.getErrors().keySet().toString());
+            assertTrue(e.getErrors().get("abstract") instanceof InterruptedException);
+        }finally{
+            assertTrue(Thread.interrupted());
+            busy.countDown();
+        }
+        //once the pool is free, the cancelled sections are not run
+        pool.submit(new Callable<Void>() {
+            public Void call() {
+                return null;
+            }
+        }).get();
+        assertFalse(new File(out, "index.html").exists());
+        assertEquals(0, new File(out, "sections").list().length);
+    }
+
+    private static void delete(File f){
+        File[] children = f.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
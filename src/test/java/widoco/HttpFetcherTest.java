@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the conditional requests of the fetcher and its use of the copies
+ * on disk, against a local server.
+ */
+public class HttpFetcherTest {
+
+    private static final String BODY = "<http://ex.org/o> a <http://www.w3.org/2002/07/owl#Ontology> .";
+
+    private File folder;
+    private HttpServer server;
+    private HttpFetcher fetcher;
+    //Cache-Control of the responses of the server
+    private String cacheControl;
+    //If-None-Match header of each request, and status code returned
+    private final List<String> conditions = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> codes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("http", "");
+        folder.delete();
+        fetcher = new HttpFetcher(folder, 1000, 1000);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/o", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+                conditions.add(condition);
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                if(cacheControl != null){
+                    exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+                }
+                if("\"v1\"".equals(condition)){
+                    codes.add(304);
+                    exchange.sendResponseHeaders(304, -1);
+                }else{
+                    codes.add(200);
+                    byte[] body = BODY.getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("Content-Type", "text/turtle");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        if(folder.exists()){
+            for(File f : folder.listFiles()){
+                f.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    private String getLocation(){
+        return "http://localhost:"+server.getAddress().getPort()+"/o";
+    }
+
+    private String fetch() throws IOException {
+        HttpFetcher.Response response = fetcher.fetch(getLocation(), "text/turtle");
+        assertEquals("text/turtle", response.getContentType());
+        return new String(response.getContent(), "UTF-8");
+    }
+
+    @Test
+    public void revalidatesTheCopyOnDisk() throws Exception {
+        assertEquals(BODY, fetch());
+        assertEquals(BODY, fetch());
+        assertNull(conditions.get(0));
+        assertEquals("\"v1\"", conditions.get(1));
+        assertEquals(200, (int) codes.get(0));
+        assertEquals(304, (int) codes.get(1));
+    }
+
+    @Test
+    public void freshCopiesAreNotRequested() throws Exception {
+        cacheControl = "max-age=3600";
+        assertEquals(BODY, fetch());
+        assertEquals(BODY, fetch());
+        assertEquals(1, codes.size());
+    }
+
+    /**
+     * The body is read from its copy on disk, and no other file is left in
+     * the folder.
+     */
+    @Test
+    public void bodyIsStreamedFromDisk() throws Exception {
+        HttpFetcher.Response response = fetcher.fetch(getLocation(), "text/turtle");
+        InputStream in = response.openStream();
+        try{
+            assertTrue(in instanceof FileInputStream);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while((read = in.read()) != -1){
+                out.write(read);
+            }
+            assertEquals(BODY, out.toString("UTF-8"));
+        }finally{
+            in.close();
+        }
+        List<String> files = new ArrayList<String>();
+        for(File f : folder.listFiles()){
+            files.add(f.getName().substring(f.getName().indexOf('.')));
+        }
+        Collections.sort(files);
+        assertEquals("[.body, .properties]", files.toString());
+    }
+
+    @Test
+    public void noStoreIsNotKept() throws Exception {
+        cacheControl = "no-store";
+        assertEquals(BODY, fetch());
+        assertEquals(BODY, fetch());
+        assertNull(conditions.get(1));
+        assertEquals(200, (int) codes.get(1));
+        assertEquals(0, folder.exists() ? folder.listFiles().length : 0);
+    }
+
+    @Test
+    public void offlineUsesTheCopyOnDisk() throws Exception {
+        assertEquals(BODY, fetch());
+        server.stop(0);
+        assertEquals(BODY, fetch());
+    }
+
+    @Test
+    public void offlineMustRevalidate() throws Exception {
+        cacheControl = "must-revalidate";
+        assertEquals(BODY, fetch());
+        server.stop(0);
+        try{
+            fetch();
+            fail("The copy on disk must be revalidated");
+        }catch(IOException e){
+            //expected: the server cannot be reached
+        }
+    }
+}
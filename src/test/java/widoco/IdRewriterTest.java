@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the replacement of the ids LODE gives to the entities.
+ */
+public class IdRewriterTest {
+
+    /**
+     * @return a rewriter with the ids and the "&lt;span&gt;:" rule, as
+     * LODEParser builds it.
+     */
+    private static IdRewriter rewriter(String... replacements){
+        Map<String, String> ids = new HashMap<String, String>();
+        for(int i = 0; i < replacements.length; i += 2){
+            ids.put(replacements[i], replacements[i+1]);
+        }
+        IdRewriter rewriter = new IdRewriter(ids);
+        rewriter.add("<span>:", "<span>");
+        return rewriter;
+    }
+
+    @Test
+    public void idsThatArePrefixesOfOthers() {
+        IdRewriter rewriter = rewriter("d4e1", "Person", "d4e12", "Agent", "d4e123", "Place");
+        assertEquals("<a href=\"#Person\"/><a href=\"#Agent\"/><a href=\"#Place\"/>",
+                rewriter.rewrite("<a href=\"#d4e1\"/><a href=\"#d4e12\"/><a href=\"#d4e123\"/>"));
+        //the longest id is replaced, whatever the order the ids were added in
+        assertEquals("id=\"Agent4\"", rewriter("d4e12", "Agent", "d4e1", "Person").rewrite("id=\"d4e124\""));
+        assertEquals("id=\"Person\" d4e", rewriter.rewrite("id=\"d4e1\" d4e"));
+    }
+
+    @Test
+    public void replacementsAreNotRewritten() {
+        assertEquals("d4e2 d4e3", rewriter("d4e1", "d4e2", "d4e2", "d4e3").rewrite("d4e1 d4e2"));
+    }
+
+    @Test
+    public void defaultNamespacePrefix() {
+        IdRewriter rewriter = rewriter("d4e1", "Person");
+        assertEquals("<span>Person</span>", rewriter.rewrite("<span>:Person</span>"));
+        assertEquals("<span>ex:Person</span>", rewriter.rewrite("<span>ex:Person</span>"));
+        assertEquals("<span> :Person</span>", rewriter.rewrite("<span> :Person</span>"));
+        //an id right after the prefix
+        assertEquals("<span>Person</span>", rewriter.rewrite("<span>:d4e1</span>"));
+        //partial matches at the end of the text
+        assertEquals("<a><span>", rewriter.rewrite("<a><span>"));
+        assertEquals("text <span", rewriter.rewrite("text <span"));
+    }
+
+    @Test
+    public void nonAsciiIds() {
+        assertEquals("id=\"Persona\" ann\u00e9e", rewriter("\u00e9t\u00e9", "Persona").rewrite("id=\"\u00e9t\u00e9\" ann\u00e9e"));
+    }
+
+    @Test
+    public void lastReplacementIsUsed() {
+        IdRewriter rewriter = rewriter("d4e1", "Person");
+        rewriter.add("d4e1", "Agent");
+        assertEquals("Agent", rewriter.rewrite("d4e1"));
+        assertEquals("", rewriter.rewrite(""));
+    }
+}
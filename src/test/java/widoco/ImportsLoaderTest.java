@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the imports are read from the mirror folder and added to the
+ * ontology and its manager.
+ */
+public class ImportsLoaderTest {
+
+    private static final String PREFIXES = "@prefix owl: <http://www.w3.org/2002/07/owl#> .\n";
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("mirror", "");
+        folder.delete();
+        new File(folder, "sub").mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    private static void delete(File f){
+        if(f.isDirectory()){
+            for(File child : f.listFiles()){
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    @Test
+    public void catalogEntriesAreResolvedAgainstTheCatalog() throws Exception {
+        write(MirrorIRIMapper.CATALOG, "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">"
+                + "<uri name=\"http://ex.org/a\" uri=\"a.ttl\"/>"
+                + "<group xml:base=\"sub/\"><uri name=\"http://ex.org/b\" uri=\"b%20copy.ttl\"/></group>"
+                + "<uri name=\"http://ex.org/c\" uri=\"http://mirror.org/c.ttl\"/>"
+                + "</catalog>");
+        MirrorIRIMapper mirror = new MirrorIRIMapper(folder);
+        assertEquals(new File(folder, "a.ttl").getCanonicalFile(), new File(mirror.getDocumentIRI(IRI.create("http://ex.org/a")).toURI()).getCanonicalFile());
+        assertEquals(new File(folder, "sub/b copy.ttl").getCanonicalFile(), new File(mirror.getDocumentIRI(IRI.create("http://ex.org/b")).toURI()).getCanonicalFile());
+        assertEquals(IRI.create("http://mirror.org/c.ttl"), mirror.getDocumentIRI(IRI.create("http://ex.org/c")));
+        assertNull(mirror.getDocumentIRI(IRI.create("http://ex.org/d")));
+    }
+
+    @Test
+    public void importsClosureIsIncluded() throws Exception {
+        write(MirrorIRIMapper.CATALOG, "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">"
+                + "<uri name=\"http://ex.org/a\" uri=\"a.ttl\"/>"
+                + "<uri name=\"http://ex.org/b\" uri=\"sub/b.ttl\"/>"
+                + "</catalog>");
+        write("a.ttl", PREFIXES+"<http://ex.org/a> a owl:Ontology ; owl:imports <http://ex.org/b> .\n"
+                + "<http://ex.org/a#A> a owl:Class .\n");
+        write("sub/b.ttl", PREFIXES+"<http://ex.org/b> a owl:Ontology .\n<http://ex.org/b#B> a owl:Class .\n");
+        File main = write("main.ttl", PREFIXES+"<http://ex.org/o> a owl:Ontology ; owl:imports <http://ex.org/a> .\n"
+                + "<http://ex.org/o#O> a owl:Class .\n");
+        OntologySource source = new OntologySource(main.getPath(), true);
+        source.setCache(null);
+        source.includeImports(new ImportsLoader(folder.getPath()));
+        OWLOntology o = source.getOntology();
+        assertTrue(o.containsClassInSignature(IRI.create("http://ex.org/a#A")));
+        assertTrue(o.containsClassInSignature(IRI.create("http://ex.org/b#B")));
+        assertEquals(3, source.getManager().getImportsClosure(o).size());
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(folder, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try{
+            writer.write(content);
+        }finally{
+            writer.close();
+        }
+        return f;
+    }
+}
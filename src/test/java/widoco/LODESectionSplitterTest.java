@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how the sections are taken out of LODE's html by the splitter, and
+ * how the anchors of the entities are fixed.
+ */
+public class LODESectionSplitterTest {
+
+    private static final String NS = "http://ex.org/o#";
+    private static final String XHTML = "http://www.w3.org/1999/xhtml";
+
+    private static LODEParser parser;
+
+    @BeforeClass
+    public static void createParser() throws Exception {
+        Configuration c = new Configuration();
+        c.setFromFile(true);
+        c.setOntologyPath(new File(LODESectionSplitterTest.class.getResource("/ontologies/rich.ttl").toURI()).getPath());
+        c.getMainOntology().setNamespaceURI(NS);
+        c.getOntologySource().setCache(null);
+        parser = new LODEParser(c);
+    }
+
+    private static LODESectionSplitter split(String body) throws Exception {
+        LODESectionSplitter splitter = new LODESectionSplitter(parser);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.newSAXParser().parse(new InputSource(new StringReader("<html xmlns=\""+XHTML+"\"><body>"+body+"</body></html>")), splitter);
+        return splitter;
+    }
+
+    @Test
+    public void sectionsAreTakenWithoutTheRest() throws Exception {
+        LODESectionSplitter splitter = split("<div id=\"toc\"><p>Table of contents</p></div>"
+                + "<div id=\"classes\" title=\"a &amp; &quot;b&quot;\"><h2>Classes</h2>"
+                + "<ul class=\"hlist\"><li><a href=\"#d4e1\" title=\"" + NS + "A\">A</a></li></ul>"
+                + "<div class=\"entity\" id=\"d4e1\"><a name=\"" + NS + "A\"></a><a name=\"d4e1\"></a>"
+                + "<h3>A &lt; B</h3><ul><li><span>:B</span></li></ul></div>"
+                + "</div><p>after the section</p>");
+        assertEquals("<div id=\"classes\" title=\"a &amp; &quot;b&quot;\"><h2>Classes</h2>"
+                + "<ul class=\"hlist\"><li><a href=\"#d4e1\" title=\"" + NS + "A\">A</a></li></ul>"
+                + "<div class=\"entity\" id=\"d4e1\"><h3>A &lt; B</h3><ul><li><span>:B</span></li></ul></div></div>",
+                splitter.getSection(LODESectionSplitter.CLASSES));
+        //the first list of terms is the one of the overview, not the lists inside the entities
+        assertEquals("<ul class=\"hlist\"><li><a href=\"#d4e1\" title=\"" + NS + "A\">A</a></li></ul>",
+                splitter.getList(LODESectionSplitter.CLASSES));
+        assertEquals("{d4e1=A}", splitter.getReplacements().toString());
+        assertNull(splitter.getSection(LODESectionSplitter.OBJECT_PROPERTIES));
+        assertNull(splitter.getList(LODESectionSplitter.OBJECT_PROPERTIES));
+    }
+
+    @Test
+    public void sectionWithoutList() throws Exception {
+        LODESectionSplitter splitter = split("<div id=\"dataproperties\"><h2>Data properties</h2>"
+                + "<div class=\"entity\" id=\"d4e7\"><a name=\"http://other.org/d\"></a><h3>d</h3></div></div>");
+        //the name of an entity out of the namespace is kept whole
+        assertEquals("<div id=\"dataproperties\"><h2>Data properties</h2><div class=\"entity\" id=\"d4e7\"><h3>d</h3></div></div>",
+                splitter.getSection(LODESectionSplitter.DATA_PROPERTIES));
+        assertNull(splitter.getList(LODESectionSplitter.DATA_PROPERTIES));
+        assertEquals("{d4e7=http://other.org/d}", splitter.getReplacements().toString());
+    }
+
+    @Test
+    public void namespaceDeclarations() throws Exception {
+        LODESectionSplitter splitter = split("<div id=\"namespacedeclarations\"><h2>Namespace declarations</h2>"
+                + "<dl><dt><em>default namespace</em></dt><dd>" + NS + "</dd>"
+                + "<dt>owl</dt><dd>http://www.w3.org/2002/07/owl#</dd></dl></div>");
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("default namespace", NS);
+        expected.put("owl", "http://www.w3.org/2002/07/owl#");
+        assertEquals(expected, splitter.getNamespaces());
+        //the namespaces are not a section of the documentation
+        assertNull(splitter.getSection(LODESectionSplitter.NAMESPACES));
+    }
+
+    private static Element parse(String html) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(html)));
+        return doc.getDocumentElement();
+    }
+
+    @Test
+    public void fixAnchor() throws Exception {
+        Map<String, String> ids = new HashMap<String, String>();
+        Element entity = parse("<div id=\"d4e1\"><a name=\"" + NS + "A\"/><a name=\"d4e1\"/><h3>A</h3></div>");
+        parser.fixAnchor(entity, ids);
+        assertEquals("<div id=\"d4e1\"><h3>A</h3></div>", LODEParser.nodeToString(entity));
+        assertEquals("A", ids.get("d4e1"));
+
+        //only the first anchor is removed when it is not followed by another one
+        entity = parse("<div id=\"d4e2\"><a name=\"" + NS + "B\"/><h3>B</h3></div>");
+        parser.fixAnchor(entity, ids);
+        assertEquals("<div id=\"d4e2\"><h3>B</h3></div>", LODEParser.nodeToString(entity));
+        assertEquals("B", ids.get("d4e2"));
+    }
+
+    @Test
+    public void entitiesWithoutAnchorsAreKept() throws Exception {
+        Map<String, String> ids = new HashMap<String, String>();
+        String[] kept = {
+            "<div id=\"d4e3\"><h3>C</h3></div>",
+            "<div id=\"d4e4\"><a href=\"#d4e1\">A</a></div>",
+            "<div id=\"d4e5\">text</div>",
+            "<div><a name=\"" + NS + "D\"/></div>",
+            "<div id=\"d4e6\"/>"
+        };
+        for(String html : kept){
+            Element entity = parse(html);
+            parser.fixAnchor(entity, ids);
+            assertEquals(html, LODEParser.nodeToString(entity));
+        }
+        assertTrue(ids.isEmpty());
+    }
+
+    /**
+     * The ids of the sections rendered for an ontology are all replaced by
+     * the names of its entities.
+     */
+    @Test
+    public void idsOfTheOntologyAreReplaced() {
+        Pattern generated = Pattern.compile("(id=\"|href=\"#)d\\d+e\\d+\"");
+        assertTrue(parser.getClasses().contains("id=\"A\""));
+        assertFalse(generated.matcher(parser.getClasses()).find());
+        assertFalse(generated.matcher(parser.getClassList()).find());
+        assertTrue(parser.getProperties().contains("id=\"p\""));
+        assertFalse(generated.matcher(parser.getProperties()).find());
+        assertTrue(parser.getDataProp().contains("id=\"d\""));
+        assertFalse(generated.matcher(parser.getDataProp()).find());
+        assertEquals("http://www.w3.org/2002/07/owl#", parser.getNamespaceDeclarations().get("owl"));
+    }
+}
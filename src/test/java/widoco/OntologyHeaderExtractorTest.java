@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the header of the RDF/XML ontologies is read whole, and only it.
+ */
+public class OntologyHeaderExtractorTest {
+
+    private static final String O = "http://ex.org/o";
+    private static final String NS = "http://ex.org/o#";
+
+    private static final String RDF_XML = "<rdf:RDF xmlns:rdf=\""+RDF.getURI()+"\" xmlns:owl=\""+OWL.getURI()+"\" "
+            + "xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:foaf=\"http://xmlns.com/foaf/0.1/\">";
+
+    private static OntModel extract(String content) throws Exception {
+        return OntologyHeaderExtractor.extract(new ByteArrayInputStream(content.getBytes("UTF-8")), null);
+    }
+
+    /**
+     * The statements of the ontology may be anywhere in the other formats,
+     * so their header is the whole ontology.
+     */
+    @Test
+    public void otherFormatsAreReadWhole() throws Exception {
+        OntologySource turtle = new OntologySource(new File(getClass().getResource("/ontologies/rich.ttl").toURI()).getPath(), true);
+        turtle.setCache(null);
+        assertTrue(turtle.getHeader().contains(turtle.getHeader().getResource(NS+"B"), RDF.type, OWL.Class));
+        OntologySource rdfXml = new OntologySource(new File(getClass().getResource("/ontologies/relative.rdf").toURI()).getPath(), true);
+        rdfXml.setCache(null);
+        assertFalse(rdfXml.getHeader().contains(null, RDF.type, OWL.Class));
+    }
+
+    @Test
+    public void blankNodesDefinedBeforeTheirUse() throws Exception {
+        OntModel header = extract(RDF_XML
+                + "<rdf:Description rdf:nodeID=\"ann\"><foaf:name>Ann</foaf:name></rdf:Description>"
+                + "<rdf:Description rdf:nodeID=\"other\"><foaf:name>Other</foaf:name></rdf:Description>"
+                + "<owl:Ontology rdf:about=\""+O+"\"><dc:creator rdf:nodeID=\"ann\"/></owl:Ontology></rdf:RDF>");
+        Property name = header.getProperty("http://xmlns.com/foaf/0.1/name");
+        assertTrue(header.contains(null, name, "Ann"));
+        assertFalse(header.contains(null, name, "Other"));
+    }
+
+    @Test
+    public void rdfXmlStopsAtTheNextResource() throws Exception {
+        //the document is not complete: it can only be read if the parser stops before its end
+        OntModel header = extract(RDF_XML
+                + "<owl:Ontology rdf:about=\""+O+"\"><dc:creator><rdf:Description><foaf:name>Ann</foaf:name>"
+                + "</rdf:Description></dc:creator></owl:Ontology>"
+                + "<owl:Class rdf:about=\""+NS+"A\"/><owl:Class rdf:about=\""+NS+"B\"/><owl:Class rdf:about=");
+        assertTrue(header.contains(header.getResource(O), RDF.type, OWL.Ontology));
+        assertTrue(header.contains(null, header.getProperty("http://xmlns.com/foaf/0.1/name"), "Ann"));
+        assertEquals(3, header.getGraph().size());
+    }
+
+    /**
+     * Named resources described inside the owl:Ontology element do not end
+     * the header.
+     */
+    @Test
+    public void nestedNamedResources() throws Exception {
+        OntModel header = extract(RDF_XML
+                + "<owl:Ontology rdf:about=\""+O+"\"><dc:creator><foaf:Person rdf:about=\"http://ex.org/alice\" foaf:nick=\"al\">"
+                + "<foaf:name>Alice</foaf:name><foaf:knows><foaf:Person rdf:about=\"http://ex.org/bob\"/></foaf:knows>"
+                + "</foaf:Person></dc:creator>"
+                + "<dc:title>Title</dc:title><dc:license rdf:resource=\"http://ex.org/license\"/></owl:Ontology>"
+                + "<owl:Class rdf:about=\""+NS+"A\"><dc:title>A</dc:title></owl:Class><owl:Class rdf:about=\""+NS+"B\"/><owl:Class rdf:about=");
+        Resource o = header.getResource(O);
+        assertTrue(header.contains(o, header.getProperty("http://purl.org/dc/elements/1.1/creator"), header.getResource("http://ex.org/alice")));
+        assertTrue(header.contains(o, header.getProperty("http://purl.org/dc/elements/1.1/title"), "Title"));
+        assertTrue(header.contains(o, header.getProperty("http://purl.org/dc/elements/1.1/license"), header.getResource("http://ex.org/license")));
+        //only the statements of the ontology are kept
+        assertEquals(4, header.getGraph().size());
+    }
+
+    @Test
+    public void ontologyDeclaredTooLate() throws Exception {
+        StringBuilder content = new StringBuilder(RDF_XML);
+        for(int i = 0; i <= OntologyHeaderExtractor.MAX_BUFFERED; i++){
+            content.append("<owl:Class rdf:about=\"").append(NS).append("C").append(i).append("\"/>");
+        }
+        content.append("<owl:Ontology rdf:about=\"").append(O).append("\"/></rdf:RDF>");
+        assertNull(extract(content.toString()));
+    }
+
+    @Test
+    public void noOntology() throws Exception {
+        assertNull(extract(RDF_XML+"<owl:Class rdf:about=\""+NS+"A\"/></rdf:RDF>"));
+    }
+}
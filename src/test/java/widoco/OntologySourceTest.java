@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the ontologies translated from their triples have the same
+ * axioms as when the OWL API parses them, and the decompression of the
+ * ontologies.
+ */
+public class OntologySourceTest {
+
+    private static final String ONTOLOGY = "<http://ex.org/o> a <http://www.w3.org/2002/07/owl#Ontology> .";
+
+    @Test
+    public void turtle() throws Exception {
+        compare("rich.ttl");
+        compare("people.ttl");
+    }
+
+    @Test
+    public void rdfXml() throws Exception {
+        compare("punning.rdf");
+    }
+
+    @Test
+    public void relativeIris() throws Exception {
+        compare("relative.rdf");
+    }
+
+    /**
+     * The formats that are not RDF are read by the parsers of the OWL API.
+     */
+    @Test
+    public void owlXmlAndManchester() throws Exception {
+        compare("rich.owx");
+        compare("rich.omn");
+    }
+
+    private static void compare(String name) throws Exception {
+        File file = new File(OntologySourceTest.class.getResource("/ontologies/"+name).toURI());
+        OWLOntology parsed = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(file);
+        OntologySource source = new OntologySource(file.getPath(), true);
+        source.setCache(null);
+        OWLOntology translated = source.getOntology();
+        assertFalse(name, parsed.getAxioms().isEmpty());
+        assertEquals(name, toStrings(parsed.getAxioms()), toStrings(translated.getAxioms()));
+        assertEquals(name, parsed.getOntologyID(), translated.getOntologyID());
+    }
+
+    /**
+     * An ontology that cannot be parsed is reported, instead of being
+     * documented as an empty one.
+     */
+    @Test
+    public void malformed() throws Exception {
+        File f = File.createTempFile("malformed", ".ttl");
+        try{
+            OutputStream out = new FileOutputStream(f);
+            try{
+                out.write("<http://ex.org/o> a <http://www.w3.org/2002/07/owl#Ontology> <http://ex.org/p> .".getBytes("UTF-8"));
+            }finally{
+                out.close();
+            }
+            OntologySource source = new OntologySource(f.getPath(), true);
+            source.setCache(null);
+            try{
+                source.getOntology();
+                fail("The Turtle is not valid");
+            }catch(IOException e){
+                //expected
+            }
+            try{
+                source.getHeader();
+                fail("The header of a malformed ontology cannot be read either");
+            }catch(IOException e){
+                //expected
+            }
+        }finally{
+            f.delete();
+        }
+    }
+
+    @Test
+    public void plain() throws Exception {
+        assertEquals(ONTOLOGY, decompress(ONTOLOGY.getBytes("UTF-8")));
+        //shorter than the magic numbers
+        assertEquals("<a>", decompress("<a>".getBytes("UTF-8")));
+        assertEquals("", decompress(new byte[0]));
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new GZIPOutputStream(bytes));
+        assertEquals(ONTOLOGY, decompress(bytes.toByteArray()));
+    }
+
+    @Test
+    public void bzip2() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new BZip2CompressorOutputStream(bytes));
+        assertEquals(ONTOLOGY, decompress(bytes.toByteArray()));
+    }
+
+    @Test
+    public void zip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        //the directories are skipped
+        zip.putNextEntry(new ZipEntry("ontology/"));
+        zip.closeEntry();
+        zip.putNextEntry(new ZipEntry("ontology/o.ttl"));
+        write(zip);
+        assertEquals(ONTOLOGY, decompress(bytes.toByteArray()));
+    }
+
+    @Test
+    public void emptyZip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("ontology/"));
+        zip.closeEntry();
+        zip.close();
+        try{
+            decompress(bytes.toByteArray());
+            fail("A zip file without files has no ontology");
+        }catch(IOException e){
+            //expected
+        }
+    }
+
+    private static void write(OutputStream out) throws IOException {
+        try{
+            out.write(ONTOLOGY.getBytes("UTF-8"));
+        }finally{
+            out.close();
+        }
+    }
+
+    private static String decompress(byte[] bytes) throws IOException {
+        InputStream in = OntologySource.decompress(new ByteArrayInputStream(bytes));
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while((read = in.read()) != -1){
+                out.write(read);
+            }
+            return out.toString("UTF-8");
+        }finally{
+            in.close();
+        }
+    }
+
+    /**
+     * The anonymous individuals get new ids each time they are parsed, so
+     * they are compared without them.
+     */
+    private static Set<String> toStrings(Set<OWLAxiom> axioms){
+        Set<String> strings = new TreeSet<String>();
+        for(OWLAxiom axiom : axioms){
+            strings.add(axiom.toString().replaceAll("_:genid[0-9]+", "_:genid"));
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.tdb.StoreConnection;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the datasets of the previous versions of an ontology are
+ * deleted once a new version is loaded, and those of other ontologies kept.
+ */
+public class TDBStoreTest {
+
+    private static final String ONTOLOGY = "<http://ex.org/o> a <http://www.w3.org/2002/07/owl#Ontology> .\n";
+
+    private File tdb;
+    private File first;
+    private File second;
+
+    @Before
+    public void setUp() throws IOException {
+        tdb = File.createTempFile("tdb", "");
+        tdb.delete();
+        first = File.createTempFile("first", ".ttl");
+        second = File.createTempFile("second", ".ttl");
+    }
+
+    @After
+    public void tearDown() {
+        StoreConnection.reset();
+        delete(tdb);
+        first.delete();
+        second.delete();
+    }
+
+    @Test
+    public void staleDatasetsAreDeleted() throws Exception {
+        write(first, ONTOLOGY);
+        write(second, ONTOLOGY);
+        assertEquals(1, load(first));
+        assertEquals(1, load(second));
+        File[] datasets = tdb.listFiles();
+        assertEquals(2, datasets.length);
+
+        //a new version of the first ontology replaces its dataset
+        write(first, ONTOLOGY+"<http://ex.org/o#A> a <http://www.w3.org/2002/07/owl#Class> .\n");
+        first.setLastModified(first.lastModified() + 2000);
+        assertEquals(2, load(first));
+        assertEquals(2, tdb.listFiles().length);
+        int kept = 0;
+        for(File dataset : datasets){
+            if(dataset.exists()){
+                kept++;
+            }
+        }
+        assertEquals(1, kept);
+
+        //the dataset of the current version is reused
+        assertEquals(2, load(first));
+        assertEquals(2, tdb.listFiles().length);
+    }
+
+    @Test
+    public void otherFoldersAreKept() throws Exception {
+        write(first, ONTOLOGY);
+        File other = new File(tdb, "other");
+        assertTrue(other.mkdirs());
+        load(first);
+        assertTrue(other.exists());
+        assertEquals(2, tdb.listFiles().length);
+    }
+
+    private int load(File f) throws IOException {
+        OntologySource source = new OntologySource(f.getPath(), true);
+        source.setCache(null);
+        return source.getStore(tdb.getPath()).getGraph().size();
+    }
+
+    private static void write(File f, String content) throws IOException {
+        OutputStream out = new FileOutputStream(f);
+        try{
+            out.write(content.getBytes("UTF-8"));
+        }finally{
+            out.close();
+        }
+    }
+
+    private static void delete(File f){
+        File[] children = f.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
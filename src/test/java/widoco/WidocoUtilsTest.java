@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2013 Ontology Engineering Group, Universidad Politcnica de Madrid, Spain
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package widoco;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the detection of the format of the ontologies from their content.
+ */
+public class WidocoUtilsTest {
+
+    private static OntologyFormat detect(String content) throws IOException{
+        return WidocoUtils.detectFormat("ontology", null, content.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void xmlDocuments() throws Exception {
+        assertEquals(OntologyFormat.RDF_XML, detect("<?xml version=\"1.0\"?>\n<rdf:RDF/>"));
+        assertEquals(OntologyFormat.RDF_XML, detect("<!-- comment -->\n<rdf:RDF></rdf:RDF>"));
+        assertEquals(OntologyFormat.RDF_XML, detect("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"/>"));
+        assertEquals(OntologyFormat.RDF_XML, detect("  <RDF>\n</RDF>"));
+        assertEquals(OntologyFormat.OWL_XML, detect("<Ontology xmlns=\"http://www.w3.org/2002/07/owl#\" ontologyIRI=\"http://ex.org/o\"/>"));
+    }
+
+    @Test
+    public void turtleStartingWithAnIri() throws Exception {
+        assertEquals(OntologyFormat.TURTLE, detect("<http://ex.org/o> a owl:Ontology ."));
+        assertEquals(OntologyFormat.TURTLE, detect("<http://ex.org/o>\n    a <http://www.w3.org/2002/07/owl#Ontology> ."));
+        assertEquals(OntologyFormat.TURTLE, detect("<#o> a owl:Ontology ."));
+        assertEquals(OntologyFormat.TURTLE, detect("# comment\n<http://ex.org/o> <http://ex.org/p> <http://ex.org/v> ."));
+        assertEquals(OntologyFormat.TURTLE, detect("@prefix : <http://ex.org/o#> ."));
+    }
+
+    @Test
+    public void otherFormats() throws Exception {
+        assertEquals(OntologyFormat.N_QUADS, detect("<http://ex.org/o> <http://ex.org/p> <http://ex.org/v> <http://ex.org/g> ."));
+        assertEquals(OntologyFormat.MANCHESTER, detect("Prefix: : <http://ex.org/o#>\nOntology: <http://ex.org/o>"));
+        assertEquals(OntologyFormat.JSON_LD, detect("{ \"@context\": {} }"));
+    }
+
+    /**
+     * An IRI that looks like an element (urn:o) is taken for RDF/XML, and
+     * read as Turtle when it is not.
+     */
+    @Test
+    public void turtleTakenForRdfXml() throws Exception {
+        String turtle = "<urn:o> a <http://www.w3.org/2002/07/owl#Ontology> .";
+        assertEquals(OntologyFormat.RDF_XML, detect(turtle));
+        File f = File.createTempFile("ontology", ".owl");
+        try{
+            OutputStream out = new FileOutputStream(f);
+            try{
+                out.write(turtle.getBytes("UTF-8"));
+            }finally{
+                out.close();
+            }
+            OntologySource source = new OntologySource(f.getPath(), true);
+            source.setCache(null);
+            Model model = ModelFactory.createDefaultModel();
+            WidocoUtils.readModel(model, source);
+            assertTrue(model.contains(model.createResource("urn:o"), RDF.type, OWL.Ontology));
+            assertEquals(OntologyFormat.TURTLE, source.getFormat());
+        }finally{
+            f.delete();
+        }
+    }
+}